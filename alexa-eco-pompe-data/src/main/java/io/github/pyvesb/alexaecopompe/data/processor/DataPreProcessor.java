@@ -1,14 +1,14 @@
 package io.github.pyvesb.alexaecopompe.data.processor;
 
-import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
-
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipInputStream;
 
@@ -18,18 +18,13 @@ import org.apache.logging.log4j.Logger;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.TypeFactory;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 
-import io.github.pyvesb.alexaecopompe.data.unmarshal.GasStationMixIn;
-import io.github.pyvesb.alexaecopompe.data.unmarshal.PriceMixIn;
+import io.github.pyvesb.alexaecopompe.data.unmarshal.GasStationStreamReader;
 import io.github.pyvesb.alexaecopompe.domain.GasStation;
-import io.github.pyvesb.alexaecopompe.domain.Price;
-import io.protostuff.LinkedBuffer;
-import io.protostuff.ProtostuffIOUtil;
-import io.protostuff.Schema;
-import io.protostuff.runtime.RuntimeSchema;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.speech.Normalisers;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
@@ -39,18 +34,10 @@ public class DataPreProcessor implements RequestHandler<Void, Void> {
 
 	private static final String BUCKET_NAME = "alexa-eco-pompe";
 	private static final String KEY = "gas-station.data";
+	private static final String NAMES_RESOURCE = "id_name_mapping.json";
 
 	private static final Logger LOGGER = LogManager.getLogger(DataPreProcessor.class);
-	private static final Schema<GasStation> SCHEMA = RuntimeSchema.getSchema(GasStation.class);
-	private static final LinkedBuffer BUFFER = LinkedBuffer.allocate();
-	private static final ObjectReader READER;
-	static {
-		JavaType gasStationList = TypeFactory.defaultInstance().constructCollectionLikeType(List.class, GasStation.class);
-		READER = new XmlMapper()
-				.addMixIn(Price.class, PriceMixIn.class)
-				.addMixIn(GasStation.class, GasStationMixIn.class)
-				.configure(FAIL_ON_UNKNOWN_PROPERTIES, false).readerFor(gasStationList);
-	}
+	private static final GasStationStreamReader READER = new GasStationStreamReader();
 
 	private final S3Client s3Client;
 	private final String dataLocation;
@@ -81,7 +68,8 @@ public class DataPreProcessor implements RequestHandler<Void, Void> {
 		try (InputStream dataStream = dataURL.openStream(); ZipInputStream zipInputStream = new ZipInputStream(dataStream)) {
 			zipInputStream.getNextEntry();
 			List<GasStation> gasStations = parse(zipInputStream);
-			removeNoPrices(gasStations);
+			joinNames(gasStations);
+			normalise(gasStations);
 			sortByLatitude(gasStations);
 			ByteArrayOutputStream byteArrayOutputStream = serialise(gasStations);
 			uploadToS3(byteArrayOutputStream);
@@ -90,13 +78,43 @@ public class DataPreProcessor implements RequestHandler<Void, Void> {
 
 	private List<GasStation> parse(InputStream inputStream) throws IOException {
 		LOGGER.info("Parsing gas station data");
-		return READER.readValue(inputStream);
+		// Gas stations without any prices are dropped whilst streaming, they are never accumulated.
+		List<GasStation> gasStations = new ArrayList<>();
+		int dropped = READER.read(inputStream, gasStations::add);
+		LOGGER.info("Removed {} gas stations which don't have any prices specified", dropped);
+		return gasStations;
 	}
 
-	private void removeNoPrices(List<GasStation> gasStations) {
-		int initialSize = gasStations.size();
-		gasStations.removeIf(gs -> gs.getPrices() == null);
-		LOGGER.info("Removed {} gas stations which don't have any prices specified", (initialSize - gasStations.size()));
+	private void joinNames(List<GasStation> gasStations) throws IOException {
+		LOGGER.info("Joining gas station names");
+		JavaType type = TypeFactory.defaultInstance().constructMapType(Map.class, String.class, String.class);
+		Map<String, String> idsToNames;
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(NAMES_RESOURCE)) {
+			if (inputStream == null) {
+				throw new IOException("Missing gas station id name mapping " + NAMES_RESOURCE);
+			}
+			idsToNames = new ObjectMapper().readerFor(type).readValue(inputStream);
+		}
+		int named = 0;
+		for (int i = 0; i < gasStations.size(); ++i) {
+			String name = idsToNames.get(gasStations.get(i).getId());
+			if (name != null) {
+				gasStations.set(i, gasStations.get(i).withName(name));
+				++named;
+			}
+		}
+		LOGGER.info("Named {} gas stations out of {}", named, gasStations.size());
+	}
+
+	private void normalise(List<GasStation> gasStations) {
+		LOGGER.info("Normalising gas station towns and addresses");
+		// Done once here rather than on every response, the skill speaks and displays them as they are.
+		for (int i = 0; i < gasStations.size(); ++i) {
+			GasStation gs = gasStations.get(i);
+			String town = gs.getTown() == null ? null : Normalisers.normaliseTown(gs.getTown());
+			String address = gs.getAddress() == null ? null : Normalisers.normaliseAddress(gs.getAddress());
+			gasStations.set(i, gs.withTownAndAddress(town, address));
+		}
 	}
 
 	private void sortByLatitude(List<GasStation> gasStations) {
@@ -108,9 +126,7 @@ public class DataPreProcessor implements RequestHandler<Void, Void> {
 		LOGGER.info("Serialising {} gas stations", gasStations.size());
 		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 		try (DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(byteArrayOutputStream)) {
-			ProtostuffIOUtil.writeListTo(deflaterOutputStream, gasStations, SCHEMA, BUFFER);
-		} finally {
-			BUFFER.clear();
+			StationTable.of(gasStations).writeTo(deflaterOutputStream);
 		}
 		return byteArrayOutputStream;
 	}
@@ -0,0 +1,126 @@
+package io.github.pyvesb.alexaecopompe.data.unmarshal;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.Price;
+
+/**
+ * Streams the gas station feed one pdv element at a time. Only the elements the skill uses are read, everything else
+ * (services, horaires, ruptures, etc.) is skipped without being buffered, so memory usage doesn't depend on the size of
+ * the feed.
+ */
+public class GasStationStreamReader {
+
+	private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+	static {
+		FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	/**
+	 * Passes every gas station with at least one price to the consumer.
+	 *
+	 * @return the number of gas stations which were dropped because they didn't have any prices
+	 */
+	public int read(InputStream inputStream, Consumer<GasStation> consumer) throws IOException {
+		int dropped = 0;
+		try {
+			XMLStreamReader reader = FACTORY.createXMLStreamReader(inputStream);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == START_ELEMENT && "pdv".equals(reader.getLocalName())) {
+						GasStation gasStation = readGasStation(reader);
+						if (gasStation == null) {
+							++dropped;
+						} else {
+							consumer.accept(gasStation);
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+		return dropped;
+	}
+
+	private GasStation readGasStation(XMLStreamReader reader) throws XMLStreamException {
+		String id = reader.getAttributeValue(null, "id");
+		float latitude = parseFloat(reader.getAttributeValue(null, "latitude"));
+		float longitude = parseFloat(reader.getAttributeValue(null, "longitude"));
+		String postCode = reader.getAttributeValue(null, "cp");
+		String address = null;
+		String town = null;
+		List<Price> prices = new ArrayList<>();
+		while (reader.nextTag() == START_ELEMENT) {
+			switch (reader.getLocalName()) {
+				case "adresse":
+					address = reader.getElementText();
+					break;
+				case "ville":
+					town = reader.getElementText();
+					break;
+				case "prix":
+					Price price = readPrice(reader);
+					if (price != null) {
+						prices.add(price);
+					}
+					break;
+				default:
+					skipElement(reader);
+			}
+		}
+		return prices.isEmpty() ? null : new GasStation(id, latitude, longitude, postCode, town, address, prices);
+	}
+
+	private Price readPrice(XMLStreamReader reader) throws XMLStreamException {
+		String id = reader.getAttributeValue(null, "id");
+		String updated = reader.getAttributeValue(null, "maj");
+		String value = reader.getAttributeValue(null, "valeur");
+		skipElement(reader);
+		if (id == null || updated == null || value == null) {
+			return null;
+		}
+		return new Price(GasType.fromId(id), parseDate(updated), Float.parseFloat(value));
+	}
+
+	static LocalDate parseDate(String dateTime) {
+		// Dates are formatted as "2018-05-06 16:55:36", only the date part is of interest.
+		return LocalDate.parse(dateTime.subSequence(0, 10));
+	}
+
+	private float parseFloat(String value) {
+		return value == null || value.isEmpty() ? 0f : Float.parseFloat(value);
+	}
+
+	private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		// The reader is positioned on a start element, move past the corresponding end element.
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == START_ELEMENT) {
+				++depth;
+			} else if (event == END_ELEMENT) {
+				--depth;
+			}
+		}
+	}
+
+}
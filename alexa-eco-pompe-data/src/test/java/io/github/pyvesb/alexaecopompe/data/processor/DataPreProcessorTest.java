@@ -19,15 +19,23 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -35,12 +43,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
 
-import io.github.pyvesb.alexaecopompe.data.processor.DataPreProcessor;
 import io.github.pyvesb.alexaecopompe.domain.GasStation;
 import io.github.pyvesb.alexaecopompe.domain.Price;
-import io.protostuff.ProtostuffIOUtil;
-import io.protostuff.Schema;
-import io.protostuff.runtime.RuntimeSchema;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
@@ -50,9 +55,9 @@ import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 class DataPreProcessorTest {
 
 	private static final String DATA_PATH = "/path/to/data";
+	private static final String FEED_FILE = "PrixCarburants_instantane.zip";
 	private static final LocalDate DATE1 = LocalDate.of(2018, Month.MARCH, 22);
 	private static final LocalDate DATE2 = LocalDate.of(2018, Month.MARCH, 23);
-	private static final Schema<GasStation> GAS_STATION_SCHEMA = RuntimeSchema.getSchema(GasStation.class);
 
 	private final WireMockServer wireMockServer = new WireMockServer(options().port(8089));
 
@@ -84,7 +89,7 @@ class DataPreProcessorTest {
 				.willReturn(aResponse()
 						.withStatus(HTTP_OK)
 						.withHeader("Content-Type", "application/octet-stream")
-						.withBodyFile("PrixCarburants_instantane.zip")));
+						.withBodyFile(FEED_FILE)));
 
 		underTest.handleRequest(null, null);
 
@@ -96,20 +101,45 @@ class DataPreProcessorTest {
 		assertEquals(ObjectCannedACL.PUBLIC_READ, putObjectRequest.acl());
 
 		RequestBody requestBody = requestBodyCaptor.getValue();
-		assertEquals(212L, requestBody.contentLength());
+		assertEquals(241L, requestBody.contentLength());
 
-		GasStation gs1 = new GasStation("7340002", 4525743f, 469631.2f, "07430", "Davézieux", "LE MAS OUEST - RTE DE LYON",
+		GasStation gs1 = new GasStation("7340002", 4525743f, 469631.2f, "07430", "Davézieux", "Le Mas Ouest - Rte De Lyon",
 				new Price(GAZOLE, DATE2, 1.389f), new Price(E85, DATE2, 0.749f), new Price(E10, DATE2, 1.448f));
-		GasStation gs2 = new GasStation("94470005", 4875500f, 250500f, "94470", "Boissy-Saint-Léger",
-				"Avenue du Général Leclerc", new Price(GAZOLE, DATE1, 1.439f), new Price(E10, DATE1, 1.549f),
-				new Price(SP98, DATE1, 1.599f));
+		GasStation gs2 = new GasStation("94470005", "Pyves Gas", 4875500f, 250500f, "94470", "Boissy-Saint-Léger",
+				"Avenue Du Général Leclerc", asList(new Price(GAZOLE, DATE1, 1.439f), new Price(E10, DATE1, 1.549f),
+						new Price(SP98, DATE1, 1.599f)));
 		try (InflaterInputStream inputStream = new InflaterInputStream(requestBody.contentStreamProvider().newStream())) {
-			List<GasStation> actualGasStations = ProtostuffIOUtil.parseListFrom(inputStream, GAS_STATION_SCHEMA);
-			assertEquals(asList(gs1, gs2), actualGasStations);
+			assertEquals(asList(gs1, gs2), toList(StationTable.readFrom(inputStream)));
 		}
 		verifyNoMoreInteractions(s3Client);
 	}
 
+	@ParameterizedTest
+	@CsvSource({ "PARIS, 2/10 BLD FORT DE VAUX, Paris, 2 Boulevard Fort De Vaux",
+			"PéRIGUEUX, AV INFANTERIE DE MARINE, Périgueux, Avenue Infanterie De Marine",
+			"BRIIS S/FORGES, ZAC de St Estève, Briis Sur Forges, Z.A.C. De St Estève",
+			"AMIENS CEDEX 2, 459 AV.DE LA JUSTICE, Amiens, 459 Avenue de La Justice" })
+	void shouldStoreNormalisedTownsAndAddresses(String town, String address, String normalisedTown,
+			String normalisedAddress) throws Exception {
+		wireMockServer.stubFor(get(urlEqualTo(DATA_PATH))
+				.willReturn(aResponse()
+						.withStatus(HTTP_OK)
+						.withHeader("Content-Type", "application/octet-stream")
+						.withBody(zipFeed(town, address))));
+
+		underTest.handleRequest(null, null);
+
+		verify(s3Client).putObject(any(PutObjectRequest.class), requestBodyCaptor.capture());
+
+		try (InflaterInputStream inputStream = new InflaterInputStream(
+				requestBodyCaptor.getValue().contentStreamProvider().newStream())) {
+			StationTable stationTable = StationTable.readFrom(inputStream);
+			assertEquals(1, stationTable.size());
+			assertEquals(normalisedTown, stationTable.getTown(0));
+			assertEquals(normalisedAddress, stationTable.getAddress(0));
+		}
+	}
+
 	@Test
 	void shouldFilterOutGasStationsWithoutAnyPrices() throws Exception {
 		wireMockServer.stubFor(get(urlEqualTo(DATA_PATH))
@@ -123,11 +153,10 @@ class DataPreProcessorTest {
 		verify(s3Client).putObject(any(PutObjectRequest.class), requestBodyCaptor.capture());
 
 		RequestBody requestBody = requestBodyCaptor.getValue();
-		assertEquals(8L, requestBody.contentLength());
+		assertEquals(21L, requestBody.contentLength());
 
 		try (InflaterInputStream inputStream = new InflaterInputStream(requestBody.contentStreamProvider().newStream())) {
-			List<GasStation> actualGasStations = ProtostuffIOUtil.parseListFrom(inputStream, GAS_STATION_SCHEMA);
-			assertEquals(emptyList(), actualGasStations);
+			assertEquals(emptyList(), toList(StationTable.readFrom(inputStream)));
 		}
 	}
 
@@ -139,4 +168,26 @@ class DataPreProcessorTest {
 		verifyZeroInteractions(s3Client);
 	}
 
+	private static byte[] zipFeed(String town, String address) throws IOException {
+		String feed = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\" standalone=\"yes\"?>\n<pdv_liste>\n"
+				+ "<pdv id=\"7340002\" latitude=\"4525742.8\" longitude=\"469631.2\" cp=\"07430\" pop=\"R\">\n"
+				+ "<adresse>" + address + "</adresse>\n<ville>" + town + "</ville>\n"
+				+ "<prix nom=\"Gazole\" id=\"1\" maj=\"2018-03-23 17:15:51\" valeur=\"1.389\"/>\n"
+				+ "</pdv>\n</pdv_liste>\n";
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		try (ZipOutputStream zipOutputStream = new ZipOutputStream(byteArrayOutputStream)) {
+			zipOutputStream.putNextEntry(new ZipEntry("PrixCarburants_instantane.xml"));
+			zipOutputStream.write(feed.getBytes(StandardCharsets.ISO_8859_1));
+		}
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	private static List<GasStation> toList(StationTable stationTable) {
+		List<GasStation> gasStations = new ArrayList<>();
+		for (int i = 0; i < stationTable.size(); ++i) {
+			gasStations.add(stationTable.getGasStation(i));
+		}
+		return gasStations;
+	}
+
 }
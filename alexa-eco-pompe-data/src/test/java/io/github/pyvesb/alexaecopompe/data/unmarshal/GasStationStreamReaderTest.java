@@ -0,0 +1,82 @@
+package io.github.pyvesb.alexaecopompe.data.unmarshal;
+
+import static io.github.pyvesb.alexaecopompe.domain.GasType.E10;
+import static io.github.pyvesb.alexaecopompe.domain.GasType.GAZOLE;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.Price;
+
+class GasStationStreamReaderTest {
+
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\" standalone=\"yes\"?>";
+
+	private final GasStationStreamReader underTest = new GasStationStreamReader();
+
+	@Test
+	void shouldReadGasStationsAndSkipUnusedElements() throws Exception {
+		String xml = HEADER + "<pdv_liste>"
+				+ "<pdv id=\"94470005\" latitude=\"4875500\" longitude=\"250500\" cp=\"94470\" pop=\"R\">"
+				+ "<adresse>Avenue du Général Leclerc</adresse><ville>Boissy-Saint-Léger</ville>"
+				+ "<horaires automate-24-24=\"\"><jour id=\"1\" nom=\"Lundi\" ferme=\"\"/></horaires>"
+				+ "<services><service>Toilettes publiques</service></services>"
+				+ "<prix nom=\"Gazole\" id=\"1\" maj=\"2018-03-22 17:36:03\" valeur=\"1.439\"/>"
+				+ "<rupture id=\"2\" nom=\"SP95\" debut=\"2018-03-01 10:00:00\" fin=\"\"/>"
+				+ "<prix nom=\"E10\" id=\"5\" maj=\"2018-03-23 08:01:00\" valeur=\"1.549\"/>"
+				+ "</pdv></pdv_liste>";
+
+		List<GasStation> gasStations = new ArrayList<>();
+		int dropped = underTest.read(toStream(xml), gasStations::add);
+
+		GasStation expected = new GasStation("94470005", 4875500f, 250500f, "94470", "Boissy-Saint-Léger",
+				"Avenue du Général Leclerc", new Price(GAZOLE, LocalDate.of(2018, Month.MARCH, 22), 1.439f),
+				new Price(E10, LocalDate.of(2018, Month.MARCH, 23), 1.549f));
+		assertEquals(asList(expected), gasStations);
+		assertEquals(0, dropped);
+	}
+
+	@Test
+	void shouldDropGasStationsWithoutAnyPrices() throws Exception {
+		String xml = HEADER + "<pdv_liste>"
+				+ "<pdv id=\"7340002\" latitude=\"4525742.8\" longitude=\"469631.2\" cp=\"07430\" pop=\"R\">"
+				+ "<adresse>LE MAS OUEST - RTE DE LYON</adresse><ville>Davézieux</ville><services/>"
+				+ "</pdv></pdv_liste>";
+
+		List<GasStation> gasStations = new ArrayList<>();
+		int dropped = underTest.read(toStream(xml), gasStations::add);
+
+		assertEquals(emptyList(), gasStations);
+		assertEquals(1, dropped);
+	}
+
+	@Test
+	void shouldThrowIOExceptionIfDocumentIsMalformed() {
+		String xml = HEADER + "<pdv_liste><pdv id=\"1\">";
+
+		assertThrows(IOException.class, () -> underTest.read(toStream(xml), gs -> {}));
+	}
+
+	@Test
+	void shouldParseDateTimeStringsAsLocalDates() {
+		assertEquals(LocalDate.of(2018, Month.MAY, 6), GasStationStreamReader.parseDate("2018-05-06 16:55:36"));
+	}
+
+	private static InputStream toStream(String xml) {
+		return new ByteArrayInputStream(xml.getBytes(ISO_8859_1));
+	}
+
+}
@@ -2,6 +2,7 @@ package io.github.pyvesb.alexaecopompe.domain;
 
 import static java.util.Arrays.asList;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -9,14 +10,17 @@ import java.util.Optional;
 public final class GasStation {
 
 	private static final float COORDINATE_SCALE_DOWN_FACTOR = 100000f;
+	private static final int GAS_TYPE_COUNT = GasType.values().length;
 
 	private final String id;
+	private final String name;
 	private final float latitude;
 	private final float longitude;
 	private final String postCode;
 	private final String town;
 	private final String address;
 	private final List<Price> prices;
+	private final PriceTable priceTable;
 
 	public GasStation(String id, float latitude, float longitude, String postCode, String town, String address,
 			Price... prices) {
@@ -25,7 +29,16 @@ public final class GasStation {
 
 	public GasStation(String id, float latitude, float longitude, String postCode, String town, String address,
 			List<Price> prices) {
+		this(id, null, latitude, longitude, postCode, town, address, prices);
+	}
+
+	/**
+	 * Creates a gas station with the given brand name, which may be null if it isn't known.
+	 */
+	public GasStation(String id, String name, float latitude, float longitude, String postCode, String town,
+			String address, List<Price> prices) {
 		this.id = id;
+		this.name = name;
 		// The input data has both coordinate values scaled up by 100000.
 		this.latitude = latitude / COORDINATE_SCALE_DOWN_FACTOR;
 		this.longitude = longitude / COORDINATE_SCALE_DOWN_FACTOR;
@@ -33,12 +46,43 @@ public final class GasStation {
 		this.town = town;
 		this.address = address;
 		this.prices = prices;
+		this.priceTable = new PriceTable(prices);
+	}
+
+	private GasStation(GasStation gasStation, String name, String town, String address) {
+		this.id = gasStation.id;
+		this.name = name;
+		this.latitude = gasStation.latitude;
+		this.longitude = gasStation.longitude;
+		this.postCode = gasStation.postCode;
+		this.town = town;
+		this.address = address;
+		this.prices = gasStation.prices;
+		this.priceTable = gasStation.priceTable;
+	}
+
+	/**
+	 * Returns a copy of this gas station with the given brand name, which may be null if it isn't known.
+	 */
+	public GasStation withName(String name) {
+		return new GasStation(this, name, town, address);
+	}
+
+	/**
+	 * Returns a copy of this gas station with the given town and address, for instance once normalised.
+	 */
+	public GasStation withTownAndAddress(String town, String address) {
+		return new GasStation(this, name, town, address);
 	}
 
 	public String getId() {
 		return id;
 	}
 
+	public Optional<String> getName() {
+		return Optional.ofNullable(name);
+	}
+
 	public float getLat() {
 		return latitude;
 	}
@@ -64,12 +108,31 @@ public final class GasStation {
 	}
 
 	public Optional<Price> getPriceForGasType(GasType gasType) {
-		return prices.stream().filter(p -> p.getType() == gasType).findAny();
+		return Optional.ofNullable(priceTable.prices[gasType.ordinal()]);
+	}
+
+	public boolean hasPrice(GasType gasType) {
+		return priceTable.prices[gasType.ordinal()] != null;
+	}
+
+	/**
+	 * Returns the price value for the given gas type, or NaN if the gas station doesn't sell it.
+	 */
+	public float getPriceValue(GasType gasType) {
+		return priceTable.values[gasType.ordinal()];
+	}
+
+	/**
+	 * Returns the day the price for the given gas type was last updated, as an epoch day. Only meaningful if the gas
+	 * station sells it.
+	 */
+	public long getUpdatedEpochDay(GasType gasType) {
+		return priceTable.updatedEpochDays[gasType.ordinal()];
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(id, latitude, longitude, postCode, town, address, prices);
+		return Objects.hash(id, name, latitude, longitude, postCode, town, address, prices);
 	}
 
 	@Override
@@ -84,7 +147,8 @@ public final class GasStation {
 			return false;
 		}
 		GasStation other = (GasStation) obj;
-		return Objects.equals(id, other.id) && Float.compare(latitude, other.latitude) == 0
+		return Objects.equals(id, other.id) && Objects.equals(name, other.name)
+				&& Float.compare(latitude, other.latitude) == 0
 				&& Float.compare(longitude, other.longitude) == 0 && Objects.equals(postCode, other.postCode)
 				&& Objects.equals(town, other.town) && Objects.equals(address, other.address)
 				&& Objects.equals(prices, other.prices);
@@ -92,8 +156,31 @@ public final class GasStation {
 
 	@Override
 	public String toString() {
-		return "GasStation [id=" + id + ", latitude=" + latitude + ", longitude=" + longitude + ", postCode=" + postCode
-				+ ", town=" + town + ", address=" + address + ", prices=" + prices + "]";
+		return "GasStation [id=" + id + ", name=" + name + ", latitude=" + latitude + ", longitude=" + longitude
+				+ ", postCode=" + postCode + ", town=" + town + ", address=" + address + ", prices=" + prices + "]";
+	}
+
+	/**
+	 * Prices indexed by gas type ordinal, so that they can be looked up without iterating over the list.
+	 */
+	private static final class PriceTable {
+
+		private final Price[] prices = new Price[GAS_TYPE_COUNT];
+		private final float[] values = new float[GAS_TYPE_COUNT];
+		private final long[] updatedEpochDays = new long[GAS_TYPE_COUNT];
+
+		PriceTable(List<Price> priceList) {
+			Arrays.fill(values, Float.NaN);
+			for (Price price : priceList) {
+				int type = price.getType().ordinal();
+				// Keeps the first price of each type, should the feed list several.
+				if (prices[type] == null) {
+					prices[type] = price;
+					values[type] = price.getValue();
+					updatedEpochDays[type] = price.getUpdated().toEpochDay();
+				}
+			}
+		}
 	}
 
 }
@@ -0,0 +1,502 @@
+package io.github.pyvesb.alexaecopompe.domain;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Struct-of-arrays representation of a list of gas stations sorted by latitude, as serialised by the data preprocessor
+ * and read by the skill. Each column is a sequence of primitive values indexed by station, strings are deduplicated
+ * and stored once in a single UTF-8 table. The table also embeds a post code index, so that lookups can be served
+ * straight from the underlying buffer, which can be memory-mapped from a file. No per-station objects are created
+ * until {@link #getGasStation(int)} is called. The centroid of the stations of each post code is precomputed, so that
+ * post codes can be located without any geocoding.
+ *
+ * Binary layout (big-endian, all sections 4-byte aligned): header, latitude, longitude, id, post code, town, address
+ * and name columns, price columns (one per gas type), sorted post codes, post code range starts, stations grouped by
+ * post code, post code centroid latitudes and longitudes, string offsets, update day columns (one per gas type,
+ * padded) and finally the string bytes. Gas stations without a known name refer to the empty string, and missing
+ * prices are stored as -1, so that a price of 0 is still a price. Towns and addresses are stored as normalised for
+ * speech by the data preprocessor, so that they can be spoken as they are.
+ */
+public final class StationTable {
+
+	private static final int MAGIC = 0x45434F50; // "ECOP"
+	private static final int VERSION = 7;
+	private static final int HEADER_INTS = 7;
+	private static final GasType[] GAS_TYPES = GasType.values();
+	// Coordinates are stored in millionths of degrees, prices in thousandths of euros.
+	private static final double MICRO_DEGREES_PER_FEED_UNIT = 10d;
+	private static final float COORDINATE_SCALE_DOWN_FACTOR = 100000f;
+	private static final float PRICE_SCALE = 1000f;
+	// Outside of the range of valid prices, which cannot be negative.
+	private static final int NO_PRICE = -1;
+
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int postCodeCount;
+	private final int latitudes;
+	private final int longitudes;
+	private final int ids;
+	private final int postCodes;
+	private final int towns;
+	private final int addresses;
+	private final int names;
+	private final int prices;
+	private final int sortedPostCodes;
+	private final int postCodeStarts;
+	private final int stationsByPostCode;
+	private final int postCodeLatitudes;
+	private final int postCodeLongitudes;
+	private final int stringOffsets;
+	private final int updatedDays;
+	private final int strings;
+
+	private StationTable(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_INTS * Integer.BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a gas station table");
+		}
+		int version = buffer.getInt(4);
+		if (version != VERSION) {
+			throw new IOException("Unsupported gas station table version " + version);
+		}
+		size = buffer.getInt(8);
+		int gasTypes = buffer.getInt(12);
+		if (gasTypes != GAS_TYPES.length) {
+			throw new IOException("Unexpected number of gas types " + gasTypes);
+		}
+		int stringCount = buffer.getInt(16);
+		int stringBytes = buffer.getInt(20);
+		postCodeCount = buffer.getInt(24);
+		latitudes = HEADER_INTS * Integer.BYTES;
+		longitudes = latitudes + size * Integer.BYTES;
+		ids = longitudes + size * Integer.BYTES;
+		postCodes = ids + size * Integer.BYTES;
+		towns = postCodes + size * Integer.BYTES;
+		addresses = towns + size * Integer.BYTES;
+		names = addresses + size * Integer.BYTES;
+		prices = names + size * Integer.BYTES;
+		sortedPostCodes = prices + GAS_TYPES.length * size * Integer.BYTES;
+		postCodeStarts = sortedPostCodes + postCodeCount * Integer.BYTES;
+		stationsByPostCode = postCodeStarts + (postCodeCount + 1) * Integer.BYTES;
+		postCodeLatitudes = stationsByPostCode + size * Integer.BYTES;
+		postCodeLongitudes = postCodeLatitudes + postCodeCount * Integer.BYTES;
+		stringOffsets = postCodeLongitudes + postCodeCount * Integer.BYTES;
+		updatedDays = stringOffsets + (stringCount + 1) * Integer.BYTES;
+		strings = updatedDays + (int) align(GAS_TYPES.length * size * Short.BYTES);
+		if (buffer.capacity() != strings + stringBytes) {
+			throw new IOException("Truncated gas station table");
+		}
+	}
+
+	public static StationTable of(List<GasStation> gasStationsSortedByLat) {
+		try {
+			return new StationTable(new Writer(gasStationsSortedByLat).write());
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // Not possible, the table was just built.
+		}
+	}
+
+	public static StationTable readFrom(InputStream inputStream) throws IOException {
+		// The header specifies the size of every section, the whole table can be read in one go.
+		DataInputStream dataInputStream = new DataInputStream(inputStream);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * Integer.BYTES);
+		dataInputStream.readFully(header.array());
+		if (header.getInt(0) != MAGIC) {
+			throw new IOException("Not a gas station table");
+		}
+		long size = header.getInt(8);
+		long gasTypes = header.getInt(12);
+		long stringCount = header.getInt(16);
+		long stringBytes = header.getInt(20);
+		long postCodeCount = header.getInt(24);
+		long totalBytes = Integer.BYTES * (HEADER_INTS + size * (8 + gasTypes) + 4 * postCodeCount + 1 + stringCount
+				+ 1) + align(gasTypes * size * Short.BYTES) + stringBytes;
+		if (totalBytes < header.capacity() || totalBytes > Integer.MAX_VALUE) {
+			throw new IOException("Corrupted gas station table");
+		}
+		byte[] table = Arrays.copyOf(header.array(), (int) totalBytes);
+		dataInputStream.readFully(table, header.capacity(), table.length - header.capacity());
+		return new StationTable(ByteBuffer.wrap(table));
+	}
+
+	public static StationTable map(Path path) throws IOException {
+		try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// The mapping remains valid after the channel is closed.
+			return new StationTable(fileChannel.map(MapMode.READ_ONLY, 0, fileChannel.size()));
+		}
+	}
+
+	public void writeTo(OutputStream outputStream) throws IOException {
+		ByteBuffer view = buffer.duplicate();
+		view.clear();
+		byte[] chunk = new byte[8192];
+		while (view.hasRemaining()) {
+			int length = Math.min(chunk.length, view.remaining());
+			view.get(chunk, 0, length);
+			outputStream.write(chunk, 0, length);
+		}
+		outputStream.flush();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public float getLat(int station) {
+		return toDegrees(getInt(latitudes, station));
+	}
+
+	public float getLon(int station) {
+		return toDegrees(getInt(longitudes, station));
+	}
+
+	public String getId(int station) {
+		return getString(getInt(ids, station));
+	}
+
+	public String getPostCode(int station) {
+		return getString(getInt(postCodes, station));
+	}
+
+	public String getTown(int station) {
+		return getString(getInt(towns, station));
+	}
+
+	public String getAddress(int station) {
+		return getString(getInt(addresses, station));
+	}
+
+	public Optional<String> getName(int station) {
+		String name = getString(getInt(names, station));
+		return name.isEmpty() ? Optional.empty() : Optional.of(name);
+	}
+
+	public boolean hasPrice(int station, GasType gasType) {
+		return getPriceMillis(station, gasType) != NO_PRICE;
+	}
+
+	public float getPrice(int station, GasType gasType) {
+		return getPriceMillis(station, gasType) / PRICE_SCALE;
+	}
+
+	public long getUpdatedEpochDay(int station, GasType gasType) {
+		return buffer.getShort(updatedDays + (gasType.ordinal() * size + station) * Short.BYTES);
+	}
+
+	/**
+	 * Returns the station at the given position when stations are grouped by post code. Stations which share the same
+	 * post code prefix are contiguous, see {@link #getPostCodeRangeStart(String)} and
+	 * {@link #getPostCodeRangeEnd(String)}.
+	 */
+	public int getStationOrderedByPostCode(int position) {
+		return getInt(stationsByPostCode, position);
+	}
+
+	/**
+	 * Returns the first position, in post code order, of the stations whose post code starts with the given prefix.
+	 */
+	public int getPostCodeRangeStart(String postCodePrefix) {
+		return getInt(postCodeStarts, findFirstPostCode(postCodePrefix.getBytes(UTF_8), false));
+	}
+
+	/**
+	 * Returns the position after the last one, in post code order, of the stations whose post code starts with the
+	 * given prefix. The range is empty if no post codes match.
+	 */
+	public int getPostCodeRangeEnd(String postCodePrefix) {
+		return getInt(postCodeStarts, findFirstPostCode(postCodePrefix.getBytes(UTF_8), true));
+	}
+
+	/**
+	 * Returns the number of distinct post codes, indexed from 0 in post code order.
+	 */
+	public int getPostCodeCount() {
+		return postCodeCount;
+	}
+
+	/**
+	 * Returns the first position, in post code order, of the stations with the post code at the given index. Passing
+	 * the number of post codes returns the number of stations, so that each post code ends where the next one starts.
+	 */
+	public int getPostCodeStart(int postCodeIndex) {
+		return getInt(postCodeStarts, postCodeIndex);
+	}
+
+	/**
+	 * Returns the index of the first post code starting with the given prefix.
+	 */
+	public int getPostCodeIndexRangeStart(String postCodePrefix) {
+		return findFirstPostCode(postCodePrefix.getBytes(UTF_8), false);
+	}
+
+	/**
+	 * Returns the index after the last post code starting with the given prefix. The range is empty if no post codes
+	 * match.
+	 */
+	public int getPostCodeIndexRangeEnd(String postCodePrefix) {
+		return findFirstPostCode(postCodePrefix.getBytes(UTF_8), true);
+	}
+
+	/**
+	 * Returns the index of the given post code, to be passed to {@link #getPostCodeLat(int)} and
+	 * {@link #getPostCodeLon(int)}, or -1 if no stations have this exact post code.
+	 */
+	public int findPostCode(String postCode) {
+		byte[] bytes = postCode.getBytes(UTF_8);
+		int index = findFirstPostCode(bytes, false);
+		if (index < postCodeCount && comparePrefix(getInt(sortedPostCodes, index), bytes) == 0) {
+			int stringIndex = getInt(sortedPostCodes, index);
+			if (getInt(stringOffsets, stringIndex + 1) - getInt(stringOffsets, stringIndex) == bytes.length) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the mean latitude of the stations sharing the post code with the given index.
+	 */
+	public float getPostCodeLat(int postCodeIndex) {
+		return toDegrees(getInt(postCodeLatitudes, postCodeIndex));
+	}
+
+	/**
+	 * Returns the mean longitude of the stations sharing the post code with the given index.
+	 */
+	public float getPostCodeLon(int postCodeIndex) {
+		return toDegrees(getInt(postCodeLongitudes, postCodeIndex));
+	}
+
+	public GasStation getGasStation(int station) {
+		List<Price> stationPrices = new ArrayList<>();
+		for (GasType gasType : GAS_TYPES) {
+			if (hasPrice(station, gasType)) {
+				stationPrices.add(new Price(gasType, LocalDate.ofEpochDay(getUpdatedEpochDay(station, gasType)),
+						getPrice(station, gasType)));
+			}
+		}
+		return new GasStation(getId(station), getName(station).orElse(null), toFeedUnits(getInt(latitudes, station)),
+				toFeedUnits(getInt(longitudes, station)), getPostCode(station), getTown(station), getAddress(station),
+				stationPrices);
+	}
+
+	private int getPriceMillis(int station, GasType gasType) {
+		return buffer.getInt(prices + (gasType.ordinal() * size + station) * Integer.BYTES);
+	}
+
+	private int getInt(int section, int index) {
+		return buffer.getInt(section + index * Integer.BYTES);
+	}
+
+	private String getString(int index) {
+		int start = getInt(stringOffsets, index);
+		byte[] bytes = new byte[getInt(stringOffsets, index + 1) - start];
+		// Bulk copy from a duplicate, so that concurrent readers don't share the position of the buffer.
+		ByteBuffer view = buffer.duplicate();
+		view.position(strings + start);
+		view.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private int findFirstPostCode(byte[] prefix, boolean overPrefix) {
+		// Binary search for the first post code which is greater or equal to the prefix (or strictly greater than all
+		// post codes starting with the prefix), comparing raw UTF-8 bytes straight from the buffer.
+		int low = 0;
+		int high = postCodeCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int comparison = comparePrefix(getInt(sortedPostCodes, middle), prefix);
+			if (comparison < 0 || overPrefix && comparison == 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private int comparePrefix(int stringIndex, byte[] prefix) {
+		int start = getInt(stringOffsets, stringIndex);
+		int length = getInt(stringOffsets, stringIndex + 1) - start;
+		for (int i = 0; i < prefix.length; ++i) {
+			if (i == length) {
+				return -1;
+			}
+			int comparison = Integer.compare(buffer.get(strings + start + i) & 0xFF, prefix[i] & 0xFF);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return 0;
+	}
+
+	private static long align(long bytes) {
+		return (bytes + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+	}
+
+	private static int toMicroDegrees(float degrees) {
+		return (int) Math.round(degrees * (double) COORDINATE_SCALE_DOWN_FACTOR * MICRO_DEGREES_PER_FEED_UNIT);
+	}
+
+	private static float toFeedUnits(int microDegrees) {
+		// GasStation expects coordinates in the same units as the input feed, i.e. scaled up by 100000.
+		return (float) (microDegrees / MICRO_DEGREES_PER_FEED_UNIT);
+	}
+
+	private static float toDegrees(int microDegrees) {
+		// Same computation as GasStation's constructor, so that both representations agree.
+		return toFeedUnits(microDegrees) / COORDINATE_SCALE_DOWN_FACTOR;
+	}
+
+	private static final class Writer {
+
+		private final List<GasStation> gasStations;
+		private final Map<String, Integer> stringIndexes = new HashMap<>();
+		private final List<byte[]> stringValues = new ArrayList<>();
+
+		Writer(List<GasStation> gasStations) {
+			this.gasStations = gasStations;
+		}
+
+		ByteBuffer write() {
+			int size = gasStations.size();
+			int[] latitudes = new int[size];
+			int[] longitudes = new int[size];
+			int[] ids = new int[size];
+			int[] postCodes = new int[size];
+			int[] towns = new int[size];
+			int[] addresses = new int[size];
+			int[] names = new int[size];
+			int[][] prices = new int[GAS_TYPES.length][size];
+			short[][] updatedDays = new short[GAS_TYPES.length][size];
+			for (int[] column : prices) {
+				Arrays.fill(column, NO_PRICE);
+			}
+			for (int i = 0; i < size; ++i) {
+				GasStation gs = gasStations.get(i);
+				latitudes[i] = toMicroDegrees(gs.getLat());
+				longitudes[i] = toMicroDegrees(gs.getLon());
+				ids[i] = addString(gs.getId());
+				postCodes[i] = addString(gs.getPostCode());
+				towns[i] = addString(gs.getTown());
+				addresses[i] = addString(gs.getAddress());
+				names[i] = addString(gs.getName().orElse(null));
+				for (Price price : gs.getPrices()) {
+					int type = price.getType().ordinal();
+					prices[type][i] = Math.round(price.getValue() * PRICE_SCALE);
+					updatedDays[type][i] = (short) price.getUpdated().toEpochDay();
+				}
+			}
+			int[] sortedPostCodes = Arrays.stream(postCodes).distinct().boxed()
+					.sorted((pc1, pc2) -> compareBytes(stringValues.get(pc1), stringValues.get(pc2)))
+					.mapToInt(Integer::intValue).toArray();
+			int[] postCodeStarts = new int[sortedPostCodes.length + 1];
+			int[] stationsByPostCode = groupByPostCode(postCodes, sortedPostCodes, postCodeStarts);
+			int[] postCodeLatitudes = computeCentroids(latitudes, stationsByPostCode, postCodeStarts);
+			int[] postCodeLongitudes = computeCentroids(longitudes, stationsByPostCode, postCodeStarts);
+			ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+			int[] stringOffsets = new int[stringValues.size() + 1];
+			for (int i = 0; i < stringValues.size(); ++i) {
+				stringOffsets[i] = stringBytes.size();
+				stringBytes.write(stringValues.get(i), 0, stringValues.get(i).length);
+			}
+			stringOffsets[stringValues.size()] = stringBytes.size();
+
+			int totalBytes = Integer.BYTES * (HEADER_INTS + size * (8 + GAS_TYPES.length) + 4 * sortedPostCodes.length
+					+ 1 + stringOffsets.length) + (int) align(GAS_TYPES.length * size * Short.BYTES)
+					+ stringBytes.size();
+			ByteBuffer buffer = ByteBuffer.allocate(totalBytes);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(GAS_TYPES.length).putInt(stringValues.size())
+					.putInt(stringBytes.size()).putInt(sortedPostCodes.length);
+			for (int[] column : Arrays.asList(latitudes, longitudes, ids, postCodes, towns, addresses, names)) {
+				buffer.asIntBuffer().put(column);
+				buffer.position(buffer.position() + column.length * Integer.BYTES);
+			}
+			for (int[] column : prices) {
+				buffer.asIntBuffer().put(column);
+				buffer.position(buffer.position() + column.length * Integer.BYTES);
+			}
+			for (int[] column : Arrays.asList(sortedPostCodes, postCodeStarts, stationsByPostCode, postCodeLatitudes,
+					postCodeLongitudes, stringOffsets)) {
+				buffer.asIntBuffer().put(column);
+				buffer.position(buffer.position() + column.length * Integer.BYTES);
+			}
+			for (short[] column : updatedDays) {
+				buffer.asShortBuffer().put(column);
+				buffer.position(buffer.position() + column.length * Short.BYTES);
+			}
+			buffer.position((int) align(buffer.position()));
+			buffer.put(stringBytes.toByteArray());
+			buffer.clear();
+			return buffer;
+		}
+
+		private int addString(String value) {
+			return stringIndexes.computeIfAbsent(value == null ? "" : value, v -> {
+				stringValues.add(v.getBytes(UTF_8));
+				return stringValues.size() - 1;
+			});
+		}
+
+		private static int[] groupByPostCode(int[] postCodes, int[] sortedPostCodes, int[] postCodeStarts) {
+			// Counting sort of the stations by post code rank, which keeps them in latitude order within a post code.
+			Map<Integer, Integer> ranks = new HashMap<>();
+			for (int rank = 0; rank < sortedPostCodes.length; ++rank) {
+				ranks.put(sortedPostCodes[rank], rank);
+			}
+			for (int postCode : postCodes) {
+				++postCodeStarts[ranks.get(postCode) + 1];
+			}
+			for (int rank = 0; rank < sortedPostCodes.length; ++rank) {
+				postCodeStarts[rank + 1] += postCodeStarts[rank];
+			}
+			int[] next = Arrays.copyOf(postCodeStarts, sortedPostCodes.length);
+			int[] stationsByPostCode = new int[postCodes.length];
+			for (int station = 0; station < postCodes.length; ++station) {
+				stationsByPostCode[next[ranks.get(postCodes[station])]++] = station;
+			}
+			return stationsByPostCode;
+		}
+
+		private static int[] computeCentroids(int[] coordinates, int[] stationsByPostCode, int[] postCodeStarts) {
+			int[] centroids = new int[postCodeStarts.length - 1];
+			for (int rank = 0; rank < centroids.length; ++rank) {
+				long sum = 0;
+				for (int position = postCodeStarts[rank]; position < postCodeStarts[rank + 1]; ++position) {
+					sum += coordinates[stationsByPostCode[position]];
+				}
+				centroids[rank] = (int) Math.round((double) sum / (postCodeStarts[rank + 1] - postCodeStarts[rank]));
+			}
+			return centroids;
+		}
+
+		private static int compareBytes(byte[] bytes1, byte[] bytes2) {
+			for (int i = 0; i < Math.min(bytes1.length, bytes2.length); ++i) {
+				int comparison = Integer.compare(bytes1[i] & 0xFF, bytes2[i] & 0xFF);
+				if (comparison != 0) {
+					return comparison;
+				}
+			}
+			return Integer.compare(bytes1.length, bytes2.length);
+		}
+	}
+
+}
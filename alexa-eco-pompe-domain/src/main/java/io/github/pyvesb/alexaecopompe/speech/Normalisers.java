@@ -2,7 +2,6 @@ package io.github.pyvesb.alexaecopompe.speech;
 
 import java.util.regex.Pattern;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.WordUtils;
 
 public class Normalisers {
@@ -13,17 +12,19 @@ public class Normalisers {
 	private static final String[] TOWN_REPLACEMENTS = new String[] { "Mont ", "Sur ", "," };
 	private static final String[] ADDRESS_REPLACEES = new String[] { "Bld.", "Bld ", "Bd ", "Av.", "Av ", "Ave ", "Rn ", "Rd ", "Za ", "Zac ", ",", "S/ ", "/" };
 	private static final String[] ADDRESS_REPLACEMENTS = new String[] { "Boulevard ", "Boulevard ", "Boulevard ", "Avenue ", "Avenue ","Avenue ", "RN ", "RD ", "Z.A. ", "Z.A.C. ", "", "Sur ", "," };
+	private static final TextReplacer TOWN_REPLACER = new TextReplacer(TOWN_REPLACEES, TOWN_REPLACEMENTS);
+	private static final TextReplacer ADDRESS_REPLACER = new TextReplacer(ADDRESS_REPLACEES, ADDRESS_REPLACEMENTS);
 
 	public static String normaliseTown(String town) {
 		String capitalized = WordUtils.capitalizeFully(town, ' ', '-', '\'', '/');
 		String capitalizedWithoutCedex = TOWN_CEDEX.matcher(capitalized).replaceAll("");
-		return StringUtils.replaceEach(capitalizedWithoutCedex, TOWN_REPLACEES, TOWN_REPLACEMENTS);
+		return TOWN_REPLACER.replace(capitalizedWithoutCedex);
 	}
 
 	public static String normaliseAddress(String address) {
 		String capitalized = WordUtils.capitalizeFully(address, ' ', '-', '\'');
 		String capitalizedWithoutComplement = ADDRESS_COMPLEMENT.matcher(capitalized).replaceAll("");
-		return StringUtils.replaceEach(capitalizedWithoutComplement, ADDRESS_REPLACEES, ADDRESS_REPLACEMENTS);
+		return ADDRESS_REPLACER.replace(capitalizedWithoutComplement);
 	}
 
 	private Normalisers() {
@@ -0,0 +1,154 @@
+package io.github.pyvesb.alexaecopompe.speech;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replaces several search strings at once, with the same results as
+ * {@link org.apache.commons.lang3.StringUtils#replaceEach(String, String[], String[])}: the text is scanned from left
+ * to right, the earliest occurrence of any search string is replaced, the first search string in the list winning when
+ * several start at the same index, and the scan resumes after the replaced occurrence. The search strings are compiled
+ * once into a trie, so that the text is scanned in a single pass rather than once per search string. Search strings
+ * being short, walking the trie from each index of the text is bounded by the length of the longest one. Instances are
+ * immutable and thread-safe.
+ */
+public final class TextReplacer {
+
+	private final String[] searchStrings;
+	private final String[] replacements;
+	// Trie of the search strings, with the labels of the children of each node sorted.
+	private final char[][] labels;
+	private final int[][] children;
+	// Lowest index of the search strings ending at each node, -1 if none.
+	private final int[] searchIndices;
+	// Children of the root indexed by their label minus the lowest one, -1 if none, so that most characters of the
+	// text are rejected by a single lookup.
+	private final char firstLabel;
+	private final int[] rootChildren;
+
+	/**
+	 * Compiles the search strings, null or empty ones and ones with a null replacement being ignored.
+	 *
+	 * @throws IllegalArgumentException if the lists have different lengths
+	 */
+	public TextReplacer(String[] searchList, String[] replacementList) {
+		if (searchList.length != replacementList.length) {
+			throw new IllegalArgumentException("Search and replacement lists must have the same length, got "
+					+ searchList.length + " and " + replacementList.length);
+		}
+		searchStrings = searchList.clone();
+		replacements = replacementList.clone();
+		List<TreeMap<Character, Integer>> nodes = new ArrayList<>();
+		List<Integer> indices = new ArrayList<>();
+		nodes.add(new TreeMap<>());
+		indices.add(-1);
+		for (int i = 0; i < searchList.length; ++i) {
+			if (searchList[i] == null || searchList[i].isEmpty() || replacementList[i] == null) {
+				continue;
+			}
+			int node = 0;
+			for (char c : searchList[i].toCharArray()) {
+				Integer child = nodes.get(node).get(c);
+				if (child == null) {
+					child = nodes.size();
+					nodes.get(node).put(c, child);
+					nodes.add(new TreeMap<>());
+					indices.add(-1);
+				}
+				node = child;
+			}
+			if (indices.get(node) < 0) {
+				indices.set(node, i);
+			}
+		}
+		labels = new char[nodes.size()][];
+		children = new int[nodes.size()][];
+		searchIndices = new int[nodes.size()];
+		for (int node = 0; node < nodes.size(); ++node) {
+			labels[node] = new char[nodes.get(node).size()];
+			children[node] = new int[nodes.get(node).size()];
+			int i = 0;
+			for (Map.Entry<Character, Integer> child : nodes.get(node).entrySet()) {
+				labels[node][i] = child.getKey();
+				children[node][i++] = child.getValue();
+			}
+			searchIndices[node] = indices.get(node);
+		}
+		firstLabel = labels[0].length == 0 ? 0 : labels[0][0];
+		rootChildren = new int[labels[0].length == 0 ? 0 : labels[0][labels[0].length - 1] - firstLabel + 1];
+		Arrays.fill(rootChildren, -1);
+		for (int i = 0; i < labels[0].length; ++i) {
+			rootChildren[labels[0][i] - firstLabel] = children[0][i];
+		}
+	}
+
+	/**
+	 * Returns the text with all search strings replaced, or the text itself if none of them occur in it.
+	 */
+	public String replace(String text) {
+		if (text == null) {
+			return null;
+		}
+		for (int i = 0; i < text.length(); ++i) {
+			int match = matchAt(text, i);
+			if (match >= 0) {
+				StringBuilder out = new StringBuilder(text.length() + 16).append(text, 0, i);
+				appendReplaced(text, i, out);
+				return out.toString();
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Appends the text with all search strings replaced to the given builder.
+	 */
+	public void appendReplaced(CharSequence text, StringBuilder out) {
+		appendReplaced(text, 0, out);
+	}
+
+	/**
+	 * Returns the index in the search list of the search string replaced at the given index of the text, or -1 if none
+	 * starts there.
+	 */
+	public int matchAt(CharSequence text, int index) {
+		int first = text.charAt(index) - firstLabel;
+		if (first < 0 || first >= rootChildren.length || rootChildren[first] < 0) {
+			return -1;
+		}
+		int node = rootChildren[first];
+		int match = searchIndices[node];
+		for (int i = index + 1; i < text.length(); ++i) {
+			int label = Arrays.binarySearch(labels[node], text.charAt(i));
+			if (label < 0) {
+				break;
+			}
+			node = children[node][label];
+			int searchIndex = searchIndices[node];
+			if (searchIndex >= 0 && (match < 0 || searchIndex < match)) {
+				match = searchIndex;
+			}
+		}
+		return match;
+	}
+
+	private void appendReplaced(CharSequence text, int start, StringBuilder out) {
+		int literalStart = start;
+		int i = start;
+		while (i < text.length()) {
+			int match = matchAt(text, i);
+			if (match < 0) {
+				++i;
+			} else {
+				out.append(text, literalStart, i).append(replacements[match]);
+				i += searchStrings[match].length();
+				literalStart = i;
+			}
+		}
+		out.append(text, literalStart, text.length());
+	}
+
+}
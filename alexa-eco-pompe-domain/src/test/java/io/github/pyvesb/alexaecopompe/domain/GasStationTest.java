@@ -1,5 +1,6 @@
 package io.github.pyvesb.alexaecopompe.domain;
 
+import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDate;
@@ -31,6 +32,52 @@ class GasStationTest {
 		Optional<Price> actualPrice2 = underTest.getPriceForGasType(GasType.SP98);
 
 		assertEquals(Optional.of(price2), actualPrice2);
+		assertEquals(Optional.empty(), underTest.getPriceForGasType(GasType.GAZOLE));
+	}
+
+	@Test
+	void shouldReturnPrimitivePriceValuesForGasType() {
+		Price price1 = new Price(GasType.E85, LocalDate.of(2018, Month.APRIL, 4), 0.85f);
+		Price price2 = new Price(GasType.SP98, LocalDate.of(2018, Month.APRIL, 5), 1.52f);
+		GasStation underTest = new GasStation("1", 4.076f, 43.561f, "75001", "Paris", "rue Cler", price1, price2);
+
+		assertTrue(underTest.hasPrice(GasType.E85));
+		assertEquals(0.85f, underTest.getPriceValue(GasType.E85));
+		assertEquals(LocalDate.of(2018, Month.APRIL, 4).toEpochDay(), underTest.getUpdatedEpochDay(GasType.E85));
+		assertTrue(underTest.hasPrice(GasType.SP98));
+		assertEquals(1.52f, underTest.getPriceValue(GasType.SP98));
+		assertEquals(LocalDate.of(2018, Month.APRIL, 5).toEpochDay(), underTest.getUpdatedEpochDay(GasType.SP98));
+		assertFalse(underTest.hasPrice(GasType.GAZOLE));
+		assertTrue(Float.isNaN(underTest.getPriceValue(GasType.GAZOLE)));
+	}
+
+	@Test
+	void shouldCopyGasStationWithName() {
+		Price price = new Price(GasType.E85, LocalDate.of(2018, Month.APRIL, 4), 0.85f);
+		GasStation unnamed = new GasStation("1", 4356100f, -107600f, "75001", "Paris", "rue Cler", price);
+
+		GasStation underTest = unnamed.withName("Pyves Gas");
+
+		assertEquals(Optional.empty(), unnamed.getName());
+		assertEquals(Optional.of("Pyves Gas"), underTest.getName());
+		assertEquals(43.561f, underTest.getLat());
+		assertEquals(-1.076f, underTest.getLon());
+		assertEquals(Optional.of(price), underTest.getPriceForGasType(GasType.E85));
+		assertNotEquals(unnamed, underTest);
+		assertEquals(unnamed, underTest.withName(null));
+	}
+
+	@Test
+	void shouldCopyGasStationWithTownAndAddress() {
+		Price price = new Price(GasType.E85, LocalDate.of(2018, Month.APRIL, 4), 0.85f);
+		GasStation gs = new GasStation("1", 4356100f, -107600f, "75001", "PARIS", "RUE CLER", price).withName("Pyves");
+
+		GasStation underTest = gs.withTownAndAddress("Paris", "Rue Cler");
+
+		assertEquals(new GasStation("1", "Pyves", 4356100f, -107600f, "75001", "Paris", "Rue Cler", asList(price)),
+				underTest);
+		assertEquals("PARIS", gs.getTown());
+		assertEquals("RUE CLER", gs.getAddress());
 	}
 
 }
@@ -0,0 +1,157 @@
+package io.github.pyvesb.alexaecopompe.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StationTableTest {
+
+	private static final LocalDate DATE1 = LocalDate.of(2018, Month.MARCH, 22);
+	private static final LocalDate DATE2 = LocalDate.of(2018, Month.MARCH, 23);
+
+	@Test
+	void shouldRoundTripGasStationsThroughBinaryRepresentation() throws Exception {
+		GasStation gs1 = new GasStation("7340002", 4525743f, 469631.2f, "07430", "Davézieux", "LE MAS OUEST - RTE DE LYON",
+				new Price(GasType.GAZOLE, DATE2, 1.389f), new Price(GasType.E85, DATE2, 0.749f));
+		GasStation gs2 = new GasStation("94470005", "Avia", 4875500f, 250500f, "94470", "Boissy-Saint-Léger",
+				"Avenue du Général Leclerc", Arrays.asList(new Price(GasType.E10, DATE1, 1.549f)));
+
+		StationTable underTest = roundTrip(StationTable.of(Arrays.asList(gs1, gs2)));
+
+		assertEquals(2, underTest.size());
+		assertEquals(gs1, underTest.getGasStation(0));
+		assertEquals(gs2, underTest.getGasStation(1));
+		assertEquals(45.25743f, underTest.getLat(0));
+		assertEquals(4.696312f, underTest.getLon(0));
+		assertEquals("94470", underTest.getPostCode(1));
+		assertEquals("Boissy-Saint-Léger", underTest.getTown(1));
+		assertEquals(Optional.empty(), underTest.getName(0));
+		assertEquals(Optional.of("Avia"), underTest.getName(1));
+		assertTrue(underTest.hasPrice(1, GasType.E10));
+		assertFalse(underTest.hasPrice(1, GasType.SP98));
+		assertEquals(1.549f, underTest.getPrice(1, GasType.E10));
+		assertEquals(DATE1.toEpochDay(), underTest.getUpdatedEpochDay(1, GasType.E10));
+	}
+
+	@Test
+	void shouldMapTableFromFile(@TempDir Path directory) throws Exception {
+		GasStation gs1 = new GasStation("1", 4356000f, 407500f, "75001", "Paris", "Place Vendôme",
+				new Price(GasType.GAZOLE, DATE1, 1.336f));
+		GasStation gs2 = new GasStation("2", 4356100f, 407600f, "73100", "Aix-les-Bains", "A41",
+				new Price(GasType.SP98, DATE2, 1.442f));
+		Path file = directory.resolve("gas-station.data");
+		try (OutputStream outputStream = Files.newOutputStream(file)) {
+			StationTable.of(Arrays.asList(gs1, gs2)).writeTo(outputStream);
+		}
+
+		StationTable underTest = StationTable.map(file);
+
+		assertEquals(2, underTest.size());
+		assertEquals(gs1, underTest.getGasStation(0));
+		assertEquals(gs2, underTest.getGasStation(1));
+	}
+
+	@Test
+	void shouldGroupStationsByPostCode() {
+		StationTable underTest = StationTable.of(Arrays.asList(station("1", "75014"), station("2", "73100"),
+				station("3", "75001"), station("4", "75014"), station("5", "2A004")));
+
+		assertEquals(2, underTest.getPostCodeRangeStart("75001"));
+		assertEquals(3, underTest.getPostCodeRangeEnd("75001"));
+		assertEquals(2, underTest.getPostCodeRangeStart("75"));
+		assertEquals(5, underTest.getPostCodeRangeEnd("75"));
+		assertEquals(4, underTest.getStationOrderedByPostCode(0));
+		assertEquals(1, underTest.getStationOrderedByPostCode(1));
+		assertEquals(2, underTest.getStationOrderedByPostCode(2));
+		assertEquals(0, underTest.getStationOrderedByPostCode(3));
+		assertEquals(3, underTest.getStationOrderedByPostCode(4));
+		assertEquals(underTest.getPostCodeRangeStart("58400"), underTest.getPostCodeRangeEnd("58400"));
+		assertEquals(underTest.getPostCodeRangeStart("99"), underTest.getPostCodeRangeEnd("99"));
+	}
+
+	@Test
+	void shouldIndexPostCodesInPostCodeOrder() {
+		StationTable underTest = StationTable.of(Arrays.asList(station("1", "75014"), station("2", "73100"),
+				station("3", "75001"), station("4", "75014"), station("5", "2A004")));
+
+		assertEquals(4, underTest.getPostCodeCount());
+		assertEquals(2, underTest.findPostCode("75001"));
+		assertEquals(2, underTest.getPostCodeIndexRangeStart("75"));
+		assertEquals(4, underTest.getPostCodeIndexRangeEnd("75"));
+		assertEquals(2, underTest.getPostCodeStart(2));
+		assertEquals(3, underTest.getPostCodeStart(3));
+		assertEquals(5, underTest.getPostCodeStart(4));
+		assertEquals(underTest.getPostCodeIndexRangeStart("99"), underTest.getPostCodeIndexRangeEnd("99"));
+	}
+
+	@Test
+	void shouldLocatePostCodesAtTheCentroidOfTheirStations() throws Exception {
+		GasStation gs1 = new GasStation("1", 4500000f, 200000f, "01000", "t", "a");
+		GasStation gs2 = new GasStation("2", 4510000f, 230000f, "75001", "t", "a");
+		GasStation gs3 = new GasStation("3", 4520000f, 240000f, "01000", "t", "a");
+		StationTable underTest = roundTrip(StationTable.of(Arrays.asList(gs1, gs2, gs3)));
+
+		int postCode1 = underTest.findPostCode("01000");
+		assertEquals(45.1f, underTest.getPostCodeLat(postCode1));
+		assertEquals(2.2f, underTest.getPostCodeLon(postCode1));
+		int postCode2 = underTest.findPostCode("75001");
+		assertEquals(45.1f, underTest.getPostCodeLat(postCode2));
+		assertEquals(2.3f, underTest.getPostCodeLon(postCode2));
+		assertEquals(-1, underTest.findPostCode("0100"));
+		assertEquals(-1, underTest.findPostCode("010000"));
+		assertEquals(-1, underTest.findPostCode("75002"));
+	}
+
+	@Test
+	void shouldKeepPricesOfZero() throws Exception {
+		GasStation gs = new GasStation("1", 4356000f, 407500f, "75001", "Paris", "Place Vendôme",
+				new Price(GasType.GPL, DATE1, 0f));
+
+		StationTable underTest = roundTrip(StationTable.of(Arrays.asList(gs)));
+
+		assertTrue(underTest.hasPrice(0, GasType.GPL));
+		assertEquals(0f, underTest.getPrice(0, GasType.GPL));
+		assertFalse(underTest.hasPrice(0, GasType.E10));
+		assertEquals(gs, underTest.getGasStation(0));
+	}
+
+	@Test
+	void shouldRoundTripEmptyTable() throws Exception {
+		assertEquals(0, roundTrip(StationTable.of(Collections.emptyList())).size());
+		assertEquals(-1, StationTable.of(Collections.emptyList()).findPostCode("75001"));
+	}
+
+	@Test
+	void shouldRejectUnknownData() {
+		byte[] data = new byte[] { 0, 0, 0, 1, 0, 0, 0, 2 };
+
+		assertThrows(IOException.class, () -> StationTable.readFrom(new ByteArrayInputStream(data)));
+	}
+
+	private static GasStation station(String id, String postCode) {
+		return new GasStation(id, 4356000f, 407500f, postCode, "Town", "Address", new Price(GasType.E10, DATE1, 1.5f));
+	}
+
+	private static StationTable roundTrip(StationTable stationTable) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		stationTable.writeTo(outputStream);
+		return StationTable.readFrom(new ByteArrayInputStream(outputStream.toByteArray()));
+	}
+
+}
@@ -0,0 +1,88 @@
+package io.github.pyvesb.alexaecopompe.speech;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+class TextReplacerTest {
+
+	@Test
+	void shouldReplaceFirstSearchStringStartingAtEarliestIndex() {
+		TextReplacer underTest = new TextReplacer(new String[] { "Av ", "A", "Ave ", "Av" },
+				new String[] { "Avenue ", "a", "Avenue ", "X" });
+
+		assertEquals("Avenue Foch, ave Victor Hugo", underTest.replace("Av Foch, Ave Victor Hugo"));
+	}
+
+	@Test
+	void shouldNotReplaceWithinReplacements() {
+		TextReplacer underTest = new TextReplacer(new String[] { "a", "b" }, new String[] { "b", "a" });
+
+		assertEquals("baab", underTest.replace("abba"));
+	}
+
+	@Test
+	void shouldReturnTextItselfIfNothingIsReplaced() {
+		TextReplacer underTest = new TextReplacer(new String[] { "Bd " }, new String[] { "Boulevard " });
+		String text = "Rue De La Paix";
+
+		assertSame(text, underTest.replace(text));
+	}
+
+	@Test
+	void shouldIgnoreEmptySearchStringsAndNullReplacements() {
+		TextReplacer underTest = new TextReplacer(new String[] { "", null, "b", "c" },
+				new String[] { "x", "y", null, "z" });
+
+		assertEquals("abz", underTest.replace("abc"));
+		assertEquals("", underTest.replace(""));
+		assertEquals(null, underTest.replace(null));
+	}
+
+	@Test
+	void shouldRejectListsOfDifferentLengths() {
+		assertThrows(IllegalArgumentException.class, () -> new TextReplacer(new String[] { "a" }, new String[0]));
+	}
+
+	@Test
+	void shouldAppendReplacedText() {
+		TextReplacer underTest = new TextReplacer(new String[] { "$NAME" }, new String[] { "Pyves Gas" });
+		StringBuilder out = new StringBuilder("> ");
+
+		underTest.appendReplaced("$NAME vend du gazole", out);
+
+		assertEquals("> Pyves Gas vend du gazole", out.toString());
+	}
+
+	@Test
+	void shouldReplaceLikeReplaceEach() {
+		Random random = new Random(42);
+		for (int run = 0; run < 2000; ++run) {
+			// Small alphabet, so that search strings overlap and share prefixes.
+			String[] searchList = new String[1 + random.nextInt(6)];
+			String[] replacementList = new String[searchList.length];
+			for (int i = 0; i < searchList.length; ++i) {
+				searchList[i] = randomString(random, "ab/ ", random.nextInt(4));
+				replacementList[i] = randomString(random, "ab/ xy", random.nextInt(4));
+			}
+			String text = randomString(random, "ab/ c", random.nextInt(30));
+
+			assertEquals(StringUtils.replaceEach(text, searchList, replacementList),
+					new TextReplacer(searchList, replacementList).replace(text));
+		}
+	}
+
+	private static String randomString(Random random, String alphabet, int length) {
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; ++i) {
+			builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return builder.toString();
+	}
+
+}
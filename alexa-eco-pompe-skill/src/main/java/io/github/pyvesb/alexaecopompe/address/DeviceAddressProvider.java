@@ -4,12 +4,16 @@ import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKN
 import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
 import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
 import static java.net.HttpURLConnection.HTTP_OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -17,11 +21,19 @@ import org.apache.logging.log4j.Logger;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 
+import io.github.pyvesb.alexaecopompe.http.HttpClient;
+import io.github.pyvesb.alexaecopompe.http.HttpResponse;
+import io.github.pyvesb.alexaecopompe.utils.BoundedCache;
+import io.github.pyvesb.alexaecopompe.utils.Deadline;
+
 /**
  * Amazon seems to provide a similar class in the com.amazon.ask.model.services.deviceAddress package. Nevertheless, as
  * of yet the ask-sdk-model library is not documented anywhere and its source code is not released, which suggests that
  * it's not intended for public use at this point. This class provides a more efficient and easily maintainable
- * alternative.
+ * alternative. Outcomes are cached per device, endpoint and hash of the access token, so that an address is only
+ * served to requests carrying the token it was fetched with. Missing addresses are cached for a shorter duration so
+ * that devices specifying their address are not ignored for long. Missing permissions are not cached, and evict the
+ * cached outcome, so that revoking them takes effect at once.
  */
 public class DeviceAddressProvider {
 
@@ -29,40 +41,125 @@ public class DeviceAddressProvider {
 	private static final Logger LOGGER = LogManager.getLogger(DeviceAddressProvider.class);
 	private static final ObjectReader READER = new ObjectMapper().configure(FAIL_ON_UNKNOWN_PROPERTIES, false)
 			.readerFor(Address.class);
+	private static final int CACHE_SIZE = 10000;
+	private static final long ADDRESS_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+	private static final long MISSING_ADDRESS_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
 
-	private final int timeout;
+	private final BoundedCache<String, AddressLookup> addressCache = new BoundedCache<>(CACHE_SIZE,
+			lookup -> lookup.map(AddressLookup::getTtlMillis).orElse(0L));
+	private final HttpClient httpClient;
 
 	public DeviceAddressProvider(int timeout) {
-		this.timeout = timeout;
+		this(new HttpClient(timeout));
+	}
+
+	public DeviceAddressProvider(HttpClient httpClient) {
+		this.httpClient = httpClient;
 	}
 
 	public Address fetchAddress(String host, String device, String token)
 			throws AddressForbiddenException, AddressNotSpecifiedException, AddressInaccessibleException {
-		try {
-			LOGGER.info("Fetching address for host {} and device {}", host, device);
-			URLConnection connection = new URL(host + String.format(PATH, device)).openConnection();
-			connection.setRequestProperty("Authorization", "Bearer " + token);
-			connection.setRequestProperty("Accept", "application/json");
-			connection.setConnectTimeout(timeout);
-			connection.setReadTimeout(timeout);
-			int responseCode = ((HttpURLConnection) connection).getResponseCode();
+		return lookUp(host, device, token, Deadline.none()).join().getAddress();
+	}
+
+	/**
+	 * Asynchronous variant of {@link #fetchAddress(String, String, String)}, the returned future fails with the same
+	 * exceptions.
+	 */
+	public CompletableFuture<Address> fetchAddressAsync(String host, String device, String token) {
+		return fetchAddressAsync(host, device, token, Deadline.none());
+	}
+
+	/**
+	 * Variant of {@link #fetchAddressAsync(String, String, String)} which fails with an AddressInaccessibleException if
+	 * the address could not be fetched before the deadline.
+	 */
+	public CompletableFuture<Address> fetchAddressAsync(String host, String device, String token, Deadline deadline) {
+		return lookUp(host, device, token, deadline).thenCompose(AddressLookup::toFuture);
+	}
+
+	public long getCacheHitCount() {
+		return addressCache.getHitCount();
+	}
+
+	private CompletableFuture<AddressLookup> lookUp(String host, String device, String token, Deadline deadline) {
+		String key = device + '@' + host + '#' + UUID.nameUUIDFromBytes(String.valueOf(token).getBytes(UTF_8));
+		return addressCache.getAsync(key, k -> lookUpAddress(host, device, token, deadline).thenApply(Optional::of))
+				.thenApply(lookup -> lookup.orElseGet(() -> new AddressLookup(null, 0,
+						new AddressInaccessibleException("Concurrent lookup failed for device " + device))));
+	}
+
+	private CompletableFuture<AddressLookup> lookUpAddress(String host, String device, String token,
+			Deadline deadline) {
+		LOGGER.info("Fetching address for host {} and device {}", host, device);
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Authorization", "Bearer " + token);
+		headers.put("Accept", "application/json");
+		return httpClient.get(host + String.format(PATH, device), headers, deadline).handle((response, failure) -> {
+			if (failure != null) {
+				Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+				return new AddressLookup(null, 0, new AddressInaccessibleException(cause));
+			}
+			int responseCode = response.getStatusCode();
 			if (responseCode == HTTP_OK) {
-				return unmarshallAddress(connection);
+				return unmarshallAddress(response);
+			} else if (responseCode == HTTP_FORBIDDEN || responseCode == HTTP_NO_CONTENT) {
+				return new AddressLookup(null, responseCode, null);
+			} else {
+				return new AddressLookup(null, responseCode,
+						new AddressInaccessibleException("Unexpected response code " + responseCode));
+			}
+		});
+	}
+
+	private static AddressLookup unmarshallAddress(HttpResponse response) {
+		try {
+			return new AddressLookup(READER.readValue(response.getBody()), HTTP_OK, null);
+		} catch (IOException e) {
+			return new AddressLookup(null, HTTP_OK, new AddressInaccessibleException(e));
+		}
+	}
+
+	private static final class AddressLookup {
+
+		private final Address address;
+		private final int responseCode;
+		private final AddressInaccessibleException failure;
+
+		AddressLookup(Address address, int responseCode, AddressInaccessibleException failure) {
+			this.address = address;
+			this.responseCode = responseCode;
+			this.failure = failure;
+		}
+
+		long getTtlMillis() {
+			if (address != null) {
+				return ADDRESS_TTL_MILLIS;
+			}
+			// Other outcomes are not cached, the address may be accessible again on the next request.
+			return responseCode == HTTP_NO_CONTENT && failure == null ? MISSING_ADDRESS_TTL_MILLIS : 0L;
+		}
+
+		Address getAddress()
+				throws AddressForbiddenException, AddressNotSpecifiedException, AddressInaccessibleException {
+			if (address != null) {
+				return address;
 			} else if (responseCode == HTTP_FORBIDDEN) {
 				throw new AddressForbiddenException();
 			} else if (responseCode == HTTP_NO_CONTENT) {
 				throw new AddressNotSpecifiedException();
-			} else {
-				throw new AddressInaccessibleException("Unexpected response code " + responseCode);
 			}
-		} catch (IOException e) {
-			throw new AddressInaccessibleException(e);
+			throw failure;
 		}
-	}
 
-	private Address unmarshallAddress(URLConnection connection) throws IOException {
-		try (InputStream inputStream = connection.getInputStream()) {
-			return READER.readValue(inputStream);
+		CompletableFuture<Address> toFuture() {
+			CompletableFuture<Address> future = new CompletableFuture<>();
+			try {
+				future.complete(getAddress());
+			} catch (Exception e) {
+				future.completeExceptionally(e);
+			}
+			return future;
 		}
 	}
 
@@ -1,115 +1,311 @@
 package io.github.pyvesb.alexaecopompe.data;
 
-import static java.util.Collections.emptyList;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Clock;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.InflaterInputStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import io.github.pyvesb.alexaecopompe.domain.GasStation;
-import io.github.pyvesb.alexaecopompe.geography.GeographicStationManager;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.geography.CheapestGasStations;
 import io.github.pyvesb.alexaecopompe.geography.Position;
-import io.protostuff.ProtostuffIOUtil;
-import io.protostuff.Schema;
-import io.protostuff.runtime.RuntimeSchema;
+import io.github.pyvesb.alexaecopompe.geography.RadiusCandidates;
+import io.github.pyvesb.alexaecopompe.utils.Deadline;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
 
 public class DataProvider {
 
-	private static final int UNIQUE_POST_CODES = 4266;
-	private static final int TOTAL_DEPARTMENTS = 96;
+	private static final String CACHE_FILE = "gas-station.data";
 	private static final Logger LOGGER = LogManager.getLogger(DataProvider.class);
-	private static final Schema<GasStation> SCHEMA = RuntimeSchema.getSchema(GasStation.class);
 
-	private final Map<String, List<GasStation>> postCodesToGasStations = new HashMap<>(UNIQUE_POST_CODES);
-	private final Map<String, List<GasStation>> departmentsToGasStations = new HashMap<>(TOTAL_DEPARTMENTS);
 	private final String dataLocation;
 	private final long stalenessThresholdMillis;
 	private final Clock clock;
-	private final GeographicStationManager geographicStationManager;
-
-	private long dataAgeMillis;
+	private final Path cacheDirectory;
+	private final Executor refreshExecutor;
+	private final Executor loadExecutor = Executors.newCachedThreadPool(DataProvider::newLoadThread);
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private final AtomicReference<StationSnapshot> snapshot = new AtomicReference<>(StationSnapshot.EMPTY);
+	private final AtomicReference<CompletableFuture<Void>> pendingLoad = new AtomicReference<>(
+			CompletableFuture.completedFuture(null));
+	private volatile PriceRanking lastPriceRanking;
 
 	public DataProvider(String dataLocation, long stalenessThresholdMillis) {
-		this(dataLocation, stalenessThresholdMillis, Clock.systemUTC(), new GeographicStationManager());
+		this(dataLocation, stalenessThresholdMillis, false);
+	}
+
+	/**
+	 * With background refresh enabled, stale data keeps being served whilst fresh data is retrieved on a separate
+	 * thread. Only the very first retrieval blocks requests, as there is nothing to serve yet.
+	 */
+	public DataProvider(String dataLocation, long stalenessThresholdMillis, boolean backgroundRefresh) {
+		this(dataLocation, stalenessThresholdMillis, Clock.systemUTC(), Paths.get(System.getProperty("java.io.tmpdir")),
+				backgroundRefresh ? Executors.newSingleThreadExecutor(DataProvider::newRefreshThread) : Runnable::run);
 	}
 
-	DataProvider(String dataLocation, long stalenessThresholdMillis, Clock clock,
-			GeographicStationManager geographicStationManager) {
+	DataProvider(String dataLocation, long stalenessThresholdMillis, Clock clock, Path cacheDirectory,
+			Executor refreshExecutor) {
 		this.dataLocation = dataLocation;
 		this.stalenessThresholdMillis = stalenessThresholdMillis;
 		this.clock = clock;
-		this.geographicStationManager = geographicStationManager;
+		this.cacheDirectory = cacheDirectory;
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	/**
+	 * Retrieves data on a separate thread if it is stale, the returned future completes once data can be served without
+	 * waiting. Requests can locate their users in the meantime, rather than waiting for the data first. Concurrent
+	 * callers share the same retrieval.
+	 */
+	public CompletableFuture<Void> refreshIfStaleAsync() {
+		if (!isStale(snapshot.get())) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return loadIfStale(loadExecutor);
+	}
+
+	/**
+	 * Waits for the retrieval started by {@link #refreshIfStaleAsync()}, at the latest until the deadline expires, and
+	 * returns whether data can be served. If the deadline expires first, stale data is served whilst the retrieval
+	 * carries on for later requests; only requests arriving before the very first retrieval completes go unanswered.
+	 */
+	public boolean awaitData(Deadline deadline) {
+		try {
+			deadline.await(pendingLoad.get());
+		} catch (TimeoutException | ExecutionException e) {
+			LOGGER.warn("Gas station data not retrieved before deadline");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return snapshot.get().getDataAgeMillis() != 0;
 	}
 
 	public List<GasStation> getGasStationsForPostCodes(String... postCodes) {
-		fetchAndParseRawDataIfStale();
-		return buildGasStationListForPostCodes(postCodes);
+		return fetchAndParseRawDataIfStale().getGasStationsForPostCodes(postCodes);
 	}
 
 	public List<GasStation> getGasStationsForDepartment(String departmentId) {
-		fetchAndParseRawDataIfStale();
-		return buildGasStationListForDepartment(departmentId);
+		return fetchAndParseRawDataIfStale().getGasStationsForDepartment(departmentId);
+	}
+
+	/**
+	 * Returns up to count gas stations with any of the given post codes for each of the given gas types, from the best
+	 * ranked one to the worst. The best ranked gas stations of each post code are materialised for each snapshot.
+	 */
+	public CheapestGasStations getCheapestGasStationsForPostCodes(String[] postCodes, PriceRanking priceRanking,
+			int count, GasType... gasTypes) {
+		lastPriceRanking = priceRanking;
+		return fetchAndParseRawDataIfStale().getCheapestGasStationsForPostCodes(postCodes, priceRanking, count,
+				gasTypes);
+	}
+
+	public CheapestGasStations getCheapestGasStationsForDepartment(String departmentId, PriceRanking priceRanking,
+			int count, GasType... gasTypes) {
+		lastPriceRanking = priceRanking;
+		return fetchAndParseRawDataIfStale().getCheapestGasStationsForDepartment(departmentId, priceRanking, count,
+				gasTypes);
+	}
+
+	/**
+	 * Returns the position of the centre of the gas stations with the given post code, if there are any.
+	 */
+	public Optional<Position> getPostCodePosition(String postCode) {
+		return fetchAndParseRawDataIfStale().getPostCodePosition(postCode);
 	}
 
 	public List<GasStation> getGasStationsWithinRadius(Position position, int radius) {
-		fetchAndParseRawDataIfStale();
-		return geographicStationManager.getGasStationsWithinRadius(position, radius);
+		return fetchAndParseRawDataIfStale().getGasStationsWithinRadius(position, radius);
 	}
 
-	private void fetchAndParseRawDataIfStale() {
-		if (isStale()) {
-			LOGGER.info("Retrieving gas station data");
-			try (InputStream inputStream = new URL(dataLocation).openStream();
-					InflaterInputStream inflaterInputStream = new InflaterInputStream(inputStream)) {
-				parseDataStream(inflaterInputStream);
-				dataAgeMillis = clock.millis();
-			} catch (Exception e) {
-				LOGGER.error("Exception when trying to retrieve and parse gas station data", e);
+	/**
+	 * Returns up to count gas stations within the radius for each of the given gas types, from the best ranked one to
+	 * the worst, without building the full list of gas stations within the radius. Candidates are cached for positions
+	 * quantised to the same centre, see {@link RadiusCandidates}; each version of the data has its own cache.
+	 */
+	public CheapestGasStations getCheapestGasStationsWithinRadius(Position position, int radius,
+			PriceRanking priceRanking, int count, GasType... gasTypes) {
+		return fetchAndParseRawDataIfStale().getCheapestGasStationsWithinRadius(position, radius, priceRanking, count,
+				gasTypes);
+	}
+
+	/**
+	 * Returns the rate of cheapest gas station queries within a radius served from cached candidates since the data
+	 * was last refreshed, between 0 and 1.
+	 */
+	public double getRadiusCacheHitRate() {
+		return snapshot.get().getRadiusCacheHitRate();
+	}
+
+	/**
+	 * Returns up to count gas stations selling the given gas type, from the nearest to the furthest, regardless of
+	 * their distance.
+	 */
+	public List<GasStation> getNearestGasStations(Position position, GasType gasType, int count) {
+		return fetchAndParseRawDataIfStale().getNearestGasStations(position, gasType, count);
+	}
+
+	private StationSnapshot fetchAndParseRawDataIfStale() {
+		StationSnapshot current = snapshot.get();
+		if (isStale(current)) {
+			if (current.getDataAgeMillis() == 0) {
+				// Nothing can be served yet, the request has to wait for the data. Concurrent requests, as well as
+				// retrievals started by refreshIfStaleAsync, share a single retrieval.
+				loadIfStale(Runnable::run).join();
+			} else {
+				refreshIfStale();
 			}
 		}
+		// Readers only ever see fully built snapshots, the current one is not affected by a concurrent refresh.
+		return snapshot.get();
 	}
 
-	private boolean isStale() {
-		return clock.millis() - dataAgeMillis >= stalenessThresholdMillis;
+	/**
+	 * Runs a retrieval on the executor, unless one is already pending, in which case the pending one is returned.
+	 */
+	private CompletableFuture<Void> loadIfStale(Executor executor) {
+		CompletableFuture<Void> pending = pendingLoad.get();
+		if (!pending.isDone()) {
+			return pending;
+		}
+		CompletableFuture<Void> load = new CompletableFuture<>();
+		if (!pendingLoad.compareAndSet(pending, load)) {
+			return pendingLoad.get();
+		}
+		executor.execute(() -> {
+			try {
+				refreshIfStale();
+			} finally {
+				load.complete(null);
+			}
+		});
+		return load;
 	}
 
-	private void parseDataStream(InputStream inputStream) throws IOException {
-		LOGGER.info("Parsing gas station data");
-		// The input data must be sorted by latitude.
-		List<GasStation> gasStationsSortedByLatitude = ProtostuffIOUtil.parseListFrom(inputStream, SCHEMA);
-		if (!gasStationsSortedByLatitude.isEmpty()) {
-			geographicStationManager.registerGasStations(gasStationsSortedByLatitude);
-			// Keep the keys mapped to empty values to save on allocations when populating with fresh data.
-			postCodesToGasStations.forEach((k, v) -> v.clear());
-			departmentsToGasStations.forEach((k, v) -> v.clear());
-			gasStationsSortedByLatitude.forEach(gs -> {
-				postCodesToGasStations.computeIfAbsent(gs.getPostCode(), pc -> new ArrayList<>()).add(gs);
-				departmentsToGasStations.computeIfAbsent(gs.getPostCode().substring(0, 2), pc -> new ArrayList<>()).add(gs);
+	private void refreshIfStale() {
+		// Data may have been retrieved by a retrieval which completed in the meantime.
+		StationSnapshot current = snapshot.get();
+		if (!isStale(current)) {
+			return;
+		}
+		if (current.getDataAgeMillis() == 0) {
+			refreshData();
+		} else if (refreshing.compareAndSet(false, true)) {
+			refreshExecutor.execute(() -> {
+				try {
+					refreshData();
+				} finally {
+					refreshing.set(false);
+				}
 			});
 		}
 	}
 
-	private List<GasStation> buildGasStationListForPostCodes(String[] postCodes) {
-		// If only one post code is requested, no need to allocate a new list.
-		return postCodes.length == 1 ? postCodesToGasStations.getOrDefault(postCodes[0], emptyList())
-				: Arrays.stream(postCodes)
-						.flatMap(pc -> postCodesToGasStations.getOrDefault(pc, emptyList()).stream())
-						.collect(Collectors.toList());
+	private boolean isStale(StationSnapshot current) {
+		return clock.millis() - current.getDataAgeMillis() >= stalenessThresholdMillis;
+	}
+
+	private void refreshData() {
+		long startMillis = clock.millis();
+		long previousDataAgeMillis = snapshot.get().getDataAgeMillis();
+		try {
+			if (previousDataAgeMillis != 0 || !mapCachedData()) {
+				LOGGER.info("Retrieving gas station data");
+				if (dataLocation.startsWith("file:")) {
+					// Local files, for instance bundled in the deployment artifact, are expected to be already inflated.
+					publishSnapshot(StationTable.map(Paths.get(new URL(dataLocation).toURI())), clock.millis());
+				} else {
+					publishSnapshot(StationTable.map(downloadToCacheFile()), clock.millis());
+				}
+			}
+			if (previousDataAgeMillis == 0) {
+				LOGGER.info("Loaded gas station data in {} ms", clock.millis() - startMillis);
+			} else {
+				LOGGER.info("Refreshed gas station data in {} ms, stale data was served for {} ms", clock.millis()
+						- startMillis, clock.millis() - previousDataAgeMillis - stalenessThresholdMillis);
+			}
+		} catch (Exception e) {
+			LOGGER.error("Exception when trying to retrieve and parse gas station data", e);
+		}
+	}
+
+	private boolean mapCachedData() throws IOException {
+		// A previous instance running in the same environment may have left fresh enough data behind.
+		Path cacheFile = cacheDirectory.resolve(CACHE_FILE);
+		if (Files.exists(cacheFile)) {
+			long cacheAgeMillis = Files.getLastModifiedTime(cacheFile).toMillis();
+			if (clock.millis() - cacheAgeMillis < stalenessThresholdMillis) {
+				LOGGER.info("Mapping cached gas station data");
+				try {
+					publishSnapshot(StationTable.map(cacheFile), cacheAgeMillis);
+					return true;
+				} catch (IOException | RuntimeException e) {
+					// Otherwise every refresh would fail on the same file until it becomes stale.
+					LOGGER.warn("Discarding unusable cached gas station data", e);
+					Files.deleteIfExists(cacheFile);
+				}
+			}
+		}
+		return false;
+	}
+
+	private Path downloadToCacheFile() throws IOException {
+		Path temporaryFile = Files.createTempFile(cacheDirectory, CACHE_FILE, ".tmp");
+		try {
+			try (InputStream inputStream = new URL(dataLocation).openStream();
+					InflaterInputStream inflaterInputStream = new InflaterInputStream(inputStream)) {
+				Files.copy(inflaterInputStream, temporaryFile, REPLACE_EXISTING);
+			}
+			// Existing mappings of the previous file remain valid after it gets replaced.
+			return Files.move(temporaryFile, cacheDirectory.resolve(CACHE_FILE), ATOMIC_MOVE, REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	private void publishSnapshot(StationTable stationTableSortedByLatitude, long dataAgeMillis) {
+		// Empty data is most likely the result of an upstream issue, keep serving the previous stations until next time.
+		StationTable stationTable = stationTableSortedByLatitude.size() > 0 ? stationTableSortedByLatitude
+				: snapshot.get().getStationTable();
+		StationSnapshot newSnapshot = new StationSnapshot(stationTable, dataAgeMillis);
+		PriceRanking priceRanking = lastPriceRanking;
+		if (priceRanking != null) {
+			// Rankings are built before publishing, so that requests do not pay for them.
+			newSnapshot.prepareRankings(priceRanking);
+		}
+		StationSnapshot previous = snapshot.getAndSet(newSnapshot);
+		LOGGER.info("Published new snapshot (previousRadiusCacheHitRate={})", previous.getRadiusCacheHitRate());
+	}
+
+	private static Thread newRefreshThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "gas-station-data-refresh");
+		thread.setDaemon(true);
+		return thread;
 	}
 
-	private List<GasStation> buildGasStationListForDepartment(String departmentId) {
-		return departmentsToGasStations.getOrDefault(departmentId, emptyList());
+	private static Thread newLoadThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "gas-station-data-load");
+		thread.setDaemon(true);
+		return thread;
 	}
 
 }
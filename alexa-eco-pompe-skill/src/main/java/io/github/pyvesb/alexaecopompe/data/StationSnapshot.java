@@ -0,0 +1,167 @@
+package io.github.pyvesb.alexaecopompe.data;
+
+import static java.util.Collections.emptyList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.geography.CheapestGasStations;
+import io.github.pyvesb.alexaecopompe.geography.GeographicStationManager;
+import io.github.pyvesb.alexaecopompe.geography.Position;
+import io.github.pyvesb.alexaecopompe.geography.PostCodeRankings;
+import io.github.pyvesb.alexaecopompe.geography.RadiusCandidates;
+import io.github.pyvesb.alexaecopompe.utils.BoundedCache;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
+
+/**
+ * Immutable view of a given version of the gas station data along with all its indexes. Snapshots can be shared
+ * between any number of threads, a new one is built and published whenever the data is refreshed.
+ */
+final class StationSnapshot {
+
+	static final StationSnapshot EMPTY = new StationSnapshot(StationTable.of(emptyList()), 0L);
+
+	private static final int RADIUS_CACHE_SIZE = 1000;
+	private static final long RADIUS_CACHE_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private final StationTable stationTable;
+	private final GeographicStationManager geographicStationManager;
+	private final long dataAgeMillis;
+	// Rankings depend on the day prices become outdated, they are rebuilt whenever a different ranking is requested.
+	private final AtomicReference<PostCodeRankings> postCodeRankings = new AtomicReference<>();
+	// Candidates are only ever computed from this snapshot, the cache is dropped along with it.
+	private final BoundedCache<RadiusQuery, RadiusCandidates> radiusCache = new BoundedCache<>(RADIUS_CACHE_SIZE,
+			RADIUS_CACHE_TTL_MILLIS, 0L);
+
+	StationSnapshot(StationTable stationTableSortedByLat, long dataAgeMillis) {
+		this.stationTable = stationTableSortedByLat;
+		this.geographicStationManager = new GeographicStationManager(stationTableSortedByLat);
+		this.dataAgeMillis = dataAgeMillis;
+	}
+
+	StationTable getStationTable() {
+		return stationTable;
+	}
+
+	long getDataAgeMillis() {
+		return dataAgeMillis;
+	}
+
+	List<GasStation> getGasStationsForPostCodes(String... postCodes) {
+		List<GasStation> gasStations = new ArrayList<>();
+		for (String postCode : postCodes) {
+			addGasStations(postCode, gasStations);
+		}
+		return gasStations;
+	}
+
+	List<GasStation> getGasStationsForDepartment(String departmentId) {
+		// Post codes start with the department identifier.
+		return addGasStations(departmentId, new ArrayList<>());
+	}
+
+	CheapestGasStations getCheapestGasStationsForPostCodes(String[] postCodes, PriceRanking priceRanking, int count,
+			GasType... gasTypes) {
+		return getPostCodeRankings(priceRanking).getCheapestGasStationsForPostCodes(postCodes, count, gasTypes);
+	}
+
+	CheapestGasStations getCheapestGasStationsForDepartment(String departmentId, PriceRanking priceRanking, int count,
+			GasType... gasTypes) {
+		return getPostCodeRankings(priceRanking).getCheapestGasStationsForDepartment(departmentId, count, gasTypes);
+	}
+
+	/**
+	 * Builds the rankings of post codes for the given price ranking ahead of the first query using it.
+	 */
+	void prepareRankings(PriceRanking priceRanking) {
+		getPostCodeRankings(priceRanking);
+	}
+
+	private PostCodeRankings getPostCodeRankings(PriceRanking priceRanking) {
+		PostCodeRankings rankings = postCodeRankings.get();
+		if (rankings == null || rankings.getPriceRanking() != priceRanking) {
+			// Concurrent callers may build the same rankings, any of them can be published.
+			rankings = new PostCodeRankings(stationTable, priceRanking);
+			postCodeRankings.set(rankings);
+		}
+		return rankings;
+	}
+
+	Optional<Position> getPostCodePosition(String postCode) {
+		int postCodeIndex = stationTable.findPostCode(postCode);
+		return postCodeIndex < 0 ? Optional.empty()
+				: Optional.of(new Position(stationTable.getPostCodeLat(postCodeIndex),
+						stationTable.getPostCodeLon(postCodeIndex)));
+	}
+
+	List<GasStation> getGasStationsWithinRadius(Position position, int radius) {
+		return geographicStationManager.getGasStationsWithinRadius(position, radius);
+	}
+
+	CheapestGasStations getCheapestGasStationsWithinRadius(Position position, int radius, PriceRanking priceRanking,
+			int count, GasType... gasTypes) {
+		Position centre = RadiusCandidates.quantise(position);
+		RadiusQuery query = new RadiusQuery(centre, radius, priceRanking, gasTypes);
+		return radiusCache.get(query, q -> Optional.of(geographicStationManager.getRadiusCandidates(centre, radius,
+				priceRanking, gasTypes))).get().getCheapestGasStationsWithinRadius(position, count);
+	}
+
+	double getRadiusCacheHitRate() {
+		return radiusCache.getHitRate();
+	}
+
+	List<GasStation> getNearestGasStations(Position position, GasType gasType, int count) {
+		return geographicStationManager.getNearestGasStations(position, gasType, count);
+	}
+
+	private List<GasStation> addGasStations(String postCodePrefix, List<GasStation> gasStations) {
+		int end = stationTable.getPostCodeRangeEnd(postCodePrefix);
+		for (int position = stationTable.getPostCodeRangeStart(postCodePrefix); position < end; ++position) {
+			gasStations.add(stationTable.getGasStation(stationTable.getStationOrderedByPostCode(position)));
+		}
+		return gasStations;
+	}
+
+	private static final class RadiusQuery {
+
+		private final Position centre;
+		private final int radius;
+		private final PriceRanking priceRanking;
+		private final GasType[] gasTypes;
+
+		RadiusQuery(Position centre, int radius, PriceRanking priceRanking, GasType[] gasTypes) {
+			this.centre = centre;
+			this.radius = radius;
+			this.priceRanking = priceRanking;
+			this.gasTypes = gasTypes;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(centre, radius, Arrays.hashCode(gasTypes));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof RadiusQuery)) {
+				return false;
+			}
+			RadiusQuery other = (RadiusQuery) obj;
+			// Rankings are compared by identity, as new instances are created whenever they change.
+			return priceRanking == other.priceRanking && radius == other.radius && centre.equals(other.centre)
+					&& Arrays.equals(gasTypes, other.gasTypes);
+		}
+	}
+
+}
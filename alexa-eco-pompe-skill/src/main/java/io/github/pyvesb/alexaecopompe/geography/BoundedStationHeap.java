@@ -0,0 +1,99 @@
+package io.github.pyvesb.alexaecopompe.geography;
+
+/**
+ * Max-heap keeping the stations with the smallest keys, ties being broken by station index. The worst retained station
+ * sits at the root, so that it can be compared against and evicted in constant time.
+ */
+final class BoundedStationHeap {
+
+	private final int capacity;
+	private final float[] keys;
+	private final int[] stations;
+	private int size;
+
+	BoundedStationHeap(int capacity) {
+		this.capacity = capacity;
+		keys = new float[capacity];
+		stations = new int[capacity];
+	}
+
+	int capacity() {
+		return capacity;
+	}
+
+	boolean isFull() {
+		return size == capacity;
+	}
+
+	float peekWorstKey() {
+		return keys[0];
+	}
+
+	void offer(int station, float key) {
+		if (size < capacity) {
+			keys[size] = key;
+			stations[size] = station;
+			siftUp(size++);
+		} else if (capacity > 0 && isWorse(keys[0], stations[0], key, station)) {
+			keys[0] = key;
+			stations[0] = station;
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Empties the heap, returning its stations ordered by increasing key and then by index.
+	 */
+	int[] toSortedArray() {
+		int[] sorted = new int[size];
+		while (size > 0) {
+			sorted[size - 1] = stations[0];
+			--size;
+			keys[0] = keys[size];
+			stations[0] = stations[size];
+			siftDown(0);
+		}
+		return sorted;
+	}
+
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (!isWorse(keys[index], stations[index], keys[parent], stations[parent])) {
+				return;
+			}
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		while (true) {
+			int worst = index;
+			for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; ++child) {
+				if (isWorse(keys[child], stations[child], keys[worst], stations[worst])) {
+					worst = child;
+				}
+			}
+			if (worst == index) {
+				return;
+			}
+			swap(index, worst);
+			index = worst;
+		}
+	}
+
+	private void swap(int i, int j) {
+		float key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		int station = stations[i];
+		stations[i] = stations[j];
+		stations[j] = station;
+	}
+
+	private static boolean isWorse(float key1, int station1, float key2, int station2) {
+		return key1 > key2 || key1 == key2 && station1 > station2;
+	}
+
+}
@@ -0,0 +1,38 @@
+package io.github.pyvesb.alexaecopompe.geography;
+
+import static java.util.Collections.emptyList;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+
+/**
+ * Result of a cheapest gas stations query: the best ranked gas stations for each requested gas type, along with the
+ * total number of gas stations found within the area, whether or not they sell any of these gas types.
+ */
+public class CheapestGasStations {
+
+	private final int gasStationCount;
+	private final Map<GasType, List<GasStation>> cheapestByGasType;
+
+	public CheapestGasStations(int gasStationCount, Map<GasType, List<GasStation>> cheapestByGasType) {
+		this.gasStationCount = gasStationCount;
+		this.cheapestByGasType = cheapestByGasType.isEmpty() ? new EnumMap<>(GasType.class)
+				: new EnumMap<>(cheapestByGasType);
+	}
+
+	public int getGasStationCount() {
+		return gasStationCount;
+	}
+
+	/**
+	 * Returns the gas stations selling the given gas type, from the best ranked one to the worst.
+	 */
+	public List<GasStation> getCheapestGasStations(GasType gasType) {
+		return cheapestByGasType.getOrDefault(gasType, emptyList());
+	}
+
+}
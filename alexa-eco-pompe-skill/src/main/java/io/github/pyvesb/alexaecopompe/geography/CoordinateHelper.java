@@ -22,6 +22,17 @@ public class CoordinateHelper {
 		return (float) (distance * EARTH_RADIUS_RADIANS_TO_DEGREES / cos(latitude * DEGREES_TO_RADIANS));
 	}
 
+	/**
+	 * Inverse of {@link #computeSquaredDistance(double, double, double, double)}: returns the longitude difference for
+	 * which two points with the given latitude difference and mean latitude are at the given squared distance, or NaN if
+	 * the latitude difference alone exceeds that distance.
+	 */
+	public static double computeLonDiff(double squaredDistance, double latDiff, double meanLatitude) {
+		double radiansLatDiff = latDiff * DEGREES_TO_RADIANS;
+		return Math.sqrt(squaredDistance / SQUARED_EARTH_RADIUS - radiansLatDiff * radiansLatDiff)
+				/ (cos(meanLatitude * DEGREES_TO_RADIANS) * DEGREES_TO_RADIANS);
+	}
+
 	public static float computeSquaredDistance(double lat1, double lon1, double lat2, double lon2) {
 		double latDiff = (lat1 - lat2) * DEGREES_TO_RADIANS;
 		double lonDiff = (lon1 - lon2) * DEGREES_TO_RADIANS;
@@ -1,80 +1,260 @@
 package io.github.pyvesb.alexaecopompe.geography;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
 
+/**
+ * Spatial index over a station table. Stations are bucketed in a uniform grid of cells covering the globe, a radius
+ * query only visits the cells overlapping the bounding box of its circle. Non-empty cells are stored as sorted keys
+ * (row * columns + column), so that the cells of a given row within the bounding box are contiguous. Cells which are
+ * certainly within the circle are taken as a whole, only the stations of the cells crossing its edge are checked one by
+ * one. Nearest station queries are served by a KD-tree per gas type, so that no radius needs to be specified.
+ * Cheapest station queries rank stations whilst visiting the cells and only ever retain the best ones.
+ */
 public class GeographicStationManager {
 
-	private List<GasStation> gasStationsByLat = new ArrayList<>();
-	private final List<GasStation> gasStationsByLon = new ArrayList<>();
-	private boolean lonPreprocessRequired;
+	private static final double CELL_DEGREES = 0.05;
+	private static final int ROWS = (int) Math.ceil(180 / CELL_DEGREES) + 1;
+	private static final int COLUMNS = (int) Math.ceil(360 / CELL_DEGREES) + 1;
+	// Margins absorbing float rounding when deciding whether a cell is entirely within a circle.
+	private static final double EPSILON_DEGREES = 1e-4;
+	private static final double SQUARED_DISTANCE_MARGIN = 0.999;
 
-	public void registerGasStations(List<GasStation> gasStationsByLat) {
-		this.gasStationsByLat = gasStationsByLat;
-		// Lazily populate and sort the list by longitude.
-		lonPreprocessRequired = true;
+	private final StationTable stationTable;
+	private final int[] cellKeys;
+	private final int[] cellStarts;
+	private final int[] cellStations;
+	private final StationKdTree[] kdTreesByGasType;
+
+	public GeographicStationManager(StationTable stationTableSortedByLat) {
+		this.stationTable = stationTableSortedByLat;
+		// Pack each cell key with its station index so that a primitive sort can be used.
+		long[] packed = new long[stationTable.size()];
+		for (int station = 0; station < packed.length; ++station) {
+			int cellKey = row(stationTable.getLat(station)) * COLUMNS + column(stationTable.getLon(station));
+			packed[station] = (long) cellKey << 32 | station;
+		}
+		Arrays.sort(packed);
+		int[] keys = new int[packed.length];
+		int[] starts = new int[packed.length + 1];
+		cellStations = new int[packed.length];
+		int cells = 0;
+		for (int i = 0; i < packed.length; ++i) {
+			int cellKey = (int) (packed[i] >>> 32);
+			if (cells == 0 || keys[cells - 1] != cellKey) {
+				keys[cells] = cellKey;
+				starts[cells++] = i;
+			}
+			cellStations[i] = (int) packed[i];
+		}
+		starts[cells] = packed.length;
+		cellKeys = Arrays.copyOf(keys, cells);
+		cellStarts = Arrays.copyOf(starts, cells + 1);
+		float[] lats = new float[stationTable.size()];
+		float[] lons = new float[stationTable.size()];
+		for (int station = 0; station < lats.length; ++station) {
+			lats[station] = stationTable.getLat(station);
+			lons[station] = stationTable.getLon(station);
+		}
+		// No station sells the unknown gas type, there is no tree for it.
+		kdTreesByGasType = new StationKdTree[GasType.values().length];
+		for (GasType gasType : GasType.values()) {
+			if (gasType != GasType.UNKNOWN) {
+				kdTreesByGasType[gasType.ordinal()] = new StationKdTree(lats, lons,
+						s -> stationTable.hasPrice(s, gasType));
+			}
+		}
+	}
+
+	/**
+	 * Returns up to count gas stations selling the given gas type, from the nearest to the furthest.
+	 */
+	public List<GasStation> getNearestGasStations(Position position, GasType gasType, int count) {
+		StationKdTree kdTree = kdTreesByGasType[gasType.ordinal()];
+		if (kdTree == null) {
+			return Collections.emptyList();
+		}
+		int[] stations = kdTree.findNearest(position.getLat(), position.getLon(), count);
+		List<GasStation> gasStations = new ArrayList<>(stations.length);
+		for (int station : stations) {
+			gasStations.add(stationTable.getGasStation(station));
+		}
+		return gasStations;
 	}
 
 	public List<GasStation> getGasStationsWithinRadius(Position position, int radius) {
-		if (lonPreprocessRequired) {
-			gasStationsByLon.clear();
-			gasStationsByLon.addAll(gasStationsByLat);
-			Collections.sort(gasStationsByLon, (gs1, gs2) -> Float.compare(gs1.getLon(), gs2.getLon()));
-			lonPreprocessRequired = false;
+		int[] stations = getStationsWithinRadius(position.getLat(), position.getLon(), radius);
+		List<GasStation> gasStations = new ArrayList<>(stations.length);
+		for (int station : stations) {
+			gasStations.add(stationTable.getGasStation(station));
+		}
+		return gasStations;
+	}
+
+	/**
+	 * Returns up to count gas stations within the radius for each of the given gas types, ranked by price and then by
+	 * latitude. Neither the gas stations within the radius nor their prices are materialised, only the ones retained.
+	 */
+	public CheapestGasStations getCheapestGasStationsWithinRadius(Position position, int radius,
+			PriceRanking priceRanking, int count, GasType... gasTypes) {
+		BoundedStationHeap[] heaps = createHeaps(count, gasTypes.length);
+		int gasStationCount = forEachStationWithinRadius(position.getLat(), position.getLon(), radius,
+				station -> offer(station, priceRanking, gasTypes, heaps));
+		return toCheapestGasStations(gasStationCount, gasTypes, heaps);
+	}
+
+	/**
+	 * Returns the candidates of the radius queries made from any position quantised to the given centre, see
+	 * {@link RadiusCandidates}.
+	 */
+	public RadiusCandidates getRadiusCandidates(Position centre, int radius, PriceRanking priceRanking,
+			GasType... gasTypes) {
+		return new RadiusCandidates(this, stationTable, centre, radius, priceRanking, gasTypes);
+	}
+
+	private static BoundedStationHeap[] createHeaps(int count, int gasTypeCount) {
+		BoundedStationHeap[] heaps = new BoundedStationHeap[gasTypeCount];
+		for (int i = 0; i < gasTypeCount; ++i) {
+			heaps[i] = new BoundedStationHeap(count);
+		}
+		return heaps;
+	}
+
+	private void offer(int station, PriceRanking priceRanking, GasType[] gasTypes, BoundedStationHeap[] heaps) {
+		for (int i = 0; i < gasTypes.length; ++i) {
+			if (stationTable.hasPrice(station, gasTypes[i])) {
+				heaps[i].offer(station, priceRanking.rank(stationTable.getPrice(station, gasTypes[i]),
+						stationTable.getUpdatedEpochDay(station, gasTypes[i])));
+			}
+		}
+	}
+
+	private CheapestGasStations toCheapestGasStations(int gasStationCount, GasType[] gasTypes,
+			BoundedStationHeap[] heaps) {
+		Map<GasType, List<GasStation>> cheapestByGasType = new EnumMap<>(GasType.class);
+		for (int i = 0; i < gasTypes.length; ++i) {
+			int[] stations = heaps[i].toSortedArray();
+			List<GasStation> gasStations = new ArrayList<>(stations.length);
+			for (int station : stations) {
+				gasStations.add(stationTable.getGasStation(station));
+			}
+			cheapestByGasType.put(gasTypes[i], gasStations);
 		}
-		return getGasStationsWithinRadius(position.getLat(), position.getLon(), radius);
+		return new CheapestGasStations(gasStationCount, cheapestByGasType);
 	}
 
-	private List<GasStation> getGasStationsWithinRadius(float lat, float lon, int radius) {
+	/**
+	 * Returns the indexes of the stations within the radius, in latitude order.
+	 */
+	int[] getStationsWithinRadius(float lat, float lon, int radius) {
+		IntStream.Builder stations = IntStream.builder();
+		forEachStationWithinRadius(lat, lon, radius, stations);
+		int[] sortedStations = stations.build().toArray();
+		Arrays.sort(sortedStations);
+		return sortedStations;
+	}
+
+	/**
+	 * Passes the index of each station within the radius to the action, in no particular order, and returns the number
+	 * of such stations.
+	 */
+	private int forEachStationWithinRadius(float lat, float lon, int radius, IntConsumer action) {
 		float latDiff = CoordinateHelper.computeLatDiff(radius);
-		List<GasStation> gasStationsInLatRange = getStationsInRange(lat, latDiff, gasStationsByLat, GasStation::getLat);
 		float lonDiff = CoordinateHelper.computeLonDiff(radius, lat);
-		List<GasStation> gasStationsInLonRange = getStationsInRange(lon, lonDiff, gasStationsByLon, GasStation::getLon);
-		List<GasStation> commonGasStations = new ArrayList<>(gasStationsInLatRange);
-		commonGasStations.retainAll(gasStationsInLonRange);
+		// Bounding box: strictly over the lower bounds, not over the upper bounds.
+		float latMin = lat - latDiff;
+		float latMax = lat + latDiff;
+		float lonMin = lon - lonDiff;
+		float lonMax = lon + lonDiff;
 		int squaredRadius = radius * radius;
-		return commonGasStations.stream()
-				.filter(gs -> CoordinateHelper.computeSquaredDistance(gs.getLat(), gs.getLon(), lat, lon) <= squaredRadius)
-				.collect(Collectors.toList());
-	}
-
-	private List<GasStation> getStationsInRange(float coordinate, float diff, List<GasStation> sortedGasStations,
-			GasStationToFloatFunction coordinateGetter) {
-		// Two range-based binary searches are performed. The first one operates on the full list, the second one starts
-		// from the lower bound returned by the first one.
-		int lowerBoundIndex = getSmallestIndexOverBound(coordinate - diff, sortedGasStations, coordinateGetter, -1);
-		int upperBoundIndex = getSmallestIndexOverBound(coordinate + diff, sortedGasStations, coordinateGetter,
-				lowerBoundIndex);
-		// The upper index must be excluded as it's over the bound, which is consistent with sublist's behaviour.
-		return sortedGasStations.subList(lowerBoundIndex, upperBoundIndex);
-	}
-
-	private int getSmallestIndexOverBound(float bound, List<GasStation> sortedGasStations,
-			GasStationToFloatFunction coordinateGetter, int startIndex) {
-		int middleIndex;
-		int endIndex = sortedGasStations.size();
-		while (endIndex - startIndex > 1) {
-			middleIndex = (startIndex + endIndex) / 2;
-			if (coordinateGetter.applyAsFloat(sortedGasStations.get(middleIndex)) > bound) {
-				endIndex = middleIndex;
-			} else {
-				startIndex = middleIndex;
+		int count = 0;
+		for (int row = row(latMin); row <= row(latMax); ++row) {
+			int lastCellKey = row * COLUMNS + column(lonMax);
+			double insideLonDiff = computeInsideLonDiff(row, lat, latMin, latMax, lonDiff, squaredRadius);
+			int firstInsideKey = row * COLUMNS + (int) Math.ceil((lon - insideLonDiff + 180d) / CELL_DEGREES);
+			int lastInsideKey = row * COLUMNS + (int) Math.floor((lon + insideLonDiff + 180d) / CELL_DEGREES) - 1;
+			for (int cell = findFirstCell(row * COLUMNS + column(lonMin)); cell < cellKeys.length
+					&& cellKeys[cell] <= lastCellKey; ++cell) {
+				if (cellKeys[cell] >= firstInsideKey && cellKeys[cell] <= lastInsideKey) {
+					for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; ++i) {
+						action.accept(cellStations[i]);
+					}
+					count += cellStarts[cell + 1] - cellStarts[cell];
+					continue;
+				}
+				for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; ++i) {
+					int station = cellStations[i];
+					if (isWithinRadius(stationTable.getLat(station), stationTable.getLon(station), lat, lon, latDiff,
+							lonDiff, squaredRadius)) {
+						action.accept(station);
+						++count;
+					}
+				}
 			}
 		}
-		return endIndex;
+		return count;
 	}
 
 	/**
-	 * Used instead of ToDoubleFunction to avoid boxing/unboxing and narrowing/widening operations.
+	 * Returns whether the station is within the bounding box and the circle of the query, the bounding box being
+	 * strictly over its lower bounds and not over its upper bounds.
 	 */
-	@FunctionalInterface
-	public interface GasStationToFloatFunction {
+	static boolean isWithinRadius(float stationLat, float stationLon, float lat, float lon, float latDiff,
+			float lonDiff, int squaredRadius) {
+		return stationLat > lat - latDiff && stationLat <= lat + latDiff && stationLon > lon - lonDiff
+				&& stationLon <= lon + lonDiff
+				&& CoordinateHelper.computeSquaredDistance(stationLat, stationLon, lat, lon) <= squaredRadius;
+	}
+
+	/**
+	 * Returns the longitude difference from the query within which cells of the given row are entirely contained in both
+	 * the bounding box and the circle, or a negative value if there are no such cells. The distance bound combines the
+	 * largest latitude difference with the cosine of the mean latitude closest to the equator, so it holds for any point
+	 * of the row.
+	 */
+	private static double computeInsideLonDiff(int row, float lat, float latMin, float latMax, float lonDiff,
+			int squaredRadius) {
+		double south = row * CELL_DEGREES - 90d - EPSILON_DEGREES;
+		double north = south + CELL_DEGREES + 2 * EPSILON_DEGREES;
+		if (south <= latMin || north >= latMax) {
+			return -1;
+		}
+		double maxLatDiff = Math.max(lat - south, north - lat);
+		double meanLat = (south + lat) * (north + lat) <= 0 ? 0
+				: Math.min(Math.abs(south + lat), Math.abs(north + lat)) / 2;
+		double insideLonDiff = Math.min(lonDiff,
+				CoordinateHelper.computeLonDiff(squaredRadius * SQUARED_DISTANCE_MARGIN, maxLatDiff, meanLat))
+				- EPSILON_DEGREES;
+		// NaN when the latitude difference alone exceeds the radius.
+		return insideLonDiff >= 0 ? insideLonDiff : -1;
+	}
+
+	private int findFirstCell(int cellKey) {
+		int index = Arrays.binarySearch(cellKeys, cellKey);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	private static int row(float lat) {
+		return clamp((int) Math.floor((lat + 90d) / CELL_DEGREES), ROWS);
+	}
+
+	private static int column(float lon) {
+		return clamp((int) Math.floor((lon + 180d) / CELL_DEGREES), COLUMNS);
+	}
 
-		float applyAsFloat(GasStation gs);
+	private static int clamp(int index, int count) {
+		return Math.max(0, Math.min(count - 1, index));
 	}
 
 }
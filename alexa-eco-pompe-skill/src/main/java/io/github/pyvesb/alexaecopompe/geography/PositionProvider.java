@@ -2,14 +2,23 @@ package io.github.pyvesb.alexaecopompe.geography;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -22,25 +31,84 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 
 import io.github.pyvesb.alexaecopompe.address.Address;
+import io.github.pyvesb.alexaecopompe.http.CircuitBreaker;
+import io.github.pyvesb.alexaecopompe.http.DeadlineExceededException;
+import io.github.pyvesb.alexaecopompe.http.HttpClient;
+import io.github.pyvesb.alexaecopompe.http.HttpResponse;
+import io.github.pyvesb.alexaecopompe.utils.BoundedCache;
+import io.github.pyvesb.alexaecopompe.utils.Deadline;
 
 public class PositionProvider {
 
 	private static final Logger LOGGER = LogManager.getLogger(PositionProvider.class);
 	private static final ObjectReader READER = new ObjectMapper().reader();
+	// Positions of addresses hardly ever change, whereas unknown addresses may be added to the geocoding data.
+	private static final int CACHE_SIZE = 10000;
+	private static final long FOUND_TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+	private static final long NOT_FOUND_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+	// Opens once half of the last 20 lookups, and at least 5 of them, failed or took more than half the timeout.
+	private static final int CIRCUIT_WINDOW_SIZE = 20;
+	private static final int CIRCUIT_MINIMUM_CALLS = 5;
+	private static final double CIRCUIT_FAILURE_RATE = 0.5;
+	private static final long CIRCUIT_OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
 
-	private final Map<String, Optional<Position>> positionCache = new HashMap<>();
+	private final BoundedCache<String, Position> positionCache;
+	private final CircuitBreaker circuitBreaker;
+	private final PostCodeLocator postCodeLocator;
+	private final HttpClient httpClient;
 	private final String baseUrl;
-	private final String userAgent;
+	private final Map<String, String> headers = new HashMap<>();
 	private final int timeout;
 	private final JsonPointer latPointer;
 	private final JsonPointer lonPointer;
+	private final long hedgeDelayMillis;
+	private final ScheduledExecutorService hedgeScheduler;
+	private final LongAdder preciseWins = new LongAdder();
+	private final LongAdder coarseWins = new LongAdder();
+	private final LongAdder noWins = new LongAdder();
 
 	public PositionProvider(String baseUrl, String userAgent, int timeout, String latPath, String lonPath) {
+		this(new HttpClient(timeout), baseUrl, userAgent, timeout, latPath, lonPath, postCode -> Optional.empty(), -1L);
+	}
+
+	/**
+	 * Post codes which can be located offline by the given locator are never sent to the remote geocoding service. With
+	 * a negative hedge delay, the simplified address is only looked up once the full address could not be located.
+	 * Otherwise both lookups are hedged: the simplified address is also sent after the given delay, unless the full
+	 * address was located in the meantime, and the most precise position available within the timeout is returned.
+	 * Whilst the geocoding service is degraded, a circuit breaker skips remote lookups altogether, so that post codes
+	 * located offline are returned straight away.
+	 */
+	public PositionProvider(HttpClient httpClient, String baseUrl, String userAgent, int timeout, String latPath,
+			String lonPath, PostCodeLocator postCodeLocator, long hedgeDelayMillis) {
+		this(httpClient, baseUrl, userAgent, timeout, latPath, lonPath, postCodeLocator, hedgeDelayMillis,
+				new CircuitBreaker("geocoding", CIRCUIT_WINDOW_SIZE, CIRCUIT_MINIMUM_CALLS, CIRCUIT_FAILURE_RATE,
+						timeout / 2, CIRCUIT_OPEN_MILLIS));
+	}
+
+	PositionProvider(HttpClient httpClient, String baseUrl, String userAgent, int timeout, String latPath,
+			String lonPath, PostCodeLocator postCodeLocator, long hedgeDelayMillis, CircuitBreaker circuitBreaker) {
+		this(httpClient, baseUrl, userAgent, timeout, latPath, lonPath, postCodeLocator, hedgeDelayMillis,
+				circuitBreaker, new BoundedCache<>(CACHE_SIZE, FOUND_TTL_MILLIS, NOT_FOUND_TTL_MILLIS));
+	}
+
+	PositionProvider(HttpClient httpClient, String baseUrl, String userAgent, int timeout, String latPath,
+			String lonPath, PostCodeLocator postCodeLocator, long hedgeDelayMillis, CircuitBreaker circuitBreaker,
+			BoundedCache<String, Position> positionCache) {
+		this.positionCache = positionCache;
+		this.circuitBreaker = circuitBreaker;
+		this.postCodeLocator = postCodeLocator;
+		this.httpClient = httpClient;
 		this.baseUrl = baseUrl;
-		this.userAgent = userAgent;
+		this.headers.put("Accept", "application/json");
+		this.headers.put("User-Agent", userAgent);
 		this.timeout = timeout;
 		this.latPointer = JsonPointer.compile(latPath);
 		this.lonPointer = JsonPointer.compile(lonPath);
+		this.hedgeDelayMillis = hedgeDelayMillis;
+		this.hedgeScheduler = hedgeDelayMillis < 0 ? null
+				: Executors.newSingleThreadScheduledExecutor(PositionProvider::newThread);
 	}
 	
 	public Optional<Position> getByGeolocation(GeolocationState geolocation) {
@@ -50,41 +118,184 @@ public class PositionProvider {
 	}
 
 	public Optional<Position> getByAddress(Address address) {
-		Optional<Position> position = getByAddress(address.toNormalisedString());
-		// If not found, try simplified address with better chance of retrieving position. Less precise.
-		return position.isPresent() ? position : getByAddress(address.toSimplifiedString());
+		return getByAddressAsync(address, Deadline.none()).join();
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getByAddress(Address)}, the returned future never fails.
+	 */
+	public CompletableFuture<Optional<Position>> getByAddressAsync(Address address) {
+		return getByAddressAsync(address, Deadline.none());
+	}
+
+	/**
+	 * Variant of {@link #getByAddressAsync(Address)} in which remote lookups only get the remaining budget of the
+	 * deadline. Once it expires, the position of the post code located offline is returned if there is one, rather than
+	 * waiting for a more precise position.
+	 */
+	public CompletableFuture<Optional<Position>> getByAddressAsync(Address address, Deadline deadline) {
+		if (hedgeDelayMillis >= 0) {
+			return getByAddressHedged(address, deadline);
+		}
+		return getByAddressAsync(address.toNormalisedString(), deadline).thenCompose(position -> {
+			if (position.isPresent()) {
+				return CompletableFuture.completedFuture(position);
+			}
+			// If not found, try simplified address with better chance of retrieving position. Less precise.
+			Optional<Position> postCodePosition = locateOffline(address.toSimplifiedString());
+			return postCodePosition.isPresent() ? CompletableFuture.completedFuture(postCodePosition)
+					: getByAddressAsync(address.toSimplifiedString(), deadline);
+		});
+	}
+
+	/**
+	 * Returns the number of hedged lookups answered with the position of the full address.
+	 */
+	public long getPreciseWinCount() {
+		return preciseWins.sum();
+	}
+
+	/**
+	 * Returns the number of hedged lookups answered with the position of the simplified address.
+	 */
+	public long getCoarseWinCount() {
+		return coarseWins.sum();
+	}
+
+	/**
+	 * Returns the number of hedged lookups for which no position could be found within the timeout.
+	 */
+	public long getNoWinCount() {
+		return noWins.sum();
+	}
+
+	/**
+	 * Returns the circuit breaker guarding the remote geocoding service, which exposes its state and transitions.
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	private CompletableFuture<Optional<Position>> getByAddressHedged(Address address, Deadline deadline) {
+		long startNanos = System.nanoTime();
+		CompletableFuture<Optional<Position>> precise = getByAddressAsync(address.toNormalisedString(), deadline);
+		CompletableFuture<Optional<Position>> coarse = new CompletableFuture<>();
+		Optional<Position> postCodePosition = locateOffline(address.toSimplifiedString());
+		if (postCodePosition.isPresent()) {
+			coarse.complete(postCodePosition);
+		} else {
+			ScheduledFuture<?> hedge = hedgeScheduler.schedule(() -> getByAddressAsync(address.toSimplifiedString(),
+					deadline).thenAccept(coarse::complete), hedgeDelayMillis, TimeUnit.MILLISECONDS);
+			// No need to send the simplified address if the full one is located before the hedge delay.
+			precise.thenAccept(p -> {
+				if (p.isPresent() && hedge.cancel(false)) {
+					coarse.complete(Optional.empty());
+				}
+			});
+		}
+		CompletableFuture<Optional<Position>> result = new CompletableFuture<>();
+		AtomicBoolean decided = new AtomicBoolean();
+		precise.thenAccept(p -> {
+			if (p.isPresent()) {
+				completeHedged(result, decided, p, true, startNanos);
+			} else {
+				coarse.thenAccept(c -> completeHedged(result, decided, c, false, startNanos));
+			}
+		});
+		// Once the timeout elapses or the deadline expires, the coarse position is returned if it has been located in
+		// the meantime.
+		ScheduledFuture<?> expiry = hedgeScheduler.schedule(
+				() -> completeHedged(result, decided, coarse.getNow(Optional.empty()), false, startNanos),
+				Math.min(timeout, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+		result.thenRun(() -> expiry.cancel(false));
+		return result;
+	}
+
+	private void completeHedged(CompletableFuture<Optional<Position>> result, AtomicBoolean decided,
+			Optional<Position> position, boolean precise, long startNanos) {
+		// Counters are updated before completing, so that they are up to date by the time callers get the position.
+		if (!decided.compareAndSet(false, true)) {
+			return;
+		}
+		String winner = precise ? "precise" : position.isPresent() ? "coarse" : "none";
+		(precise ? preciseWins : position.isPresent() ? coarseWins : noWins).increment();
+		LOGGER.info("Hedged geocoding (winner={}, elapsed={}ms, precise={}, coarse={}, none={})", winner,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), preciseWins, coarseWins, noWins);
+		result.complete(position);
+	}
+
+	private Optional<Position> locateOffline(String postCode) {
+		Optional<Position> position = postCode == null ? Optional.empty() : postCodeLocator.locate(postCode);
+		if (position.isPresent()) {
+			LOGGER.info("Located post code offline (postCode={})", postCode);
+		}
+		return position;
 	}
 
-	private Optional<Position> getByAddress(String address) {
-		Optional<Position> position = positionCache.computeIfAbsent(address, v -> {
+	private CompletableFuture<Optional<Position>> getByAddressAsync(String address, Deadline deadline) {
+		if (address == null) {
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+		return positionCache.getAsync(address, v -> {
+			String url;
 			try {
-				URL url = new URL(String.format(baseUrl, URLEncoder.encode(v, UTF_8.name())));
-				LOGGER.debug("Fetching result for url {}", url.toString());
-				URLConnection connection = url.openConnection();
-				connection.setRequestProperty("Accept", "application/json");
-				connection.setRequestProperty("User-Agent", userAgent);
-				connection.setConnectTimeout(timeout);
-				connection.setReadTimeout(timeout);
-				return executeGet(connection);
-			} catch (Exception e) {
-				LOGGER.error("Exception whilst fetching result for value {}", v, e);
-				return null; // Don't cache any value so that it can be retried later.
+				url = String.format(baseUrl, URLEncoder.encode(v, UTF_8.name()));
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
 			}
+			if (deadline.isExpired()) {
+				return CompletableFuture.completedFuture(null); // The request ran out of time, not the service.
+			} else if (!circuitBreaker.tryAcquirePermission()) {
+				LOGGER.warn("Geocoding circuit open, skipping remote lookup for value {}", v);
+				return CompletableFuture.completedFuture(null); // Not cached, retried once the circuit closes.
+			}
+			LOGGER.debug("Fetching result for url {} ({})", url, positionCache);
+			return httpClient.get(url, headers, deadline).whenComplete(this::recordOutcome)
+					.thenApply(response -> parsePosition(url, response))
+					.exceptionally(e -> {
+						Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+						LOGGER.error("Exception whilst fetching result for value {}", v, cause);
+						return null; // Don't cache any value so that it can be retried later.
+					});
 		});
-		return position == null ? Optional.empty() : position;
 	}
 
-	private Optional<Position> executeGet(URLConnection connection) throws IOException {
-		try (InputStream inputStream = connection.getInputStream()) {
-			JsonNode jsonNode = READER.readTree(inputStream);
+	private void recordOutcome(HttpResponse response, Throwable failure) {
+		Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+		if (cause instanceof DeadlineExceededException) {
+			circuitBreaker.release(); // The request ran out of time, not necessarily the service.
+		} else if (failure != null) {
+			circuitBreaker.record(true, 0L);
+		} else {
+			// Time spent waiting for a connection to the service is not its own latency.
+			circuitBreaker.record(response.getStatusCode() != HttpURLConnection.HTTP_OK, response.getElapsedMillis());
+		}
+	}
+
+	private static Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "geocoding-hedge-" + THREAD_COUNT.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	private Optional<Position> parsePosition(String url, HttpResponse response) {
+		if (response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+			LOGGER.error("Unexpected response code {} (url={})", response.getStatusCode(), url);
+			return null; // Don't cache any value so that it can be retried later.
+		}
+		try {
+			JsonNode jsonNode = READER.readTree(new ByteArrayInputStream(response.getBody()));
 			JsonNode latNode = jsonNode.at(latPointer);
 			JsonNode lonNode = jsonNode.at(lonPointer);
 			boolean missing = latNode.isMissingNode() || lonNode.isMissingNode();
 			if (missing) {
-				LOGGER.warn("Unknown position (url={})", connection.getURL());
+				LOGGER.warn("Unknown position (url={})", url);
 				return Optional.empty();
 			}
 			return Optional.of(new Position(Float.parseFloat(latNode.asText()), Float.parseFloat(lonNode.asText())));
+		} catch (IOException | NumberFormatException e) {
+			LOGGER.error("Exception whilst parsing result (url={})", url, e);
+			return null;
 		}
 	}
 
@@ -0,0 +1,13 @@
+package io.github.pyvesb.alexaecopompe.geography;
+
+import java.util.Optional;
+
+/**
+ * Locates post codes without relying on any remote service.
+ */
+@FunctionalInterface
+public interface PostCodeLocator {
+
+	Optional<Position> locate(String postCode);
+
+}
@@ -0,0 +1,215 @@
+package io.github.pyvesb.alexaecopompe.geography;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
+
+/**
+ * Best ranked stations of each post code and gas type, materialised once for a station table and a price ranking.
+ * Stations are ranked by price and then by position in post code order, which is the order a stable sort of the
+ * stations of the post codes would yield. Towns spanning several post codes merge the lists of each of them, the lists
+ * of departments are merged along with those of post codes. Queries for more stations than are materialised, or for
+ * departments whose identifier is not a two character post code prefix, fall back to ranking the post codes. No
+ * station sells the unknown gas type, nothing is materialised for it.
+ */
+public class PostCodeRankings {
+
+	static final int MATERIALISED_COUNT = 3;
+	private static final int DEPARTMENT_ID_LENGTH = 2;
+
+	private final StationTable stationTable;
+	private final PriceRanking priceRanking;
+	// Positions in post code order of the best ranked stations, MATERIALISED_COUNT slots per post code, -1 if unused.
+	private final int[][] positionsByGasType;
+	private final float[][] keysByGasType;
+	// Identifiers of the departments in post code order, with the same layout of positions as post codes.
+	private final String[] departmentIds;
+	private final int[][] departmentPositionsByGasType;
+
+	public PostCodeRankings(StationTable stationTable, PriceRanking priceRanking) {
+		this.stationTable = stationTable;
+		this.priceRanking = priceRanking;
+		int postCodeCount = stationTable.getPostCodeCount();
+		departmentIds = collectDepartmentIds(stationTable);
+		positionsByGasType = new int[GasType.values().length][];
+		keysByGasType = new float[GasType.values().length][];
+		departmentPositionsByGasType = new int[GasType.values().length][];
+		for (GasType gasType : GasType.values()) {
+			if (gasType == GasType.UNKNOWN) {
+				continue;
+			}
+			int[] positions = new int[postCodeCount * MATERIALISED_COUNT];
+			float[] keys = new float[positions.length];
+			Arrays.fill(positions, -1);
+			for (int postCode = 0; postCode < postCodeCount; ++postCode) {
+				BoundedStationHeap heap = new BoundedStationHeap(MATERIALISED_COUNT);
+				int end = stationTable.getPostCodeStart(postCode + 1);
+				for (int position = stationTable.getPostCodeStart(postCode); position < end; ++position) {
+					offer(heap, position, position, gasType);
+				}
+				int[] ranked = heap.toSortedArray();
+				for (int i = 0; i < ranked.length; ++i) {
+					positions[postCode * MATERIALISED_COUNT + i] = ranked[i];
+					keys[postCode * MATERIALISED_COUNT + i] = rank(ranked[i], gasType);
+				}
+			}
+			positionsByGasType[gasType.ordinal()] = positions;
+			keysByGasType[gasType.ordinal()] = keys;
+			departmentPositionsByGasType[gasType.ordinal()] = rankDepartments(positions, keys);
+		}
+	}
+
+	private static String[] collectDepartmentIds(StationTable stationTable) {
+		List<String> departmentIds = new ArrayList<>();
+		for (int postCode = 0; postCode < stationTable.getPostCodeCount(); ++postCode) {
+			String departmentId = getDepartmentId(stationTable, postCode);
+			if (departmentId != null && (departmentIds.isEmpty()
+					|| !departmentId.equals(departmentIds.get(departmentIds.size() - 1)))) {
+				departmentIds.add(departmentId);
+			}
+		}
+		return departmentIds.toArray(new String[0]);
+	}
+
+	private static String getDepartmentId(StationTable stationTable, int postCode) {
+		String postCodeString = stationTable.getPostCode(stationTable.getStationOrderedByPostCode(
+				stationTable.getPostCodeStart(postCode)));
+		return postCodeString.length() < DEPARTMENT_ID_LENGTH ? null
+				: postCodeString.substring(0, DEPARTMENT_ID_LENGTH);
+	}
+
+	private int[] rankDepartments(int[] positions, float[] keys) {
+		int[] departmentPositions = new int[departmentIds.length * MATERIALISED_COUNT];
+		Arrays.fill(departmentPositions, -1);
+		for (int department = 0; department < departmentIds.length; ++department) {
+			BoundedStationHeap heap = new BoundedStationHeap(MATERIALISED_COUNT);
+			List<Integer> candidates = new ArrayList<>();
+			int end = stationTable.getPostCodeIndexRangeEnd(departmentIds[department]);
+			for (int postCode = stationTable.getPostCodeIndexRangeStart(departmentIds[department]); postCode < end;
+					++postCode) {
+				offerMaterialised(heap, candidates, postCode, positions, keys);
+			}
+			int[] ranked = heap.toSortedArray();
+			for (int i = 0; i < ranked.length; ++i) {
+				departmentPositions[department * MATERIALISED_COUNT + i] = candidates.get(ranked[i]);
+			}
+		}
+		return departmentPositions;
+	}
+
+	public PriceRanking getPriceRanking() {
+		return priceRanking;
+	}
+
+	/**
+	 * Returns up to count gas stations with any of the given post codes for each of the given gas types, ranked as if
+	 * the gas stations of each post code had been listed one post code after the other and then sorted.
+	 */
+	public CheapestGasStations getCheapestGasStationsForPostCodes(String[] postCodes, int count,
+			GasType... gasTypes) {
+		Map<GasType, List<GasStation>> cheapestByGasType = new EnumMap<>(GasType.class);
+		for (GasType gasType : gasTypes) {
+			cheapestByGasType.put(gasType, rank(postCodes, gasType, count));
+		}
+		return new CheapestGasStations(countGasStations(postCodes), cheapestByGasType);
+	}
+
+	/**
+	 * Returns up to count gas stations within the department for each of the given gas types.
+	 */
+	public CheapestGasStations getCheapestGasStationsForDepartment(String departmentId, int count,
+			GasType... gasTypes) {
+		// Post codes start with the department identifier.
+		String[] postCodePrefixes = { departmentId };
+		int department = Arrays.binarySearch(departmentIds, departmentId);
+		if (count > MATERIALISED_COUNT || department < 0) {
+			return getCheapestGasStationsForPostCodes(postCodePrefixes, count, gasTypes);
+		}
+		Map<GasType, List<GasStation>> cheapestByGasType = new EnumMap<>(GasType.class);
+		for (GasType gasType : gasTypes) {
+			int[] departmentPositions = departmentPositionsByGasType[gasType.ordinal()];
+			List<GasStation> gasStations = new ArrayList<>(count);
+			for (int i = department * MATERIALISED_COUNT; departmentPositions != null
+					&& i < department * MATERIALISED_COUNT + count && departmentPositions[i] >= 0; ++i) {
+				gasStations.add(stationTable.getGasStation(stationTable.getStationOrderedByPostCode(
+						departmentPositions[i])));
+			}
+			cheapestByGasType.put(gasType, gasStations);
+		}
+		return new CheapestGasStations(countGasStations(postCodePrefixes), cheapestByGasType);
+	}
+
+	private List<GasStation> rank(String[] postCodePrefixes, GasType gasType, int count) {
+		int[] positions = positionsByGasType[gasType.ordinal()];
+		if (positions == null) {
+			return Collections.emptyList();
+		}
+		// Candidates are numbered in the order they are visited, so that ties are broken as a stable sort would.
+		BoundedStationHeap heap = new BoundedStationHeap(count);
+		List<Integer> candidates = new ArrayList<>();
+		float[] keys = keysByGasType[gasType.ordinal()];
+		for (String postCodePrefix : postCodePrefixes) {
+			int end = stationTable.getPostCodeIndexRangeEnd(postCodePrefix);
+			for (int postCode = stationTable.getPostCodeIndexRangeStart(postCodePrefix); postCode < end; ++postCode) {
+				if (count <= MATERIALISED_COUNT) {
+					offerMaterialised(heap, candidates, postCode, positions, keys);
+				} else {
+					int positionEnd = stationTable.getPostCodeStart(postCode + 1);
+					for (int position = stationTable.getPostCodeStart(postCode); position < positionEnd; ++position) {
+						if (offer(heap, candidates.size(), position, gasType)) {
+							candidates.add(position);
+						}
+					}
+				}
+			}
+		}
+		int[] ranked = heap.toSortedArray();
+		List<GasStation> gasStations = new ArrayList<>(ranked.length);
+		for (int candidate : ranked) {
+			gasStations.add(stationTable.getGasStation(stationTable.getStationOrderedByPostCode(
+					candidates.get(candidate))));
+		}
+		return gasStations;
+	}
+
+	private static void offerMaterialised(BoundedStationHeap heap, List<Integer> candidates, int postCode,
+			int[] positions, float[] keys) {
+		for (int i = postCode * MATERIALISED_COUNT; i < (postCode + 1) * MATERIALISED_COUNT && positions[i] >= 0;
+				++i) {
+			heap.offer(candidates.size(), keys[i]);
+			candidates.add(positions[i]);
+		}
+	}
+
+	private boolean offer(BoundedStationHeap heap, int candidate, int position, GasType gasType) {
+		if (!stationTable.hasPrice(stationTable.getStationOrderedByPostCode(position), gasType)) {
+			return false;
+		}
+		heap.offer(candidate, rank(position, gasType));
+		return true;
+	}
+
+	private float rank(int position, GasType gasType) {
+		int station = stationTable.getStationOrderedByPostCode(position);
+		return priceRanking.rank(stationTable.getPrice(station, gasType),
+				stationTable.getUpdatedEpochDay(station, gasType));
+	}
+
+	private int countGasStations(String[] postCodePrefixes) {
+		int gasStationCount = 0;
+		for (String postCodePrefix : postCodePrefixes) {
+			gasStationCount += stationTable.getPostCodeRangeEnd(postCodePrefix)
+					- stationTable.getPostCodeRangeStart(postCodePrefix);
+		}
+		return gasStationCount;
+	}
+
+}
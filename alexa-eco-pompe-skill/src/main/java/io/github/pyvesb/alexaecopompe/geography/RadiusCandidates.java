@@ -0,0 +1,198 @@
+package io.github.pyvesb.alexaecopompe.geography;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
+
+/**
+ * Stations which may be within the radius of any position quantised to a given centre, so that the result of a radius
+ * query can be shared between nearby positions. Positions are quantised to a grid of QUANTUM_DEGREES, hence are at most
+ * a few hundred metres away from their centre, well within MARGIN_KM. Candidates are the stations within the radius
+ * plus MARGIN_KM of the centre. Each query still checks the candidates against its own position with the same
+ * predicate as {@link GeographicStationManager}, so it never returns a station outside its radius and gets the same
+ * result as if it had been run against the whole grid. The first query is run against the grid like an uncached one.
+ * Candidates are only collected and ordered by distance once another query is made from the same centre, and only
+ * ranked for a gas type once they serve such a query, so that candidates which are never reused cost next to nothing.
+ */
+public final class RadiusCandidates {
+
+	public static final double QUANTUM_DEGREES = 0.01;
+	static final int MARGIN_KM = 2;
+	// Relative margin absorbing the variation of the cosine of the latitude between the centre and the position.
+	private static final double INNER_RADIUS_RATIO = 0.95;
+
+	private final GeographicStationManager manager;
+	private final StationTable stationTable;
+	private final Position centre;
+	private final int radius;
+	private final PriceRanking priceRanking;
+	private final GasType[] gasTypes;
+	private final AtomicBoolean queried = new AtomicBoolean();
+	// Candidates ordered by increasing distance to the centre, null until collected.
+	private final AtomicReference<DistanceOrder> distanceOrder = new AtomicReference<>();
+	// Candidates selling each gas type, ranked by price and then by latitude, null until ranked.
+	private final AtomicReferenceArray<int[]> rankedStationsByGasType;
+
+	RadiusCandidates(GeographicStationManager manager, StationTable stationTable, Position centre, int radius,
+			PriceRanking priceRanking, GasType... gasTypes) {
+		this.manager = manager;
+		this.stationTable = stationTable;
+		this.centre = centre;
+		this.radius = radius;
+		this.priceRanking = priceRanking;
+		this.gasTypes = gasTypes.clone();
+		rankedStationsByGasType = new AtomicReferenceArray<>(gasTypes.length);
+	}
+
+	/**
+	 * Returns the position to which the given one is quantised.
+	 */
+	public static Position quantise(Position position) {
+		return new Position((float) (Math.round(position.getLat() / QUANTUM_DEGREES) * QUANTUM_DEGREES),
+				(float) (Math.round(position.getLon() / QUANTUM_DEGREES) * QUANTUM_DEGREES));
+	}
+
+	/**
+	 * Returns up to count gas stations within the radius of the given position for each gas type of the candidates,
+	 * which must have been built for the centre the position is quantised to.
+	 */
+	public CheapestGasStations getCheapestGasStationsWithinRadius(Position position, int count) {
+		if (!queried.getAndSet(true)) {
+			return manager.getCheapestGasStationsWithinRadius(position, radius, priceRanking, count, gasTypes);
+		}
+		float lat = position.getLat();
+		float lon = position.getLon();
+		float latDiff = CoordinateHelper.computeLatDiff(radius);
+		float lonDiff = CoordinateHelper.computeLonDiff(radius, lat);
+		int squaredRadius = radius * radius;
+		DistanceOrder order = getDistanceOrder();
+		// Candidates this close to the centre are within the radius of any position quantised to it.
+		double innerRadius = radius * INNER_RADIUS_RATIO - MARGIN_KM;
+		int innerCount = innerRadius > 0 ? order.countCloserThan((float) (innerRadius * innerRadius)) : 0;
+		int gasStationCount = innerCount;
+		for (int i = innerCount; i < order.stations.length; ++i) {
+			if (isWithinRadius(order.stations[i], lat, lon, latDiff, lonDiff, squaredRadius)) {
+				++gasStationCount;
+			}
+		}
+		Map<GasType, List<GasStation>> cheapestByGasType = new EnumMap<>(GasType.class);
+		for (int g = 0; g < gasTypes.length; ++g) {
+			List<GasStation> gasStations = new ArrayList<>(count);
+			for (int station : getRankedStations(g, order)) {
+				if (gasStations.size() == count) {
+					break;
+				}
+				if (isWithinRadius(station, lat, lon, latDiff, lonDiff, squaredRadius)) {
+					gasStations.add(stationTable.getGasStation(station));
+				}
+			}
+			cheapestByGasType.put(gasTypes[g], gasStations);
+		}
+		return new CheapestGasStations(gasStationCount, cheapestByGasType);
+	}
+
+	private DistanceOrder getDistanceOrder() {
+		DistanceOrder order = distanceOrder.get();
+		if (order == null) {
+			// Concurrent callers may collect the same candidates, any of them can be published.
+			order = new DistanceOrder(manager.getStationsWithinRadius(centre.getLat(), centre.getLon(),
+					radius + MARGIN_KM));
+			distanceOrder.set(order);
+		}
+		return order;
+	}
+
+	private int[] getRankedStations(int gasTypeIndex, DistanceOrder order) {
+		int[] ranked = rankedStationsByGasType.get(gasTypeIndex);
+		if (ranked == null) {
+			// Concurrent callers may rank the same candidates, any of them can be published.
+			GasType gasType = gasTypes[gasTypeIndex];
+			long[] packed = new long[order.stations.length];
+			int size = 0;
+			for (int station : order.stations) {
+				if (stationTable.hasPrice(station, gasType)) {
+					packed[size++] = pack(rank(station, gasType), station);
+				}
+			}
+			Arrays.sort(packed, 0, size);
+			ranked = new int[size];
+			for (int i = 0; i < size; ++i) {
+				ranked[i] = (int) packed[i];
+			}
+			rankedStationsByGasType.set(gasTypeIndex, ranked);
+		}
+		return ranked;
+	}
+
+	private float rank(int station, GasType gasType) {
+		return priceRanking.rank(stationTable.getPrice(station, gasType),
+				stationTable.getUpdatedEpochDay(station, gasType));
+	}
+
+	private boolean isWithinRadius(int station, float lat, float lon, float latDiff, float lonDiff,
+			int squaredRadius) {
+		return GeographicStationManager.isWithinRadius(stationTable.getLat(station), stationTable.getLon(station), lat,
+				lon, latDiff, lonDiff, squaredRadius);
+	}
+
+	/**
+	 * Packs a key and a station index into a long ordered by key and then by index.
+	 */
+	private static long pack(float key, int station) {
+		int bits = Float.floatToIntBits(key);
+		return (long) (bits ^ (bits >> 31 & Integer.MAX_VALUE)) << 32 | station;
+	}
+
+	private static float unpackKey(long packed) {
+		int bits = (int) (packed >> 32);
+		return Float.intBitsToFloat(bits ^ (bits >> 31 & Integer.MAX_VALUE));
+	}
+
+	private final class DistanceOrder {
+
+		private final int[] stations;
+		private final float[] squaredDistances;
+
+		DistanceOrder(int[] candidates) {
+			long[] packed = new long[candidates.length];
+			for (int i = 0; i < candidates.length; ++i) {
+				float squaredDistance = CoordinateHelper.computeSquaredDistance(stationTable.getLat(candidates[i]),
+						stationTable.getLon(candidates[i]), centre.getLat(), centre.getLon());
+				packed[i] = pack(squaredDistance, candidates[i]);
+			}
+			Arrays.sort(packed);
+			stations = new int[packed.length];
+			squaredDistances = new float[packed.length];
+			for (int i = 0; i < packed.length; ++i) {
+				stations[i] = (int) packed[i];
+				squaredDistances[i] = unpackKey(packed[i]);
+			}
+		}
+
+		int countCloserThan(float squaredDistance) {
+			int low = 0;
+			int high = squaredDistances.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (squaredDistances[middle] < squaredDistance) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+	}
+
+}
@@ -0,0 +1,100 @@
+package io.github.pyvesb.alexaecopompe.geography;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Implicit two-dimensional tree over a subset of stations, alternately split by latitude and longitude. The tree is
+ * stored as a single array of station indexes: the median of any range [low, high) is the node, the halves on both of
+ * its sides are its children. Searches descend into the child containing the query first, and only visit the other
+ * one if its splitting line is closer than the furthest station found so far.
+ */
+final class StationKdTree {
+
+	// Margin absorbing float rounding when pruning subtrees.
+	private static final float SQUARED_DISTANCE_MARGIN = 0.999f;
+
+	private final float[] lats;
+	private final float[] lons;
+	private final int[] tree;
+	private final float maxAbsLat;
+
+	/**
+	 * Builds a tree containing the stations matching the filter, lats and lons holding the coordinates of all stations.
+	 */
+	StationKdTree(float[] lats, float[] lons, IntPredicate filter) {
+		this.lats = lats;
+		this.lons = lons;
+		tree = IntStream.range(0, lats.length).filter(filter).toArray();
+		float max = 0f;
+		for (int station : tree) {
+			max = Math.max(max, Math.abs(lats[station]));
+		}
+		maxAbsLat = max;
+		build(new long[tree.length], 0, tree.length, true);
+	}
+
+	/**
+	 * Returns up to count stations, ordered by increasing distance to the position and then by index.
+	 */
+	int[] findNearest(float lat, float lon, int count) {
+		// Longitude differences are at least scaled by the cosine of the furthest mean latitude from the equator.
+		double lonScale = Math.cos(Math.toRadians(Math.max(Math.abs(lat), maxAbsLat)));
+		BoundedStationHeap heap = new BoundedStationHeap(Math.min(count, tree.length));
+		if (heap.capacity() > 0) {
+			search(0, tree.length, true, lat, lon, lonScale, heap);
+		}
+		return heap.toSortedArray();
+	}
+
+	private void build(long[] scratch, int low, int high, boolean byLat) {
+		if (high - low <= 1) {
+			return;
+		}
+		// Pack each coordinate with its station index so that a primitive sort can be used.
+		float[] coordinates = byLat ? lats : lons;
+		for (int i = low; i < high; ++i) {
+			scratch[i] = (long) toSortableBits(coordinates[tree[i]]) << 32 | tree[i];
+		}
+		Arrays.sort(scratch, low, high);
+		for (int i = low; i < high; ++i) {
+			tree[i] = (int) scratch[i];
+		}
+		int middle = (low + high) >>> 1;
+		build(scratch, low, middle, !byLat);
+		build(scratch, middle + 1, high, !byLat);
+	}
+
+	private void search(int low, int high, boolean byLat, float lat, float lon, double lonScale,
+			BoundedStationHeap heap) {
+		if (low >= high) {
+			return;
+		}
+		int middle = (low + high) >>> 1;
+		int station = tree[middle];
+		heap.offer(station, CoordinateHelper.computeSquaredDistance(lats[station], lons[station], lat, lon));
+		double diff = byLat ? lat - lats[station] : (lon - lons[station]) * lonScale;
+		if (diff < 0) {
+			search(low, middle, !byLat, lat, lon, lonScale, heap);
+		} else {
+			search(middle + 1, high, !byLat, lat, lon, lonScale, heap);
+		}
+		// The scaled coordinate difference gives a lower bound of the distance to any station beyond the splitting line.
+		float squaredDistanceToLine = CoordinateHelper.computeSquaredDistance(diff, 0, 0, 0) * SQUARED_DISTANCE_MARGIN;
+		if (!heap.isFull() || squaredDistanceToLine <= heap.peekWorstKey()) {
+			if (diff < 0) {
+				search(middle + 1, high, !byLat, lat, lon, lonScale, heap);
+			} else {
+				search(low, middle, !byLat, lat, lon, lonScale, heap);
+			}
+		}
+	}
+
+	private static int toSortableBits(float value) {
+		// Flips the magnitude bits of negative values so that signed integer ordering matches float ordering.
+		int bits = Float.floatToIntBits(value);
+		return bits ^ (bits >> 31 & Integer.MAX_VALUE);
+	}
+
+}
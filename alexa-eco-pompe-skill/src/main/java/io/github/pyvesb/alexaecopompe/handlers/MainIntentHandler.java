@@ -2,11 +2,14 @@ package io.github.pyvesb.alexaecopompe.handlers;
 
 import static io.github.pyvesb.alexaecopompe.speech.Messages.ADDRESS_ERROR;
 import static io.github.pyvesb.alexaecopompe.speech.Messages.ADDRESS_NOT_SPECIFIED;
+import static io.github.pyvesb.alexaecopompe.speech.Messages.DATA_UNAVAILABLE;
 import static io.github.pyvesb.alexaecopompe.speech.Messages.INCORRECT_RADIUS;
 import static io.github.pyvesb.alexaecopompe.speech.Messages.MISSING_ADDRESS_PERMS;
 import static io.github.pyvesb.alexaecopompe.speech.Messages.MISSING_ADDRESS_PERMS_NO_GEO;
 import static io.github.pyvesb.alexaecopompe.speech.Messages.MISSING_GEO_PERMS;
 import static io.github.pyvesb.alexaecopompe.speech.Messages.NAME;
+import static io.github.pyvesb.alexaecopompe.speech.Messages.NEAREST_STATION_FOUND;
+import static io.github.pyvesb.alexaecopompe.speech.Messages.NEAREST_STATION_FOUND_E10;
 import static io.github.pyvesb.alexaecopompe.speech.Messages.NO_STATION_FOR_TYPE_RADIUS;
 import static io.github.pyvesb.alexaecopompe.speech.Messages.NO_STATION_FOR_TYPE_TOWN;
 import static io.github.pyvesb.alexaecopompe.speech.Messages.NO_STATION_RADIUS;
@@ -20,15 +23,15 @@ import static io.github.pyvesb.alexaecopompe.speech.Messages.UNSUPPORTED_LOCATIO
 import static java.lang.System.getenv;
 import static java.util.Collections.singletonList;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -53,17 +56,21 @@ import com.amazon.ask.response.ResponseBuilder;
 
 import io.github.pyvesb.alexaecopompe.address.Address;
 import io.github.pyvesb.alexaecopompe.address.AddressForbiddenException;
-import io.github.pyvesb.alexaecopompe.address.AddressInaccessibleException;
 import io.github.pyvesb.alexaecopompe.address.AddressNotSpecifiedException;
 import io.github.pyvesb.alexaecopompe.address.DeviceAddressProvider;
 import io.github.pyvesb.alexaecopompe.data.DataProvider;
-import io.github.pyvesb.alexaecopompe.data.NameProvider;
 import io.github.pyvesb.alexaecopompe.domain.GasStation;
 import io.github.pyvesb.alexaecopompe.domain.GasType;
 import io.github.pyvesb.alexaecopompe.domain.Price;
+import io.github.pyvesb.alexaecopompe.geography.CheapestGasStations;
+import io.github.pyvesb.alexaecopompe.geography.CoordinateHelper;
 import io.github.pyvesb.alexaecopompe.geography.Position;
 import io.github.pyvesb.alexaecopompe.geography.PositionProvider;
+import io.github.pyvesb.alexaecopompe.http.HttpClient;
+import io.github.pyvesb.alexaecopompe.speech.EuroFormatter;
 import io.github.pyvesb.alexaecopompe.speech.Normalisers;
+import io.github.pyvesb.alexaecopompe.speech.Template;
+import io.github.pyvesb.alexaecopompe.utils.Deadline;
 import io.github.pyvesb.alexaecopompe.utils.GasStationPriceSorter;
 import io.github.pyvesb.alexaecopompe.utils.PostCodesExtractor;
 
@@ -79,34 +86,63 @@ public class MainIntentHandler implements IntentRequestHandler {
 
 	private static final double COORDINATE_ACCURACY_METERS = 1000;
 	private static final int GEOLOCATION_STALENESS_SECONDS = 300;
+	// Alexa waits for up to 8 seconds, leave some time to build and send the response.
+	private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 7000L;
+	// Stages give up a little before the request deadline, so that their degraded answers can still be used.
+	private static final long STAGE_MARGIN_MILLIS = 500L;
+
+	// Templates of the messages with placeholders, all station messages sharing the same placeholders.
+	private static final String[] STATION_PLACEHOLDERS = { "$NAME", "$TYPE", "$PRICE", "$SUBJECT", "$ADDRESS", "$TOWN",
+			"$DATE", "$RADIUS", "$DISTANCE" };
+	private static final Template STATION_FOUND_TEMPLATE = Template.compile(STATION_FOUND, STATION_PLACEHOLDERS);
+	private static final Template STATION_FOUND_E10_TEMPLATE = Template.compile(STATION_FOUND_E10, STATION_PLACEHOLDERS);
+	private static final Template NEAREST_STATION_FOUND_TEMPLATE = Template.compile(NEAREST_STATION_FOUND,
+			STATION_PLACEHOLDERS);
+	private static final Template NEAREST_STATION_FOUND_E10_TEMPLATE = Template.compile(NEAREST_STATION_FOUND_E10,
+			STATION_PLACEHOLDERS);
+	private static final Template NO_STATION_TOWN_TEMPLATE = Template.compile(NO_STATION_TOWN, "$LOCATION");
+	private static final Template NO_STATION_FOR_TYPE_TOWN_TEMPLATE = Template.compile(NO_STATION_FOR_TYPE_TOWN,
+			"$TYPE", "$LOCATION");
+	private static final Template NO_STATION_RADIUS_TEMPLATE = Template.compile(NO_STATION_RADIUS, "$RADIUS", "$TYPE",
+			"$BIGGER_RADIUS");
+	private static final Template NO_STATION_RADIUS_MAX_TEMPLATE = Template.compile(NO_STATION_RADIUS_MAX, "$RADIUS");
+	private static final Template NO_STATION_FOR_TYPE_RADIUS_TEMPLATE = Template.compile(NO_STATION_FOR_TYPE_RADIUS,
+			"$TYPE", "$RADIUS");
 
 	private final DataProvider dataProvider;
-	private final NameProvider nameProvider;
 	private final PositionProvider positionProvider;
 	private final DeviceAddressProvider deviceAddressProvider;
 	private final GasStationPriceSorter gasStationPriceSorter;
-	private final DecimalFormat euroFormat;
+	private final long requestTimeoutMillis;
 
 	public MainIntentHandler() {
-		this(new DataProvider(getenv("DATA_URL"), Long.parseLong(getenv("DATA_STALENESS_MILLIS"))),
-				new NameProvider(),
-				new PositionProvider(getenv("POSITION_ENPOINT"), getenv("USER_AGENT"),
-						Integer.parseInt(getenv("TIMEOUT_MILLIS")), getenv("LAT_PATH"), getenv("LON_PATH")),
-				new DeviceAddressProvider(Integer.parseInt(getenv("TIMEOUT_MILLIS"))),
-				new GasStationPriceSorter(Long.parseLong(getenv("PRICE_STALENESS_DAYS"))));
+		this(new DataProvider(getenv("DATA_URL"), Long.parseLong(getenv("DATA_STALENESS_MILLIS")),
+				Boolean.parseBoolean(getenv("DATA_BACKGROUND_REFRESH"))));
 	}
 
-	MainIntentHandler(DataProvider dataProvider, NameProvider nameProvider, PositionProvider positionProvider,
-			DeviceAddressProvider deviceAddressProvider, GasStationPriceSorter gasStationPriceSorter) {
+	private MainIntentHandler(DataProvider dataProvider) {
+		this(dataProvider, new HttpClient(Integer.parseInt(getenv("TIMEOUT_MILLIS"))));
+	}
+
+	private MainIntentHandler(DataProvider dataProvider, HttpClient httpClient) {
+		this(dataProvider,
+				new PositionProvider(httpClient, getenv("POSITION_ENPOINT"), getenv("USER_AGENT"),
+						Integer.parseInt(getenv("TIMEOUT_MILLIS")), getenv("LAT_PATH"), getenv("LON_PATH"),
+						dataProvider::getPostCodePosition,
+						NumberUtils.toLong(getenv("POSITION_HEDGE_DELAY_MILLIS"), -1L)),
+				new DeviceAddressProvider(httpClient),
+				new GasStationPriceSorter(Long.parseLong(getenv("PRICE_STALENESS_DAYS"))),
+				NumberUtils.toLong(getenv("REQUEST_TIMEOUT_MILLIS"), DEFAULT_REQUEST_TIMEOUT_MILLIS));
+	}
+
+	MainIntentHandler(DataProvider dataProvider, PositionProvider positionProvider,
+			DeviceAddressProvider deviceAddressProvider, GasStationPriceSorter gasStationPriceSorter,
+			long requestTimeoutMillis) {
 		this.dataProvider = dataProvider;
 		this.positionProvider = positionProvider;
-		this.nameProvider = nameProvider;
 		this.deviceAddressProvider = deviceAddressProvider;
 		this.gasStationPriceSorter = gasStationPriceSorter;
-		DecimalFormatSymbols euroSymbol = new DecimalFormatSymbols();
-		euroSymbol.setDecimalSeparator('€');
-		// Formats prices to values such as "1€22" or "1€589", which will be correctly spoken out loud by Alexa.
-		euroFormat = new DecimalFormat("0.00#", euroSymbol);
+		this.requestTimeoutMillis = requestTimeoutMillis;
 	}
 
 	@Override
@@ -116,6 +152,8 @@ public class MainIntentHandler implements IntentRequestHandler {
 
 	@Override
 	public Optional<Response> handle(HandlerInput input, IntentRequest intentRequest) {
+		// Every stage of the request only gets the remaining budget of this deadline.
+		Deadline deadline = Deadline.after(requestTimeoutMillis);
 		RequestEnvelope envelope = input.getRequestEnvelope();
 		Intent intent = intentRequest.getIntent();
 		String intentName = intent.getName();
@@ -126,13 +164,15 @@ public class MainIntentHandler implements IntentRequestHandler {
 		if (gasSlot.getValue() == null) {
 			return handleMissingGasValue(input, intent);
 		} else if ("GasTown".equals(intentName)) {
-			return handleLocationRequest(input.getResponseBuilder(), gasSlot, slots.get("town"));
+			return handleLocationRequest(input.getResponseBuilder(), gasSlot, slots.get("town"), deadline);
 		} else if ("GasDepartment".equals(intentName)) {
-			return handleLocationRequest(input.getResponseBuilder(), gasSlot, slots.get("department"));
+			return handleLocationRequest(input.getResponseBuilder(), gasSlot, slots.get("department"), deadline);
 		} else if ("GasRadius".equals(intentName)) {
-			return handleRadiusRequest(input.getResponseBuilder(), gasSlot, slots.get("radius"), envelope.getContext());
+			return handleRadiusRequest(input.getResponseBuilder(), gasSlot, slots.get("radius"), envelope.getContext(),
+					deadline);
 		}
-		return handleRadiusRequest(input.getResponseBuilder(), gasSlot, DEFAULT_RADIUS, envelope.getContext());
+		return handleRadiusRequest(input.getResponseBuilder(), gasSlot, DEFAULT_RADIUS, envelope.getContext(),
+				deadline);
 	}
 
 	private Optional<Response> handleMissingGasValue(HandlerInput input, Intent intent) {
@@ -140,7 +180,8 @@ public class MainIntentHandler implements IntentRequestHandler {
 		return input.getResponseBuilder().addDelegateDirective(intent).build();
 	}
 
-	private Optional<Response> handleLocationRequest(ResponseBuilder respBuilder, Slot gasSlot, Slot locationSlot) {
+	private Optional<Response> handleLocationRequest(ResponseBuilder respBuilder, Slot gasSlot, Slot locationSlot,
+			Deadline deadline) {
 		Optional<String> gasId = getSlotId(gasSlot);
 		if (!gasId.isPresent()) {
 			LOGGER.warn("Unsupported gas type (gas={})", gasSlot.getValue());
@@ -151,21 +192,30 @@ public class MainIntentHandler implements IntentRequestHandler {
 			LOGGER.warn("Unsupported location (location={})", locationSlot.getValue());
 			return respBuilder.withSpeech(UNSUPPORTED_LOCATION).withReprompt(UNSUPPORTED_LOCATION).build();
 		}
-		List<GasStation> gasStations;
+		// Nothing needs locating, the data is the only stage bounded by the deadline.
+		dataProvider.refreshIfStaleAsync();
+		if (!dataProvider.awaitData(deadline.minusMillis(STAGE_MARGIN_MILLIS))) {
+			return respBuilder.withSpeech(DATA_UNAVAILABLE).withShouldEndSession(true).build();
+		}
+		GasType gasType = GasType.fromId(gasId.get());
+		GasType[] gasTypes = gasType == GasType.SP95 ? new GasType[] { gasType, GasType.E10 }
+				: new GasType[] { gasType };
+		CheapestGasStations cheapestGasStations;
 		String town = null;
 		if ("town".equals(locationSlot.getName())) {
-			gasStations = dataProvider.getGasStationsForPostCodes(PostCodesExtractor.from(locationId.get()));
+			cheapestGasStations = dataProvider.getCheapestGasStationsForPostCodes(
+					PostCodesExtractor.from(locationId.get()), gasStationPriceSorter.getPriceRanking(), 1, gasTypes);
 			town = locationSlot.getValue();
 		} else {
-			gasStations = dataProvider.getGasStationsForDepartment(locationId.get());
+			cheapestGasStations = dataProvider.getCheapestGasStationsForDepartment(locationId.get(),
+					gasStationPriceSorter.getPriceRanking(), 1, gasTypes);
 		}
-		GasType gasType = GasType.fromId(gasId.get());
 		LOGGER.info("Location request (gas={}, location={})", gasType, locationSlot.getValue());
-		return handleGasStationList(respBuilder, gasType, gasStations, Optional.ofNullable(town), Optional.empty());
+		return handleCheapestGasStations(respBuilder, gasType, cheapestGasStations, Optional.ofNullable(town));
 	}
 
 	private Optional<Response> handleRadiusRequest(ResponseBuilder respBuilder, Slot gasSlot, Slot radiusSlot,
-			Context context) {
+			Context context, Deadline deadline) {
 		Optional<String> gasId = getSlotId(gasSlot);
 		if (!gasId.isPresent()) {
 			LOGGER.warn("Unsupported gas type (gas={})", gasSlot.getValue());
@@ -179,39 +229,86 @@ public class MainIntentHandler implements IntentRequestHandler {
 
 		SystemState system = context.getSystem();
 		Device device = system.getDevice();
-		Optional<Position> position;
+		Deadline stageDeadline = deadline.minusMillis(STAGE_MARGIN_MILLIS);
+		CompletableFuture<Address> addressLookup = null;
+		CompletableFuture<Optional<Position>> positionLookup;
 		if (isGeolocationAvailable(context)) {
 			LOGGER.info("Using device geolocation (device={})", device.getDeviceId());
-			position = positionProvider.getByGeolocation(context.getGeolocation());
+			Optional<Position> geolocation = positionProvider.getByGeolocation(context.getGeolocation());
+			positionLookup = CompletableFuture.completedFuture(geolocation);
 		} else if (isGeolocationCompatible(device) && isMissingGeolocationPermission(system.getUser())) {
 			return handleMissingPermissions(respBuilder, GEO_PERM, MISSING_GEO_PERMS);
 		} else {
 			LOGGER.info("Using device address (device={})", device.getDeviceId());
-			try {
-				Address address = deviceAddressProvider.fetchAddress(system.getApiEndpoint(),
-						device.getDeviceId(), system.getApiAccessToken());
-				position = positionProvider.getByAddress(address);
-			} catch (AddressForbiddenException e) {
-				String speech = isGeolocationCompatible(device) ? MISSING_ADDRESS_PERMS_NO_GEO : MISSING_ADDRESS_PERMS;
-				return handleMissingPermissions(respBuilder, ADDRESS_PERM, speech);
-			} catch (AddressNotSpecifiedException e) {
-				LOGGER.info("No device address specified");
-				return respBuilder.withSpeech(ADDRESS_NOT_SPECIFIED).withShouldEndSession(true).build();
-			} catch (AddressInaccessibleException e) {
-				LOGGER.error("Amazon address error (endpoint={})", system.getApiEndpoint(), e);
-				return respBuilder.withSpeech(ADDRESS_ERROR).withShouldEndSession(true).build();
-			}
+			addressLookup = deviceAddressProvider.fetchAddressAsync(system.getApiEndpoint(), device.getDeviceId(),
+					system.getApiAccessToken(), stageDeadline);
+			positionLookup = addressLookup
+					.thenCompose(address -> positionProvider.getByAddressAsync(address, stageDeadline));
+		}
+		// Stale data is retrieved whilst the device is being located, each stage only gets the remaining budget.
+		dataProvider.refreshIfStaleAsync();
+
+		Optional<Position> position;
+		try {
+			position = stageDeadline.await(positionLookup);
+		} catch (ExecutionException e) {
+			return handleAddressFailure(respBuilder, system, e.getCause());
+		} catch (TimeoutException e) {
+			LOGGER.warn("Position not located before deadline (device={})", device.getDeviceId());
+			position = locatePostCode(addressLookup, stageDeadline);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return respBuilder.withSpeech(POSITION_UNKNOWN).withShouldEndSession(true).build();
 		}
 
 		if (position.isPresent()) {
-			List<GasStation> gasStations = dataProvider.getGasStationsWithinRadius(position.get(), radius);
+			// Stale data is served if fresh data could not be retrieved in time.
+			if (!dataProvider.awaitData(stageDeadline)) {
+				return respBuilder.withSpeech(DATA_UNAVAILABLE).withShouldEndSession(true).build();
+			}
 			GasType gasType = GasType.fromId(gasId.get());
 			LOGGER.info("Radius request (gas={}, radius={})", gasType, radius);
-			return handleGasStationList(respBuilder, gasType, gasStations, Optional.empty(), Optional.of(radius));
+			// E10 is ranked in the same pass as SP95, as it may be suggested as an alternative.
+			GasType[] gasTypes = gasType == GasType.SP95 ? new GasType[] { gasType, GasType.E10 }
+					: new GasType[] { gasType };
+			CheapestGasStations cheapestGasStations = dataProvider.getCheapestGasStationsWithinRadius(position.get(),
+					radius, gasStationPriceSorter.getPriceRanking(), 1, gasTypes);
+			return handleCheapestGasStations(respBuilder, gasType, cheapestGasStations, radius, position.get());
 		}
 		return respBuilder.withSpeech(POSITION_UNKNOWN).withShouldEndSession(true).build();
 	}
 
+	/**
+	 * Returns the position of the post code of the device address if it was fetched, which is less precise than the
+	 * position of the full address but can be located offline once geocoding has run out of time.
+	 */
+	private Optional<Position> locatePostCode(CompletableFuture<Address> addressLookup, Deadline deadline) {
+		if (addressLookup == null || !addressLookup.isDone() || addressLookup.isCompletedExceptionally()) {
+			return Optional.empty();
+		}
+		String postCode = addressLookup.join().getPostalCode();
+		// The deadline has expired, post codes are only located if data can be served without waiting.
+		if (postCode == null || !dataProvider.awaitData(deadline)) {
+			return Optional.empty();
+		}
+		LOGGER.info("Falling back to post code position (postCode={})", postCode);
+		return dataProvider.getPostCodePosition(postCode);
+	}
+
+	private Optional<Response> handleAddressFailure(ResponseBuilder respBuilder, SystemState system,
+			Throwable failure) {
+		if (failure instanceof AddressForbiddenException) {
+			boolean geolocationCompatible = isGeolocationCompatible(system.getDevice());
+			String speech = geolocationCompatible ? MISSING_ADDRESS_PERMS_NO_GEO : MISSING_ADDRESS_PERMS;
+			return handleMissingPermissions(respBuilder, ADDRESS_PERM, speech);
+		} else if (failure instanceof AddressNotSpecifiedException) {
+			LOGGER.info("No device address specified");
+			return respBuilder.withSpeech(ADDRESS_NOT_SPECIFIED).withShouldEndSession(true).build();
+		}
+		LOGGER.error("Amazon address error (endpoint={})", system.getApiEndpoint(), failure);
+		return respBuilder.withSpeech(ADDRESS_ERROR).withShouldEndSession(true).build();
+	}
+
 	private boolean isMissingGeolocationPermission(User user) {
 		return user.getPermissions().getScopes().get(GEO_PERM).getStatus() != PermissionStatus.GRANTED;
 	}
@@ -254,63 +351,131 @@ public class MainIntentHandler implements IntentRequestHandler {
 		return Optional.empty();
 	}
 
-	private Optional<Response> handleGasStationList(ResponseBuilder respBuilder, GasType gasType,
-			List<GasStation> gasStations, Optional<String> town, Optional<Integer> radius) {
-		if (gasStations.isEmpty()) {
-			LOGGER.info("No station found (location={})", town.orElseGet(() -> radius.get() + "km"));
+	private Optional<Response> handleCheapestGasStations(ResponseBuilder respBuilder, GasType gasType,
+			CheapestGasStations cheapestGasStations, Optional<String> town) {
+		if (cheapestGasStations.getGasStationCount() == 0) {
+			LOGGER.info("No station found (location={})", town.orElse("department"));
+			String text = NO_STATION_TOWN_TEMPLATE.render(town.orElse("ce département"));
+			return respBuilder.withSpeech(text).withShouldEndSession(true).build();
+		}
+
+		List<GasStation> cheapest = cheapestGasStations.getCheapestGasStations(gasType);
+		if (!cheapest.isEmpty()) {
+			GasStation cheapestGasStation = cheapest.get(0);
+			LOGGER.info("Station found (gas={}, id={})", gasType, cheapestGasStation.getId());
+			return buildGasStationResponse(respBuilder, cheapestGasStation,
+					cheapestGasStation.getPriceForGasType(gasType).get(), town, STATION_FOUND_TEMPLATE);
+		}
+		// SP95 and E10 are interchangeable on most vehicles, see if E10 is available if no SP95 was found.
+		List<GasStation> cheapestE10 = cheapestGasStations.getCheapestGasStations(GasType.E10);
+		if (gasType == GasType.SP95 && !cheapestE10.isEmpty()) {
+			GasStation cheapestGasStation = cheapestE10.get(0);
+			LOGGER.info("Other E10 station (gas=E10, id={})", cheapestGasStation.getId());
+			return buildGasStationResponse(respBuilder, cheapestGasStation,
+					cheapestGasStation.getPriceForGasType(GasType.E10).get(), town, STATION_FOUND_E10_TEMPLATE);
+		}
+		LOGGER.info("No station found for type (gas={}, location={})", gasType, town.orElse("department"));
+		String text = NO_STATION_FOR_TYPE_TOWN_TEMPLATE.render(gasType.getSpeechText(), town.orElse("ce département"));
+		return respBuilder.withSpeech(text).withShouldEndSession(true).build();
+	}
+
+	private Optional<Response> handleCheapestGasStations(ResponseBuilder respBuilder, GasType gasType,
+			CheapestGasStations cheapestGasStations, int radius, Position position) {
+		if (cheapestGasStations.getGasStationCount() == 0) {
+			LOGGER.info("No station found (location={}km)", radius);
 			String text;
-			if (!radius.isPresent()) {
-				text = StringUtils.replaceOnce(NO_STATION_TOWN, "$LOCATION", town.orElse("ce département"));
-			} else if (radius.get() == RADIUS_UPPER_BOUND) {
-				text = StringUtils.replaceOnce(NO_STATION_RADIUS_MAX, "$RADIUS", radius.get().toString());
+			if (radius == RADIUS_UPPER_BOUND) {
+				text = NO_STATION_RADIUS_MAX_TEMPLATE.render(Integer.toString(radius));
 			} else {
-				String biggerRadius = Integer.toString(radius.get() + 5);
-				text = StringUtils.replaceEach(NO_STATION_RADIUS, new String[] { "$RADIUS", "$TYPE", "$BIGGER_RADIUS" },
-						new String[] { radius.get().toString(), gasType.getDisplayName(), biggerRadius });
+				String biggerRadius = Integer.toString(radius + 5);
+				text = NO_STATION_RADIUS_TEMPLATE.render(Integer.toString(radius), gasType.getDisplayName(),
+						biggerRadius);
 			}
-			return respBuilder.withSpeech(text).withShouldEndSession(true).build();
+			return handleNearestGasStation(respBuilder, gasType, position, radius, text);
 		}
 
-		gasStationPriceSorter.sortGasStationsByIncreasingPricesForGasType(gasStations, gasType);
-		GasStation cheapestGasStation = gasStations.get(0);
-		Optional<Price> price = cheapestGasStation.getPriceForGasType(gasType);
-		if (price.isPresent()) {
+		List<GasStation> cheapest = cheapestGasStations.getCheapestGasStations(gasType);
+		if (!cheapest.isEmpty()) {
+			GasStation cheapestGasStation = cheapest.get(0);
 			LOGGER.info("Station found (gas={}, id={})", gasType, cheapestGasStation.getId());
-			return buildGasStationResponse(respBuilder, cheapestGasStation, price.get(), town, STATION_FOUND);
-		} else if (gasType == GasType.SP95) {
-			// SP95 and E10 are interchangeable on most vehicles, see if E10 is available if no SP95 was found.
-			gasStationPriceSorter.sortGasStationsByIncreasingPricesForGasType(gasStations, GasType.E10);
-			cheapestGasStation = gasStations.get(0);
-			price = cheapestGasStation.getPriceForGasType(GasType.E10);
-			if (price.isPresent()) {
-				LOGGER.info("Other E10 station (gas=E10, id={})", cheapestGasStation.getId());
-				return buildGasStationResponse(respBuilder, cheapestGasStation, price.get(), town, STATION_FOUND_E10);
+			return buildGasStationResponse(respBuilder, cheapestGasStation,
+					cheapestGasStation.getPriceForGasType(gasType).get(), Optional.empty(), STATION_FOUND_TEMPLATE);
+		}
+		List<GasStation> cheapestE10 = cheapestGasStations.getCheapestGasStations(GasType.E10);
+		if (gasType == GasType.SP95 && !cheapestE10.isEmpty()) {
+			GasStation cheapestGasStation = cheapestE10.get(0);
+			LOGGER.info("Other E10 station (gas=E10, id={})", cheapestGasStation.getId());
+			return buildGasStationResponse(respBuilder, cheapestGasStation,
+					cheapestGasStation.getPriceForGasType(GasType.E10).get(), Optional.empty(),
+					STATION_FOUND_E10_TEMPLATE);
+		}
+		LOGGER.info("No station found for type (gas={}, location={}km)", gasType, radius);
+		String text = NO_STATION_FOR_TYPE_RADIUS_TEMPLATE.render(gasType.getSpeechText(), Integer.toString(radius));
+		return handleNearestGasStation(respBuilder, gasType, position, radius, text);
+	}
+
+	private Optional<Response> handleNearestGasStation(ResponseBuilder respBuilder, GasType gasType, Position position,
+			int radius, String notFoundText) {
+		// Rather than asking the user to try again with a bigger radius, directly provide the nearest station, as long
+		// as it is not further away than the biggest radius the user could have asked for.
+		Optional<GasStation> nearestGasStation = findNearestGasStation(position, gasType);
+		if (nearestGasStation.isPresent()) {
+			return buildNearestGasStationResponse(respBuilder, nearestGasStation.get(), gasType, position, radius,
+					NEAREST_STATION_FOUND_TEMPLATE);
+		}
+		// Same fallback as for the stations within the radius.
+		if (gasType == GasType.SP95) {
+			Optional<GasStation> nearestE10GasStation = findNearestGasStation(position, GasType.E10);
+			if (nearestE10GasStation.isPresent()) {
+				return buildNearestGasStationResponse(respBuilder, nearestE10GasStation.get(), GasType.E10, position,
+						radius, NEAREST_STATION_FOUND_E10_TEMPLATE);
 			}
 		}
-		LOGGER.info("No station found for type (gas={}, location={})", gasType, town.orElseGet(() -> radius.get() + "km"));
-		String text = radius.isPresent()
-				? StringUtils.replaceEach(NO_STATION_FOR_TYPE_RADIUS, new String[] { "$TYPE", "$RADIUS" },
-						new String[] { gasType.getSpeechText(), radius.get().toString() })
-				: StringUtils.replaceEach(NO_STATION_FOR_TYPE_TOWN, new String[] { "$TYPE", "$LOCATION" },
-						new String[] { gasType.getSpeechText(), town.orElse("ce département") });
-		return respBuilder.withSpeech(text).withShouldEndSession(true).build();
+		return respBuilder.withSpeech(notFoundText).withShouldEndSession(true).build();
+	}
+
+	private Optional<GasStation> findNearestGasStation(Position position, GasType gasType) {
+		List<GasStation> nearestGasStations = dataProvider.getNearestGasStations(position, gasType, 1);
+		if (nearestGasStations.isEmpty() || computeDistance(nearestGasStations.get(0), position) > RADIUS_UPPER_BOUND) {
+			return Optional.empty();
+		}
+		return Optional.of(nearestGasStations.get(0));
+	}
+
+	private Optional<Response> buildNearestGasStationResponse(ResponseBuilder respBuilder, GasStation gasStation,
+			GasType gasType, Position position, int radius, Template template) {
+		long distance = Math.round(computeDistance(gasStation, position));
+		LOGGER.info("Nearest station (gas={}, id={}, distance={}km)", gasType, gasStation.getId(), distance);
+		return buildGasStationResponse(respBuilder, gasStation, gasStation.getPriceForGasType(gasType).get(),
+				Optional.empty(), template, Integer.toString(radius), Long.toString(distance));
+	}
+
+	private static double computeDistance(GasStation gasStation, Position position) {
+		return Math.sqrt(CoordinateHelper.computeSquaredDistance(gasStation.getLat(), gasStation.getLon(),
+				position.getLat(), position.getLon()));
+	}
+
+	private Optional<Response> buildGasStationResponse(ResponseBuilder respBuilder, GasStation gasStation, Price price,
+			Optional<String> town, Template template) {
+		return buildGasStationResponse(respBuilder, gasStation, price, town, template, "", "");
 	}
 
 	private Optional<Response> buildGasStationResponse(ResponseBuilder respBuilder, GasStation gasStation, Price price,
-			Optional<String> town, String baseText) {
-		Optional<String> gsName = nameProvider.getById(gasStation.getId());
-		String euroText = euroFormat.format(price.getValue());
-		String address = Normalisers.normaliseAddress(gasStation.getAddress());
-		String townText = Normalisers.normaliseTown(town.orElse(gasStation.getTown()));
+			Optional<String> town, Template template, String radiusText, String distanceText) {
+		Optional<String> gsName = gasStation.getName();
+		String euroText = EuroFormatter.format(price.getValue());
+		// Addresses and towns of gas stations are normalised by the data preprocessor, only towns from the request
+		// still need to be.
+		String address = gasStation.getAddress();
+		String townText = town.map(Normalisers::normaliseTown).orElse(gasStation.getTown());
 
 		String cardText = gsName.orElse("Pompe à essence") + "\n" + address + ", " + townText + "\n"
 				+ price.getType().getDisplayName() + " : " + euroText;
 
 		String updatedDateText = getUpdatedDateText(price);
-		String speechText = StringUtils.replaceEach(baseText,
-				new String[] { "$NAME", "$TYPE", "$PRICE", "$SUBJECT", "$ADDRESS", "$TOWN", "$DATE" },
-				new String[] { gsName.orElse("Une pompe"), price.getType().getSpeechText(), euroText,
-						gsName.isPresent() ? "Cette pompe" : "Elle", address, townText, updatedDateText });
+		String speechText = template.render(gsName.orElse("Une pompe"), price.getType().getSpeechText(), euroText,
+				gsName.isPresent() ? "Cette pompe" : "Elle", address, townText, updatedDateText, radiusText,
+				distanceText);
 
 		return respBuilder.withSpeech(speechText).withSimpleCard(NAME, cardText).withShouldEndSession(true).build();
 	}
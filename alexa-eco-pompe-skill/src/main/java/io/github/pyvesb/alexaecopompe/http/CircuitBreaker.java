@@ -0,0 +1,157 @@
+package io.github.pyvesb.alexaecopompe.http;
+
+import java.time.Clock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Circuit breaker guarding calls to a remote service. The outcomes of the most recent calls are kept in a rolling
+ * window, calls which failed or were slower than a given latency counting as bad ones. Once the window holds enough
+ * calls and the rate of bad ones reaches the threshold, the circuit opens and calls are rejected straight away, so that
+ * callers fall back immediately rather than wait for a degraded service to time out. After the open duration, a single
+ * probe call is let through: the circuit closes again if it is good, and opens for another duration otherwise.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static final Logger LOGGER = LogManager.getLogger(CircuitBreaker.class);
+
+	private final String name;
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final long slowCallMillis;
+	private final long openMillis;
+	private final Clock clock;
+	// Ring buffer of the outcomes of the most recent calls, true for bad ones.
+	private final boolean[] window;
+	private final long[] transitionCounts = new long[State.values().length];
+	private State state = State.CLOSED;
+	private int nextSlot;
+	private int recordedCalls;
+	private int badCalls;
+	private long openedAtMillis;
+	private boolean probeInFlight;
+	private long rejectedCount;
+
+	public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+			long slowCallMillis, long openMillis) {
+		this(name, windowSize, minimumCalls, failureRateThreshold, slowCallMillis, openMillis, Clock.systemUTC());
+	}
+
+	CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold, long slowCallMillis,
+			long openMillis, Clock clock) {
+		this.name = name;
+		this.window = new boolean[windowSize];
+		this.minimumCalls = minimumCalls;
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallMillis = slowCallMillis;
+		this.openMillis = openMillis;
+		this.clock = clock;
+	}
+
+	/**
+	 * Returns whether a call can be made. Callers which are granted a permission must report the outcome of their call
+	 * with {@link #record(boolean, long)}, or {@link #release()} it if the outcome tells nothing about the service.
+	 */
+	public synchronized boolean tryAcquirePermission() {
+		if (state == State.OPEN) {
+			if (clock.millis() - openedAtMillis < openMillis) {
+				++rejectedCount;
+				return false;
+			}
+			transitionTo(State.HALF_OPEN);
+		}
+		if (state == State.HALF_OPEN) {
+			if (probeInFlight) {
+				++rejectedCount;
+				return false;
+			}
+			probeInFlight = true;
+		}
+		return true;
+	}
+
+	public synchronized void record(boolean failed, long elapsedMillis) {
+		boolean bad = failed || elapsedMillis >= slowCallMillis;
+		if (state == State.HALF_OPEN) {
+			probeInFlight = false;
+			if (bad) {
+				open();
+			} else {
+				clearWindow();
+				transitionTo(State.CLOSED);
+			}
+		} else if (state == State.CLOSED) {
+			if (recordedCalls == window.length) {
+				badCalls -= window[nextSlot] ? 1 : 0;
+			} else {
+				++recordedCalls;
+			}
+			window[nextSlot] = bad;
+			badCalls += bad ? 1 : 0;
+			nextSlot = (nextSlot + 1) % window.length;
+			if (recordedCalls >= minimumCalls && badCalls >= failureRateThreshold * recordedCalls) {
+				open();
+			}
+		}
+		// Outcomes of calls permitted before the circuit opened are ignored.
+	}
+
+	/**
+	 * Releases a permission without recording any outcome, for instance because the caller gave up on the call. In the
+	 * half-open state, another probe call is then let through.
+	 */
+	public synchronized void release() {
+		if (state == State.HALF_OPEN) {
+			probeInFlight = false;
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Returns the number of times the circuit transitioned to the given state.
+	 */
+	public synchronized long getTransitionCount(State to) {
+		return transitionCounts[to.ordinal()];
+	}
+
+	public synchronized long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	/**
+	 * Returns the rate of bad calls in the rolling window, between 0 and 1.
+	 */
+	public synchronized double getFailureRate() {
+		return recordedCalls == 0 ? 0d : (double) badCalls / recordedCalls;
+	}
+
+	private void open() {
+		openedAtMillis = clock.millis();
+		transitionTo(State.OPEN);
+	}
+
+	private void clearWindow() {
+		nextSlot = 0;
+		recordedCalls = 0;
+		badCalls = 0;
+	}
+
+	private void transitionTo(State newState) {
+		LOGGER.warn("Circuit {} transitioned from {} to {} (failureRate={}, rejected={})", name, state, newState,
+				getFailureRate(), rejectedCount);
+		if (newState == State.OPEN) {
+			clearWindow();
+		}
+		state = newState;
+		++transitionCounts[newState.ordinal()];
+	}
+
+}
@@ -0,0 +1,17 @@
+package io.github.pyvesb.alexaecopompe.http;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thrown when a request timed out because the deadline of the caller expired before the total timeout elapsed, which
+ * tells nothing about the health of the remote service.
+ */
+public class DeadlineExceededException extends TimeoutException {
+
+	private static final long serialVersionUID = 1L;
+
+	public DeadlineExceededException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,178 @@
+package io.github.pyvesb.alexaecopompe.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.pyvesb.alexaecopompe.utils.Deadline;
+
+/**
+ * Outbound HTTP client shared by the providers calling remote services. Requests run on a pool of daemon threads and
+ * their responses are returned as futures, which fail if the total timeout elapses. Response bodies are always read
+ * fully and their streams closed, so that the JDK keeps the underlying connections alive and reuses them. The number of
+ * requests in flight to each host is limited to the size of the JDK keep-alive cache (http.maxConnections), requests
+ * beyond that limit wait for a permit so that they reuse a connection rather than open and then discard a new one.
+ * Connections of timed out requests are disconnected, which unblocks their threads and releases their permits at once
+ * rather than when the read timeout elapses. The pool is bounded by http.maxThreads, further requests are queued.
+ */
+public class HttpClient {
+
+	private static final int MAX_CONNECTIONS_PER_HOST = Integer.getInteger("http.maxConnections", 5);
+	private static final int MAX_THREADS = Integer.getInteger("http.maxThreads", 20);
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private final int connectTimeout;
+	private final int readTimeout;
+	private final int totalTimeout;
+	private final int maxConnectionsPerHost;
+	private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+	private final ExecutorService executor = newBoundedThreadPool();
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(HttpClient::newThread);
+
+	public HttpClient(int timeout) {
+		this(timeout, timeout, timeout, MAX_CONNECTIONS_PER_HOST);
+	}
+
+	public HttpClient(int connectTimeout, int readTimeout, int totalTimeout, int maxConnectionsPerHost) {
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.totalTimeout = totalTimeout;
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	/**
+	 * Sends a GET request with the given headers. The returned future fails with an IOException if the request could
+	 * not be sent or its response read, or with a TimeoutException if no response was received within the total
+	 * timeout.
+	 */
+	public CompletableFuture<HttpResponse> get(String url, Map<String, String> headers) {
+		return get(url, headers, Deadline.none());
+	}
+
+	/**
+	 * Variant of {@link #get(String, Map)} which fails with a DeadlineExceededException instead once the deadline
+	 * expires, if it does so before the total timeout elapses. Requests are not sent at all if the deadline has already
+	 * expired.
+	 */
+	public CompletableFuture<HttpResponse> get(String url, Map<String, String> headers, Deadline deadline) {
+		CompletableFuture<HttpResponse> response = new CompletableFuture<>();
+		long remainingMillis = deadline.remainingMillis();
+		boolean clipped = remainingMillis < totalTimeout;
+		long timeoutMillis = clipped ? remainingMillis : totalTimeout;
+		if (timeoutMillis <= 0) {
+			response.completeExceptionally(new DeadlineExceededException("Deadline expired before sending request"));
+			return response;
+		}
+		URL parsedUrl;
+		try {
+			parsedUrl = new URL(url);
+		} catch (MalformedURLException e) {
+			response.completeExceptionally(e);
+			return response;
+		}
+		Semaphore permits = hostPermits.computeIfAbsent(parsedUrl.getAuthority(),
+				host -> new Semaphore(maxConnectionsPerHost));
+		AtomicReference<HttpURLConnection> connection = new AtomicReference<>();
+		Future<?> request = executor.submit(
+				() -> execute(parsedUrl, headers, permits, timeoutMillis, clipped, connection, response));
+		ScheduledFuture<?> timeout = timer.schedule(() -> {
+			if (response.completeExceptionally(newTimeoutException("No response within " + timeoutMillis + "ms",
+					clipped))) {
+				// Interrupts requests waiting for a permit, blocking reads are only unblocked by closing their socket.
+				request.cancel(true);
+				HttpURLConnection openConnection = connection.get();
+				if (openConnection != null) {
+					openConnection.disconnect();
+				}
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		response.whenComplete((r, e) -> timeout.cancel(false));
+		return response;
+	}
+
+	private void execute(URL url, Map<String, String> headers, Semaphore permits, long timeoutMillis, boolean clipped,
+			AtomicReference<HttpURLConnection> openConnection, CompletableFuture<HttpResponse> response) {
+		try {
+			if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				response.completeExceptionally(
+						newTimeoutException("Too many requests in flight to " + url.getHost(), clipped));
+				return;
+			}
+		} catch (InterruptedException e) {
+			// The request timed out whilst waiting for a permit.
+			return;
+		}
+		long sentNanos = System.nanoTime();
+		try {
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			openConnection.set(connection);
+			if (response.isDone()) {
+				// The request timed out before the connection could be disconnected by the timer.
+				return;
+			}
+			connection.setConnectTimeout(connectTimeout);
+			connection.setReadTimeout(readTimeout);
+			headers.forEach(connection::setRequestProperty);
+			int statusCode = connection.getResponseCode();
+			InputStream body = statusCode < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream()
+					: connection.getErrorStream();
+			byte[] bytes = readFully(body);
+			response.complete(new HttpResponse(statusCode, bytes,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentNanos)));
+		} catch (IOException e) {
+			response.completeExceptionally(e);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private static TimeoutException newTimeoutException(String message, boolean clipped) {
+		return clipped ? new DeadlineExceededException(message) : new TimeoutException(message);
+	}
+
+	private static byte[] readFully(InputStream inputStream) throws IOException {
+		if (inputStream == null) {
+			return new byte[0];
+		}
+		try (InputStream body = inputStream) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int read = body.read(buffer); read >= 0; read = body.read(buffer)) {
+				outputStream.write(buffer, 0, read);
+			}
+			return outputStream.toByteArray();
+		}
+	}
+
+	private static ExecutorService newBoundedThreadPool() {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), HttpClient::newThread);
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	private static Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, "http-" + THREAD_COUNT.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+
+}
@@ -0,0 +1,34 @@
+package io.github.pyvesb.alexaecopompe.http;
+
+/**
+ * Status code and fully read body of an HTTP response, along with the time the remote service took to send it.
+ */
+public class HttpResponse {
+
+	private final int statusCode;
+	private final byte[] body;
+	private final long elapsedMillis;
+
+	public HttpResponse(int statusCode, byte[] body, long elapsedMillis) {
+		this.statusCode = statusCode;
+		this.body = body;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * Returns the time between sending the request and reading the whole response, excluding the time the request
+	 * waited for a connection to the host.
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+}
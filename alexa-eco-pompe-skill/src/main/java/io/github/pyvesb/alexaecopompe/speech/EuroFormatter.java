@@ -0,0 +1,44 @@
+package io.github.pyvesb.alexaecopompe.speech;
+
+/**
+ * Formats prices to values such as "1€22" or "1€589", which are correctly spoken out loud by Alexa. The output is the
+ * same as the one of a DecimalFormat with the "0.00#" pattern and '€' as decimal separator, but prices are formatted
+ * from an integer number of thousandths of euros, without any intermediate objects and from any thread.
+ */
+public final class EuroFormatter {
+
+	/**
+	 * Returns the price in euros as a number of thousandths of euros, rounded half to even like DecimalFormat.
+	 */
+	public static long toMillieuros(float euros) {
+		// The product of a float and 1000 is exact as a double, so it is only rounded once.
+		return (long) Math.rint(euros * 1000d);
+	}
+
+	public static String format(float euros) {
+		StringBuilder out = new StringBuilder(8);
+		appendMillieuros(toMillieuros(euros), out);
+		return out.toString();
+	}
+
+	/**
+	 * Appends the price given in thousandths of euros to the builder.
+	 */
+	public static void appendMillieuros(long millieuros, StringBuilder out) {
+		if (millieuros < 0) {
+			out.append('-');
+			millieuros = -millieuros;
+		}
+		int fraction = (int) (millieuros % 1000);
+		out.append(millieuros / 1000).append('€').append((char) ('0' + fraction / 100))
+				.append((char) ('0' + fraction / 10 % 10));
+		if (fraction % 10 != 0) {
+			out.append((char) ('0' + fraction % 10));
+		}
+	}
+
+	private EuroFormatter() {
+		// Not called.
+	}
+
+}
@@ -13,6 +13,8 @@ public enum Messages {;
 	public static final String NO_STATION_RADIUS = "Je n'ai pas trouvé de pompe à moins de $RADIUS kilomètres. Réessayez avec une distance plus grande. Par exemple, dîtes simplement : \"le $TYPE à moins de $BIGGER_RADIUS kilomètres\".";
 	public static final String NO_STATION_RADIUS_MAX = "Je n'ai pas trouvé de pompe à moins de $RADIUS kilomètres. Veuillez préciser un nom de ville ou de département.";
 	public static final String NO_STATION_FOR_TYPE_TOWN = "Je n'ai pas trouvé de pompe vendant $TYPE dans $LOCATION. Essayez un autre carburant ou une ville différente.";
+	public static final String NEAREST_STATION_FOUND = "Je n'ai pas trouvé de pompe vendant $TYPE à moins de $RADIUS kilomètres. Cependant, $NAME vend $TYPE pour $PRICE à $DISTANCE kilomètres. $SUBJECT est située $ADDRESS à $TOWN, et a actualisé ses tarifs $DATE.";
+	public static final String NEAREST_STATION_FOUND_E10 = "Je n'ai pas trouvé de pompe vendant du sans plomb 95 à moins de $RADIUS kilomètres. Cependant, $NAME vend de l'E10 pour $PRICE à $DISTANCE kilomètres. $SUBJECT est située $ADDRESS à $TOWN, et a actualisé ses tarifs $DATE.";
 	public static final String NO_STATION_FOR_TYPE_RADIUS = "Je n'ai pas trouvé de pompe vendant $TYPE à moins de $RADIUS kilomètres. Essayez un autre carburant ou une distance plus grande.";
 	public static final String UNSUPPORTED_GAS_TYPE = "Je n'ai pas compris le carburant demandé. Réessayez en spécifiant gazole, sans plomb 95, sans plomb 98, E10, E85 ou GPL. Par exemple, dîtes simplement : \"le gazole à Bordeaux\".";
 	public static final String UNSUPPORTED_LOCATION = "Je n'ai pas trouvé d'informations pour cette localisation géographique. Réessayez en énonçant clairement le nom de ville ou de département, ou bien spécifiez un lieu différent.";
@@ -23,5 +25,6 @@ public enum Messages {;
 	public static final String ADDRESS_NOT_SPECIFIED = "J'ai besoin de votre adresse pour trouver les pompes à proximité. Veuillez la renseigner dans l'application Alexa, ou bien précisez un nom de ville ou de département.";
 	public static final String ADDRESS_ERROR = "Alexa a retourné une erreur. Réessayez plus tard, ou bien précisez un nom de ville ou de département.";
 	public static final String POSITION_UNKNOWN = "Je n'ai pas réussi à déterminer votre position géographique avec l'adresse renseignée dans votre Amazon Echo. Réessayez plus tard, ou bien précisez un nom de ville ou de département.";
+	public static final String DATA_UNAVAILABLE = "Je n'ai pas pu récupérer les prix des carburants. Réessayez plus tard.";
 
 }
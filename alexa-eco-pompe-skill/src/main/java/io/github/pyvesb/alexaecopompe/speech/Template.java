@@ -0,0 +1,81 @@
+package io.github.pyvesb.alexaecopompe.speech;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message with placeholders, compiled once into alternating literal and slot segments so that rendering it only
+ * appends them, instead of scanning the message for each placeholder. Placeholders are located with the same rules as
+ * {@link TextReplacer}, so a template renders the same text as replacing the placeholders of the message with
+ * {@link org.apache.commons.lang3.StringUtils#replaceEach(String, String[], String[])}. Instances are immutable and
+ * thread-safe, each thread rendering into its own reusable buffer.
+ */
+public final class Template {
+
+	private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+	private final int slotCount;
+	// Literal segments surround the slots, hence there is one more literal than slots.
+	private final String[] literals;
+	// Index of the value rendered in each slot.
+	private final int[] slots;
+
+	private Template(int slotCount, String[] literals, int[] slots) {
+		this.slotCount = slotCount;
+		this.literals = literals;
+		this.slots = slots;
+	}
+
+	/**
+	 * Compiles the message, the values rendered in the slots later being given in the same order as the placeholders.
+	 */
+	public static Template compile(String message, String... placeholders) {
+		TextReplacer placeholderMatcher = new TextReplacer(placeholders, placeholders);
+		List<String> literals = new ArrayList<>();
+		List<Integer> slots = new ArrayList<>();
+		int literalStart = 0;
+		int i = 0;
+		while (i < message.length()) {
+			int placeholder = placeholderMatcher.matchAt(message, i);
+			if (placeholder < 0) {
+				++i;
+			} else {
+				literals.add(message.substring(literalStart, i));
+				slots.add(placeholder);
+				i += placeholders[placeholder].length();
+				literalStart = i;
+			}
+		}
+		literals.add(message.substring(literalStart));
+		return new Template(placeholders.length, literals.toArray(new String[0]),
+				slots.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	/**
+	 * Renders the message with the given values in place of the placeholders.
+	 *
+	 * @throws IllegalArgumentException if the number of values differs from the number of placeholders
+	 */
+	public String render(String... values) {
+		StringBuilder buffer = BUFFER.get();
+		buffer.setLength(0);
+		appendTo(buffer, values);
+		return buffer.toString();
+	}
+
+	/**
+	 * Appends the message with the given values in place of the placeholders to the given builder.
+	 *
+	 * @throws IllegalArgumentException if the number of values differs from the number of placeholders
+	 */
+	public void appendTo(StringBuilder out, String... values) {
+		if (values.length != slotCount) {
+			throw new IllegalArgumentException("Expected " + slotCount + " values, got " + values.length);
+		}
+		out.append(literals[0]);
+		for (int i = 0; i < slots.length; ++i) {
+			out.append(values[slots[i]]).append(literals[i + 1]);
+		}
+	}
+
+}
@@ -0,0 +1,231 @@
+package io.github.pyvesb.alexaecopompe.utils;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe cache of optional values holding at most a given number of entries. Each value expires after a duration
+ * computed when it is loaded, typically different for found values (present optionals) and not-found values (empty
+ * optionals), values with a non-positive duration not being cached at all. When the cache is full, a few entries are
+ * sampled at random and the least frequently used one is evicted, ties being broken by least recent use. Concurrent
+ * lookups of the same missing key are coalesced, only one of the callers runs the loader whilst the others wait for its
+ * result. Loaders run outside of the lock, so slow ones never block lookups of other keys.
+ */
+public class BoundedCache<K, V> {
+
+	private static final int EVICTION_SAMPLE_SIZE = 5;
+
+	private final int maximumSize;
+	private final ToLongFunction<? super Optional<V>> ttlMillis;
+	private final Clock clock;
+	private final Map<K, Entry<K, V>> entries = new HashMap<>();
+	private final Map<K, CompletableFuture<Optional<V>>> loads = new HashMap<>();
+	// Entries are also kept in a dense array, so that they can be sampled in constant time.
+	private final Entry<K, V>[] slots;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long coalescedLoadCount;
+
+	public BoundedCache(int maximumSize, long foundTtlMillis, long notFoundTtlMillis) {
+		this(maximumSize, value -> value.isPresent() ? foundTtlMillis : notFoundTtlMillis);
+	}
+
+	public BoundedCache(int maximumSize, ToLongFunction<? super Optional<V>> ttlMillis) {
+		this(maximumSize, ttlMillis, Clock.systemUTC());
+	}
+
+	BoundedCache(int maximumSize, long foundTtlMillis, long notFoundTtlMillis, Clock clock) {
+		this(maximumSize, value -> value.isPresent() ? foundTtlMillis : notFoundTtlMillis, clock);
+	}
+
+	@SuppressWarnings("unchecked")
+	BoundedCache(int maximumSize, ToLongFunction<? super Optional<V>> ttlMillis, Clock clock) {
+		this.maximumSize = maximumSize;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+		this.slots = new Entry[maximumSize];
+	}
+
+	/**
+	 * Returns the cached value for the key, or loads it if missing or expired. The loader can return null to signal a
+	 * failure, in which case nothing is cached so that the key can be retried later, and an empty value is returned.
+	 */
+	public Optional<V> get(K key, Function<? super K, Optional<V>> loader) {
+		CompletableFuture<Optional<V>> newLoad = new CompletableFuture<>();
+		CompletableFuture<Optional<V>> load = lookUp(key, newLoad);
+		return load == newLoad ? loadAndCache(key, loader, load) : load.join();
+	}
+
+	/**
+	 * Asynchronous variant of {@link #get(Object, Function)}, for loaders which don't block. The loader can complete
+	 * its future with null or exceptionally to signal a failure, in which case nothing is cached.
+	 */
+	public CompletableFuture<Optional<V>> getAsync(K key, Function<? super K, CompletableFuture<Optional<V>>> loader) {
+		CompletableFuture<Optional<V>> newLoad = new CompletableFuture<>();
+		CompletableFuture<Optional<V>> load = lookUp(key, newLoad);
+		if (load != newLoad) {
+			return load;
+		}
+		CompletableFuture<Optional<V>> loaded;
+		try {
+			loaded = loader.apply(key);
+		} catch (RuntimeException e) {
+			loaded = new CompletableFuture<>();
+			loaded.completeExceptionally(e);
+		}
+		return loaded.whenComplete((value, failure) -> complete(key, failure == null ? value : null, load))
+				.thenApply(value -> value == null ? Optional.<V> empty() : value);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the rate of lookups which found a cached value, between 0 and 1.
+	 */
+	public synchronized double getHitRate() {
+		long lookupCount = hitCount + missCount;
+		return lookupCount == 0 ? 0d : (double) hitCount / lookupCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public synchronized long getCoalescedLoadCount() {
+		return coalescedLoadCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "BoundedCache [size=" + entries.size() + ", hits=" + hitCount + ", misses=" + missCount + ", evictions="
+				+ evictionCount + ", coalescedLoads=" + coalescedLoadCount + "]";
+	}
+
+	/**
+	 * Returns a completed future if the key is cached, the pending load if the key is already being loaded, or else
+	 * registers and returns the given new load, which the caller is then responsible for completing.
+	 */
+	private synchronized CompletableFuture<Optional<V>> lookUp(K key, CompletableFuture<Optional<V>> newLoad) {
+		long nowMillis = clock.millis();
+		Entry<K, V> entry = entries.get(key);
+		if (entry != null && entry.expiryMillis > nowMillis) {
+			++hitCount;
+			++entry.frequency;
+			entry.lastAccessMillis = nowMillis;
+			return CompletableFuture.completedFuture(entry.value);
+		} else if (entry != null) {
+			remove(entry);
+		}
+		++missCount;
+		CompletableFuture<Optional<V>> load = loads.putIfAbsent(key, newLoad);
+		if (load != null) {
+			++coalescedLoadCount;
+			return load;
+		}
+		return newLoad;
+	}
+
+	private Optional<V> loadAndCache(K key, Function<? super K, Optional<V>> loader,
+			CompletableFuture<Optional<V>> load) {
+		Optional<V> value = null;
+		try {
+			value = loader.apply(key);
+			return value == null ? Optional.empty() : value;
+		} finally {
+			complete(key, value, load);
+		}
+	}
+
+	private void complete(K key, Optional<V> value, CompletableFuture<Optional<V>> load) {
+		synchronized (this) {
+			loads.remove(key);
+			if (value != null) {
+				put(key, value);
+			}
+		}
+		// Waiting callers get an empty value if the loader failed, the caller that ran it gets the failure.
+		load.complete(value == null ? Optional.empty() : value);
+	}
+
+	private void put(K key, Optional<V> value) {
+		Entry<K, V> existing = entries.get(key);
+		long valueTtlMillis = ttlMillis.applyAsLong(value);
+		if (existing != null) {
+			remove(existing);
+		}
+		if (maximumSize == 0 || valueTtlMillis <= 0) {
+			return;
+		} else if (entries.size() == maximumSize) {
+			evictOne();
+		}
+		long nowMillis = clock.millis();
+		Entry<K, V> entry = new Entry<>(key, value, nowMillis + valueTtlMillis, nowMillis, entries.size());
+		entries.put(key, entry);
+		slots[entry.slot] = entry;
+	}
+
+	private void evictOne() {
+		long nowMillis = clock.millis();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Entry<K, V> victim = null;
+		for (int i = 0; i < EVICTION_SAMPLE_SIZE; ++i) {
+			Entry<K, V> candidate = slots[random.nextInt(entries.size())];
+			if (candidate.expiryMillis <= nowMillis) {
+				// Expired entries are free to reclaim and don't count as evictions.
+				remove(candidate);
+				return;
+			}
+			if (victim == null || candidate.frequency < victim.frequency || candidate.frequency == victim.frequency
+					&& candidate.lastAccessMillis < victim.lastAccessMillis) {
+				victim = candidate;
+			}
+		}
+		remove(victim);
+		++evictionCount;
+	}
+
+	private void remove(Entry<K, V> entry) {
+		entries.remove(entry.key);
+		// Moves the last entry into the freed slot to keep the array dense.
+		Entry<K, V> last = slots[entries.size()];
+		slots[entry.slot] = last;
+		last.slot = entry.slot;
+		slots[entries.size()] = null;
+	}
+
+	private static final class Entry<K, V> {
+
+		private final K key;
+		private final Optional<V> value;
+		private final long expiryMillis;
+		private long lastAccessMillis;
+		private int frequency;
+		private int slot;
+
+		Entry(K key, Optional<V> value, long expiryMillis, long lastAccessMillis, int slot) {
+			this.key = key;
+			this.value = value;
+			this.expiryMillis = expiryMillis;
+			this.lastAccessMillis = lastAccessMillis;
+			this.slot = slot;
+		}
+	}
+
+}
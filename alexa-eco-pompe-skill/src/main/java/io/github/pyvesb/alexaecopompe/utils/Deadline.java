@@ -0,0 +1,64 @@
+package io.github.pyvesb.alexaecopompe.utils;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Point in time by which a request must be answered. It is created once per request and passed down to each of its
+ * stages, which then only get the remaining budget rather than a full timeout of their own.
+ */
+public final class Deadline {
+
+	private static final Deadline NONE = new Deadline(false, 0L);
+
+	private final boolean bounded;
+	private final long expiryNanos;
+
+	private Deadline(boolean bounded, long expiryNanos) {
+		this.bounded = bounded;
+		this.expiryNanos = expiryNanos;
+	}
+
+	public static Deadline after(long millis) {
+		return new Deadline(true, System.nanoTime() + MILLISECONDS.toNanos(millis));
+	}
+
+	/**
+	 * Returns a deadline which never expires, for callers which rely on the timeouts of each stage.
+	 */
+	public static Deadline none() {
+		return NONE;
+	}
+
+	/**
+	 * Returns a deadline expiring the given duration before this one, so that work bounded by it can still be reported
+	 * before this deadline expires.
+	 */
+	public Deadline minusMillis(long millis) {
+		return bounded ? new Deadline(true, expiryNanos - MILLISECONDS.toNanos(millis)) : this;
+	}
+
+	public long remainingNanos() {
+		return bounded ? Math.max(0L, expiryNanos - System.nanoTime()) : Long.MAX_VALUE;
+	}
+
+	public long remainingMillis() {
+		return NANOSECONDS.toMillis(remainingNanos());
+	}
+
+	public boolean isExpired() {
+		return remainingNanos() == 0L;
+	}
+
+	/**
+	 * Waits for the future to complete, at the latest until this deadline expires.
+	 */
+	public <T> T await(Future<T> future) throws InterruptedException, ExecutionException, TimeoutException {
+		return future.get(remainingNanos(), NANOSECONDS);
+	}
+
+}
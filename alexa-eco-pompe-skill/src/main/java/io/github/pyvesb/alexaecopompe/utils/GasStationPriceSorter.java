@@ -2,13 +2,11 @@ package io.github.pyvesb.alexaecopompe.utils;
 
 import java.time.Clock;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.List;
 
 import io.github.pyvesb.alexaecopompe.domain.GasStation;
 import io.github.pyvesb.alexaecopompe.domain.GasType;
-import io.github.pyvesb.alexaecopompe.domain.Price;
 
 public class GasStationPriceSorter {
 
@@ -17,6 +15,7 @@ public class GasStationPriceSorter {
 
 	private final Clock clock;
 	private final long priceStalenessThresholdDays;
+	private volatile DailyRanking dailyRanking = new DailyRanking(Long.MIN_VALUE);
 
 	public GasStationPriceSorter(long priceStalenessThresholdDays) {
 		this(Clock.systemUTC(), priceStalenessThresholdDays);
@@ -28,23 +27,48 @@ public class GasStationPriceSorter {
 	}
 
 	public void sortGasStationsByIncreasingPricesForGasType(List<GasStation> gasStations, GasType gasType) {
-		Collections.sort(gasStations, (gs1, gs2) -> compareGasStationsForGasType(gs1, gs2, gasType));
+		PriceRanking priceRanking = getPriceRanking();
+		Collections.sort(gasStations, (gs1, gs2) -> compareGasStationsForGasType(gs1, gs2, gasType, priceRanking));
 	}
 
-	private int compareGasStationsForGasType(GasStation gs1, GasStation gs2, GasType gasType) {
-		float price1 = getPriceForGasType(gs1, gasType);
-		float price2 = getPriceForGasType(gs2, gasType);
+	/**
+	 * Returns the ranking used to sort gas stations as of today, prices which are outdated being ranked after all
+	 * up-to-date ones. The same instance is returned all day long, so that rankings built from it can be reused.
+	 */
+	public PriceRanking getPriceRanking() {
+		long staleBeforeEpochDay = LocalDate.now(clock).minusDays(priceStalenessThresholdDays).toEpochDay();
+		DailyRanking current = dailyRanking;
+		if (current.staleBeforeEpochDay != staleBeforeEpochDay) {
+			current = new DailyRanking(staleBeforeEpochDay);
+			dailyRanking = current;
+		}
+		return current.priceRanking;
+	}
+
+	private int compareGasStationsForGasType(GasStation gs1, GasStation gs2, GasType gasType,
+			PriceRanking priceRanking) {
+		float price1 = getPriceForGasType(gs1, gasType, priceRanking);
+		float price2 = getPriceForGasType(gs2, gasType, priceRanking);
 		return Float.compare(price1, price2);
 	}
 
-	private float getPriceForGasType(GasStation gs, GasType gasType) {
-		return gs.getPriceForGasType(gasType)
-				.map(p -> isPriceStale(p) ? p.getValue() + STALE_PRICE_PENALTY : p.getValue())
-				.orElse(Float.MAX_VALUE);
+	private float getPriceForGasType(GasStation gs, GasType gasType, PriceRanking priceRanking) {
+		return gs.hasPrice(gasType) ? priceRanking.rank(gs.getPriceValue(gasType), gs.getUpdatedEpochDay(gasType))
+				: Float.MAX_VALUE;
 	}
 
-	private boolean isPriceStale(Price price) {
-		return LocalDate.now(clock).minus(priceStalenessThresholdDays, ChronoUnit.DAYS).isAfter(price.getUpdated());
+	private static final class DailyRanking {
+
+		private final long staleBeforeEpochDay;
+		private final PriceRanking priceRanking;
+
+		private DailyRanking(long staleBeforeEpochDay) {
+			this.staleBeforeEpochDay = staleBeforeEpochDay;
+			this.priceRanking = (price, updatedEpochDay) -> updatedEpochDay < staleBeforeEpochDay
+					? price + STALE_PRICE_PENALTY
+					: price;
+		}
+
 	}
 
 }
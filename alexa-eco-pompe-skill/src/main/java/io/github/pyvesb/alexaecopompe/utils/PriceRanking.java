@@ -0,0 +1,11 @@
+package io.github.pyvesb.alexaecopompe.utils;
+
+/**
+ * Maps a price and the day it was last updated to the key by which gas stations are ranked, lower keys first.
+ */
+@FunctionalInterface
+public interface PriceRanking {
+
+	float rank(float price, long updatedEpochDay);
+
+}
@@ -1,9 +1,13 @@
 package io.github.pyvesb.alexaecopompe.address;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
 import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
@@ -11,6 +15,10 @@ import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,6 +27,8 @@ import org.junit.jupiter.api.Test;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.WireMock;
 
+import io.github.pyvesb.alexaecopompe.utils.Deadline;
+
 class DeviceAddressProviderTest {
 
 	private static final String DEVICE_ID = "abc123";
@@ -56,6 +66,74 @@ class DeviceAddressProviderTest {
 		assertEquals(expectedAddress, actualAddress);
 	}
 
+	@Test
+	void shouldCacheDeviceAddressPerDeviceEndpointAndToken() throws Exception {
+		wireMockServer.stubFor(get(urlEqualTo(API_PATH))
+				.willReturn(aResponse()
+						.withStatus(HTTP_OK)
+						.withHeader("Content-Type", "application/json")
+						.withBodyFile("address_response.json")));
+
+		underTest.fetchAddress("http://localhost:8089", DEVICE_ID, API_TOKEN);
+		Address actualAddress = underTest.fetchAddress("http://localhost:8089", DEVICE_ID, API_TOKEN);
+		underTest.fetchAddress("http://localhost:8089", DEVICE_ID, "otherToken");
+		underTest.fetchAddress("http://127.0.0.1:8089", DEVICE_ID, API_TOKEN);
+
+		assertEquals(new Address("410 Terry Ave North", "Seattle", "98109"), actualAddress);
+		verify(exactly(3), getRequestedFor(urlEqualTo(API_PATH)));
+		assertEquals(1, underTest.getCacheHitCount());
+	}
+
+	@Test
+	void shouldNotServeCachedAddressToRequestsWithRevokedPermissions() throws Exception {
+		wireMockServer.stubFor(get(urlEqualTo(API_PATH))
+				.withHeader("Authorization", equalTo("Bearer " + API_TOKEN))
+				.willReturn(aResponse()
+						.withStatus(HTTP_OK)
+						.withHeader("Content-Type", "application/json")
+						.withBodyFile("address_response.json")));
+		wireMockServer.stubFor(get(urlEqualTo(API_PATH))
+				.withHeader("Authorization", equalTo("Bearer revokedToken"))
+				.willReturn(aResponse()
+						.withStatus(HTTP_FORBIDDEN)));
+
+		underTest.fetchAddress("http://localhost:8089", DEVICE_ID, API_TOKEN);
+		assertThrows(AddressForbiddenException.class,
+				() -> underTest.fetchAddress("http://localhost:8089", DEVICE_ID, "revokedToken"));
+	}
+
+	@Test
+	void shouldCacheNotSpecifiedButNotForbiddenOutcomes() {
+		wireMockServer.stubFor(get(urlEqualTo(API_PATH))
+				.willReturn(aResponse()
+						.withStatus(HTTP_FORBIDDEN)));
+		wireMockServer.stubFor(get(urlEqualTo("/v1/devices/def456/settings/address"))
+				.willReturn(aResponse()
+						.withStatus(HTTP_NO_CONTENT)));
+
+		for (int i = 0; i < 2; ++i) {
+			assertThrows(AddressForbiddenException.class,
+					() -> underTest.fetchAddress("http://localhost:8089", DEVICE_ID, API_TOKEN));
+			assertThrows(AddressNotSpecifiedException.class,
+					() -> underTest.fetchAddress("http://localhost:8089", "def456", API_TOKEN));
+		}
+		verify(exactly(2), getRequestedFor(urlEqualTo(API_PATH)));
+		verify(exactly(1), getRequestedFor(urlEqualTo("/v1/devices/def456/settings/address")));
+	}
+
+	@Test
+	void shouldNotCacheInaccessibleOutcomes() {
+		wireMockServer.stubFor(get(urlEqualTo(API_PATH))
+				.willReturn(aResponse()
+						.withStatus(HTTP_INTERNAL_ERROR)));
+
+		for (int i = 0; i < 2; ++i) {
+			assertThrows(AddressInaccessibleException.class,
+					() -> underTest.fetchAddress("http://localhost:8089", DEVICE_ID, API_TOKEN));
+		}
+		verify(exactly(2), getRequestedFor(urlEqualTo(API_PATH)));
+	}
+
 	@Test
 	void shouldThrowForbiddenExceptionIf403Returned() {
 		wireMockServer.stubFor(get(urlEqualTo(API_PATH))
@@ -121,5 +199,15 @@ class DeviceAddressProviderTest {
 		assertThrows(AddressInaccessibleException.class,
 				() -> underTest.fetchAddress("http://localhost:8089", DEVICE_ID, API_TOKEN));
 	}
+
+	@Test
+	void shouldFailWithInaccessibleExceptionWithoutRequestIfDeadlineExpired() {
+		CompletableFuture<Address> address = underTest.fetchAddressAsync("http://localhost:8089", DEVICE_ID, API_TOKEN,
+				Deadline.after(0L));
+
+		ExecutionException exception = assertThrows(ExecutionException.class, address::get);
+		assertTrue(exception.getCause() instanceof AddressInaccessibleException);
+		verify(exactly(0), getRequestedFor(anyUrl()));
+	}
 	
 }
@@ -14,24 +14,39 @@ import static io.github.pyvesb.alexaecopompe.domain.GasType.SP95;
 import static io.github.pyvesb.alexaecopompe.domain.GasType.SP98;
 import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
 import static java.net.HttpURLConnection.HTTP_OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.Mockito.verify;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.InflaterInputStream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -41,8 +56,10 @@ import com.github.tomakehurst.wiremock.stubbing.Scenario;
 
 import io.github.pyvesb.alexaecopompe.domain.GasStation;
 import io.github.pyvesb.alexaecopompe.domain.Price;
-import io.github.pyvesb.alexaecopompe.geography.GeographicStationManager;
+import io.github.pyvesb.alexaecopompe.geography.CheapestGasStations;
 import io.github.pyvesb.alexaecopompe.geography.Position;
+import io.github.pyvesb.alexaecopompe.utils.Deadline;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
 
 @ExtendWith(MockitoExtension.class)
 class DataProviderTest {
@@ -53,20 +70,21 @@ class DataProviderTest {
 
 	private final WireMockServer wireMockServer = new WireMockServer(options().port(8089));
 
-	@Mock
-	private GeographicStationManager geographicStationManager;
-
 	@Mock
 	private Clock clock;
 
+	private Path cacheDirectory;
+
 	private DataProvider underTest;
 
 	@BeforeEach
-	void setUp() {
+	void setUp(@TempDir Path cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
 		wireMockServer.start();
 		WireMock.configureFor("localhost", wireMockServer.port());
 		when(clock.millis()).thenReturn(INITIAL_TIME);
-		underTest = new DataProvider("http://localhost:8089" + DATA_PATH, 1000L, clock, geographicStationManager);
+		underTest = new DataProvider("http://localhost:8089" + DATA_PATH, 1000L, clock, cacheDirectory,
+				Runnable::run);
 	}
 
 	@AfterEach
@@ -130,6 +148,23 @@ class DataProviderTest {
 			assertEquals(emptyList(), gasStationsInLaReunion);
 		}
 
+		@Test
+		void shouldReturnCheapestGasStationsForPostCodesAndDepartment() {
+			GasStation gs2 = new GasStation("2", 4356100f, 407600f, "75014", "paris", "Montparnasse",
+					new Price(SP95, DATE, 1.266f), new Price(SP98, DATE, 1.442f));
+			PriceRanking priceRanking = (price, updatedEpochDay) -> price;
+
+			CheapestGasStations inParis = underTest.getCheapestGasStationsForPostCodes(
+					new String[] { "75001", "75014" }, priceRanking, 1, SP95, E10);
+			assertEquals(2, inParis.getGasStationCount());
+			assertEquals(asList(gs2), inParis.getCheapestGasStations(SP95));
+			assertEquals(emptyList(), inParis.getCheapestGasStations(E10));
+
+			CheapestGasStations inSavoie = underTest.getCheapestGasStationsForDepartment("73", priceRanking, 1, SP98);
+			assertEquals(1, inSavoie.getGasStationCount());
+			assertEquals(emptyList(), inSavoie.getCheapestGasStations(SP98));
+		}
+
 		@Test
 		void shouldReturnGasStationsForPositionAndRadius() {
 			GasStation gs1 = new GasStation("1", 4356000f, 407500f, "75001", "Parîs", "Place Vendôme",
@@ -138,13 +173,59 @@ class DataProviderTest {
 					new Price(SP95, DATE, 1.266f), new Price(SP98, DATE, 1.442f));
 			GasStation gs3 = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
 					new Price(E10, DATE, 1.399f));
-			when(geographicStationManager.getGasStationsWithinRadius(any(), anyInt())).thenReturn(asList(gs1));
 
 			Position position = new Position(43.560f, 4.075f);
-			List<GasStation> gasStationsNearParis = underTest.getGasStationsWithinRadius(position, 10);
-			assertEquals(asList(gs1), gasStationsNearParis);
-			verify(geographicStationManager).registerGasStations(asList(gs1, gs2, gs3));
-			verify(geographicStationManager).getGasStationsWithinRadius(position, 10);
+			List<GasStation> gasStationsNearParis = underTest.getGasStationsWithinRadius(position, 1);
+			assertEquals(asList(gs1, gs2, gs3), gasStationsNearParis);
+		}
+
+		@Test
+		void shouldServeNearbyRadiusQueriesFromCacheUntilDataIsRefreshed() {
+			GasStation gs2 = new GasStation("2", 4356100f, 407600f, "75014", "paris", "Montparnasse",
+					new Price(SP95, DATE, 1.266f), new Price(SP98, DATE, 1.442f));
+			PriceRanking priceRanking = (price, updatedEpochDay) -> price;
+
+			CheapestGasStations first = underTest.getCheapestGasStationsWithinRadius(new Position(43.561f, 4.072f), 1,
+					priceRanking, 1, SP95);
+			CheapestGasStations second = underTest.getCheapestGasStationsWithinRadius(new Position(43.562f, 4.073f), 1,
+					priceRanking, 1, SP95);
+			assertEquals(3, first.getGasStationCount());
+			assertEquals(asList(gs2), first.getCheapestGasStations(SP95));
+			assertEquals(3, second.getGasStationCount());
+			assertEquals(asList(gs2), second.getCheapestGasStations(SP95));
+			assertEquals(0.5d, underTest.getRadiusCacheHitRate());
+
+			when(clock.millis()).thenReturn(INITIAL_TIME + 1000L);
+			underTest.getCheapestGasStationsWithinRadius(new Position(43.561f, 4.072f), 1, priceRanking, 1, SP95);
+			verify(exactly(2), getRequestedFor(anyUrl()));
+			// Refreshed data comes with its own cache, candidates of the previous data are never served.
+			assertEquals(0d, underTest.getRadiusCacheHitRate());
+		}
+
+		@Test
+		void shouldReturnNearestGasStationsSellingGasType() {
+			GasStation gs3 = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
+					new Price(E10, DATE, 1.399f));
+
+			List<GasStation> nearestGasStations = underTest.getNearestGasStations(new Position(45f, 2f), E10, 2);
+			assertEquals(asList(gs3), nearestGasStations);
+		}
+
+		@Test
+		void shouldReturnPositionOfPostCodesWithGasStations() {
+			assertEquals(Optional.of(new Position(43.562f, 4.077f)), underTest.getPostCodePosition("73100"));
+			assertEquals(Optional.empty(), underTest.getPostCodePosition("73"));
+			assertEquals(Optional.empty(), underTest.getPostCodePosition("58400"));
+		}
+
+		@Test
+		void shouldRetrieveStaleDataOnSeparateThreadWhenAsked() throws Exception {
+			underTest.refreshIfStaleAsync().get(5, TimeUnit.SECONDS);
+			verify(exactly(1), getRequestedFor(anyUrl()));
+
+			assertTrue(underTest.refreshIfStaleAsync().isDone());
+			assertEquals(Optional.of(new Position(43.562f, 4.077f)), underTest.getPostCodePosition("73100"));
+			verify(exactly(1), getRequestedFor(anyUrl()));
 		}
 
 		@Test
@@ -161,6 +242,193 @@ class DataProviderTest {
 			verify(exactly(2), getRequestedFor(anyUrl()));
 		}
 
+		@Test
+		void shouldCacheInflatedDataAndMapItOnColdStart() {
+			GasStation gs = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
+					new Price(E10, DATE, 1.399f));
+
+			underTest.getGasStationsForPostCodes("75001");
+			when(clock.millis()).thenReturn(INITIAL_TIME + 500L);
+			DataProvider coldStarted = new DataProvider("http://localhost:8089" + DATA_PATH, 1000L, clock,
+					cacheDirectory, Runnable::run);
+
+			assertEquals(asList(gs), coldStarted.getGasStationsForPostCodes("73100"));
+			verify(exactly(1), getRequestedFor(anyUrl()));
+		}
+
+	}
+
+	@Nested
+	class BackgroundRefresh {
+
+		private final Queue<Runnable> refreshTasks = new ArrayDeque<>();
+
+		@BeforeEach
+		void setUp() {
+			wireMockServer.stubFor(get(urlEqualTo(DATA_PATH))
+					.willReturn(aResponse()
+							.withStatus(HTTP_OK)
+							.withHeader("Content-Type", "application/octet-stream")
+							.withBodyFile("gas-station.data")));
+			underTest = new DataProvider("http://localhost:8089" + DATA_PATH, 1000L, clock, cacheDirectory,
+					refreshTasks::add);
+		}
+
+		@Test
+		void shouldRetrieveInitialDataOnRequestThread() {
+			GasStation gs = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
+					new Price(E10, DATE, 1.399f));
+
+			assertEquals(asList(gs), underTest.getGasStationsForPostCodes("73100"));
+			assertEquals(0, refreshTasks.size());
+			verify(exactly(1), getRequestedFor(anyUrl()));
+		}
+
+		@Test
+		void shouldServeStaleDataWhilstSingleRefreshRunsInBackground() {
+			GasStation gs = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
+					new Price(E10, DATE, 1.399f));
+			underTest.getGasStationsForPostCodes("73100");
+
+			when(clock.millis()).thenReturn(INITIAL_TIME + 1000L);
+			assertEquals(asList(gs), underTest.getGasStationsForPostCodes("73100"));
+			assertEquals(asList(gs), underTest.getGasStationsForPostCodes("73100"));
+			assertEquals(1, refreshTasks.size());
+			verify(exactly(1), getRequestedFor(anyUrl()));
+
+			refreshTasks.remove().run();
+			verify(exactly(2), getRequestedFor(anyUrl()));
+
+			underTest.getGasStationsForPostCodes("73100");
+			assertEquals(0, refreshTasks.size());
+		}
+	}
+
+	@Nested
+	class SlowResponses {
+
+		@BeforeEach
+		void setUp() {
+			wireMockServer.stubFor(get(urlEqualTo(DATA_PATH))
+					.willReturn(aResponse()
+							.withStatus(HTTP_OK)
+							.withHeader("Content-Type", "application/octet-stream")
+							.withBodyFile("gas-station.data")
+							.withFixedDelay(1000)));
+		}
+
+		@Test
+		void shouldNotServeDataIfInitialRetrievalMissesDeadline() throws Exception {
+			CompletableFuture<Void> load = underTest.refreshIfStaleAsync();
+
+			assertFalse(underTest.awaitData(Deadline.after(100L)));
+
+			load.get(5, TimeUnit.SECONDS);
+			assertTrue(underTest.awaitData(Deadline.after(0L)));
+		}
+
+		@Test
+		void shouldShareInitialRetrievalBetweenConcurrentRequests() throws Exception {
+			GasStation gs = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
+					new Price(E10, DATE, 1.399f));
+			ExecutorService requestExecutor = Executors.newFixedThreadPool(3);
+			try {
+				CompletableFuture<Void> load = underTest.refreshIfStaleAsync();
+				List<CompletableFuture<List<GasStation>>> requests = new ArrayList<>();
+				for (int i = 0; i < 3; ++i) {
+					requests.add(CompletableFuture.supplyAsync(() -> underTest.getGasStationsForPostCodes("73100"),
+							requestExecutor));
+				}
+
+				for (CompletableFuture<List<GasStation>> request : requests) {
+					assertEquals(asList(gs), request.get(5, TimeUnit.SECONDS));
+				}
+				assertTrue(load.isDone());
+				verify(exactly(1), getRequestedFor(anyUrl()));
+			} finally {
+				requestExecutor.shutdown();
+			}
+		}
+
+		@Test
+		void shouldServeStaleDataIfSingleRefreshMissesDeadline() throws Exception {
+			GasStation gs = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
+					new Price(E10, DATE, 1.399f));
+			underTest.getGasStationsForPostCodes("73100");
+
+			when(clock.millis()).thenReturn(INITIAL_TIME + 1000L);
+			CompletableFuture<Void> load = underTest.refreshIfStaleAsync();
+			assertSame(load, underTest.refreshIfStaleAsync());
+
+			assertTrue(underTest.awaitData(Deadline.after(100L)));
+			assertFalse(load.isDone());
+			assertEquals(asList(gs), underTest.getGasStationsForPostCodes("73100"));
+
+			load.get(5, TimeUnit.SECONDS);
+			verify(exactly(2), getRequestedFor(anyUrl()));
+		}
+
+	}
+
+	@Nested
+	class CachedData {
+
+		@BeforeEach
+		void setUp() throws Exception {
+			try (InputStream inputStream = new InflaterInputStream(
+					getClass().getResourceAsStream("/__files/gas-station.data"))) {
+				Files.copy(inputStream, cacheDirectory.resolve("gas-station.data"));
+			}
+		}
+
+		@Test
+		void shouldMapFreshCachedDataWithoutRetrievingIt() throws Exception {
+			Files.setLastModifiedTime(cacheDirectory.resolve("gas-station.data"), FileTime.fromMillis(INITIAL_TIME - 999L));
+			GasStation gs = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
+					new Price(E10, DATE, 1.399f));
+
+			assertEquals(asList(gs), underTest.getGasStationsForPostCodes("73100"));
+			verify(exactly(0), getRequestedFor(anyUrl()));
+
+			when(clock.millis()).thenReturn(INITIAL_TIME + 1L);
+			underTest.getGasStationsForPostCodes("73100");
+			verify(exactly(1), getRequestedFor(anyUrl()));
+		}
+
+		@Test
+		void shouldRetrieveDataIfCachedDataIsStale() throws Exception {
+			Files.setLastModifiedTime(cacheDirectory.resolve("gas-station.data"), FileTime.fromMillis(INITIAL_TIME - 1000L));
+
+			underTest.getGasStationsForPostCodes("73100");
+			verify(exactly(1), getRequestedFor(anyUrl()));
+		}
+
+		@Test
+		void shouldRetrieveDataIfCachedDataIsCorrupted() throws Exception {
+			Files.write(cacheDirectory.resolve("gas-station.data"), "corrupted".getBytes(UTF_8));
+			Files.setLastModifiedTime(cacheDirectory.resolve("gas-station.data"), FileTime.fromMillis(INITIAL_TIME - 999L));
+			wireMockServer.stubFor(get(urlEqualTo(DATA_PATH))
+					.willReturn(aResponse()
+							.withStatus(HTTP_OK)
+							.withHeader("Content-Type", "application/octet-stream")
+							.withBodyFile("gas-station.data")));
+			GasStation gs = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
+					new Price(E10, DATE, 1.399f));
+
+			assertEquals(asList(gs), underTest.getGasStationsForPostCodes("73100"));
+			verify(exactly(1), getRequestedFor(anyUrl()));
+		}
+
+		@Test
+		void shouldMapLocalFilesDirectly() {
+			DataProvider localUnderTest = new DataProvider(cacheDirectory.resolve("gas-station.data").toUri().toString(),
+					1000L, clock, cacheDirectory.resolve("unused"), Runnable::run);
+			GasStation gs = new GasStation("3", 4356200f, 407700f, "73100", "AIX LES BAINS", "A41",
+					new Price(E10, DATE, 1.399f));
+
+			assertEquals(asList(gs), localUnderTest.getGasStationsForPostCodes("73100"));
+			verify(exactly(0), getRequestedFor(anyUrl()));
+		}
 	}
 
 	@Nested
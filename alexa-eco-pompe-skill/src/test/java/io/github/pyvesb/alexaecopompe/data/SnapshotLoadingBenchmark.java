@@ -0,0 +1,132 @@
+package io.github.pyvesb.alexaecopompe.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.Price;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+/**
+ * Compares decoding the bundled gas-station.data snapshot with the columnar format against decoding the same gas
+ * stations serialised as a protostuff list, which was the previous snapshot format. Gas stations are serialised with
+ * a frozen copy of the fields GasStation had at the time, so that fields it gained since don't weigh on the previous
+ * format. The bundled stations can be replicated to get closer to the size of the real feed (around 11000 stations).
+ * Run with -prof gc to also compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotLoadingBenchmark {
+
+	private static final Schema<PreviousGasStation> SCHEMA = RuntimeSchema.getSchema(PreviousGasStation.class);
+
+	@Param({ "1", "4000" })
+	private int copies;
+
+	private byte[] columnarData;
+	private byte[] protostuffData;
+
+	@Setup
+	public void setUp() throws IOException {
+		StationTable stationTable;
+		try (InputStream inputStream = new InflaterInputStream(getClass().getResourceAsStream("/__files/gas-station.data"))) {
+			stationTable = StationTable.readFrom(inputStream);
+		}
+		List<GasStation> gasStations = new ArrayList<>();
+		List<PreviousGasStation> previousGasStations = new ArrayList<>();
+		for (int copy = 0; copy < copies; ++copy) {
+			for (int station = 0; station < stationTable.size(); ++station) {
+				GasStation gs = stationTable.getGasStation(station);
+				gasStations.add(new GasStation(gs.getId() + copy, gs.getLat() * 100000f, gs.getLon() * 100000f,
+						gs.getPostCode(), gs.getTown(), gs.getAddress(), gs.getPrices()));
+				previousGasStations.add(new PreviousGasStation(gs.getId() + copy, gs.getLat(), gs.getLon(),
+						gs.getPostCode(), gs.getTown(), gs.getAddress(), gs.getPrices()));
+			}
+		}
+		columnarData = deflate(out -> StationTable.of(gasStations).writeTo(out));
+		protostuffData = deflate(
+				out -> ProtostuffIOUtil.writeListTo(out, previousGasStations, SCHEMA, LinkedBuffer.allocate()));
+	}
+
+	@Benchmark
+	public StationTable columnar() throws IOException {
+		try (InputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(columnarData))) {
+			return StationTable.readFrom(inputStream);
+		}
+	}
+
+	@Benchmark
+	public List<?> protostuff() throws IOException {
+		try (InputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(protostuffData))) {
+			return ProtostuffIOUtil.parseListFrom(inputStream, SCHEMA);
+		}
+	}
+
+	private static byte[] deflate(OutputStreamWriter writer) throws IOException {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		try (DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(byteArrayOutputStream)) {
+			writer.writeTo(deflaterOutputStream);
+		}
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	/**
+	 * Fields of GasStation as they were serialised in the previous snapshot format.
+	 */
+	private static final class PreviousGasStation {
+
+		private final String id;
+		private final float latitude;
+		private final float longitude;
+		private final String postCode;
+		private final String town;
+		private final String address;
+		private final List<Price> prices;
+
+		PreviousGasStation(String id, float latitude, float longitude, String postCode, String town, String address,
+				List<Price> prices) {
+			this.id = id;
+			this.latitude = latitude;
+			this.longitude = longitude;
+			this.postCode = postCode;
+			this.town = town;
+			this.address = address;
+			this.prices = prices;
+		}
+	}
+
+	@FunctionalInterface
+	private interface OutputStreamWriter {
+
+		void writeTo(OutputStream outputStream) throws IOException;
+	}
+
+}
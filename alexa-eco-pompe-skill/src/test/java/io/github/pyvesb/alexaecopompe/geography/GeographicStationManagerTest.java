@@ -2,18 +2,29 @@ package io.github.pyvesb.alexaecopompe.geography;
 
 import static java.lang.Float.compare;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Comparator.comparingDouble;
 import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
 import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.Price;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
 
 class GeographicStationManagerTest {
 
-	private final GeographicStationManager underTest = new GeographicStationManager();
+	private static final LocalDate DATE = LocalDate.of(2018, 4, 4);
 
 	@Test
 	void shouldComputeGasStationsWithinRadius() {
@@ -30,7 +41,7 @@ class GeographicStationManagerTest {
 		List<GasStation> gasStations = asList(gs8, gs6, gs7, gs1, gs9, gs5, gs2, gs3, gs4);
 		assert gasStations.stream().sorted((s1, s2) -> compare(s1.getLat(), s2.getLat())).collect(toList())
 				.equals(gasStations) : "The input test array should be sorted by latitude.";
-		underTest.registerGasStations(gasStations);
+		GeographicStationManager underTest = new GeographicStationManager(StationTable.of(gasStations));
 
 		Position pos = new Position(45.0f, 2.0f);
 		assertEquals(asList(), underTest.getGasStationsWithinRadius(pos, 0));
@@ -49,9 +60,113 @@ class GeographicStationManagerTest {
 		assertEquals(asList(gs8, gs6, gs7, gs1, gs9, gs5, gs2, gs3, gs4), underTest.getGasStationsWithinRadius(pos, 34));
 	}
 
+	@Test
+	void shouldReturnSameStationsAsFullScanAcrossGridCells() {
+		Random random = new Random(42);
+		List<GasStation> gasStations = new ArrayList<>();
+		for (int i = 0; i < 2000; ++i) {
+			gasStations.add(new GasStation(Integer.toString(i), 4800000f + random.nextFloat() * 200000f,
+					150000f + random.nextFloat() * 300000f, "75001", "t", "a"));
+		}
+		gasStations.sort((s1, s2) -> compare(s1.getLat(), s2.getLat()));
+		StationTable stationTable = StationTable.of(gasStations);
+		GeographicStationManager underTest = new GeographicStationManager(stationTable);
+
+		for (int query = 0; query < 1000; ++query) {
+			float lat = 47.9f + random.nextFloat() * 2.2f;
+			float lon = 1.4f + random.nextFloat() * 3.2f;
+			int radius = random.nextInt(60);
+			assertArrayEquals(scanStationsWithinRadius(stationTable, lat, lon, radius),
+					underTest.getStationsWithinRadius(lat, lon, radius));
+		}
+	}
+
+	@Test
+	void shouldReturnNearestGasStationsSellingGasType() {
+		Random random = new Random(42);
+		List<GasStation> gasStations = new ArrayList<>();
+		for (int i = 0; i < 2000; ++i) {
+			GasType gasType = i % 3 == 0 ? GasType.GPL : GasType.GAZOLE;
+			gasStations.add(new GasStation(Integer.toString(i), 4200000f + random.nextFloat() * 900000f,
+					-480000f + random.nextFloat() * 1300000f, "75001", "t", "a", new Price(gasType, DATE, 1.5f)));
+		}
+		gasStations.sort((s1, s2) -> compare(s1.getLat(), s2.getLat()));
+		GeographicStationManager underTest = new GeographicStationManager(StationTable.of(gasStations));
+
+		for (int query = 0; query < 200; ++query) {
+			Position position = new Position(42f + random.nextFloat() * 9.5f, -5f + random.nextFloat() * 13.5f);
+			List<String> expected = gasStations.stream().filter(gs -> gs.getPriceForGasType(GasType.GPL).isPresent())
+					.sorted(comparingDouble(gs -> CoordinateHelper.computeSquaredDistance(gs.getLat(), gs.getLon(),
+							position.getLat(), position.getLon())))
+					.limit(5).map(GasStation::getId).collect(toList());
+			assertEquals(expected, underTest.getNearestGasStations(position, GasType.GPL, 5).stream()
+					.map(GasStation::getId).collect(toList()));
+		}
+		assertEquals(asList(), underTest.getNearestGasStations(new Position(45f, 2f), GasType.E85, 5));
+		assertEquals(asList(), underTest.getNearestGasStations(new Position(45f, 2f), GasType.UNKNOWN, 5));
+	}
+
+	@Test
+	void shouldRankCheapestGasStationsWithinRadiusLikeSortingAllOfThem() {
+		Random random = new Random(42);
+		List<GasStation> gasStations = new ArrayList<>();
+		for (int i = 0; i < 2000; ++i) {
+			List<Price> prices = new ArrayList<>();
+			for (GasType gasType : asList(GasType.SP95, GasType.E10)) {
+				if (random.nextInt(3) > 0) {
+					// Few distinct values and dates, so that ties are frequent.
+					float value = (1200 + random.nextInt(20)) / 1000f;
+					prices.add(new Price(gasType, DATE.minusDays(random.nextInt(10)), value));
+				}
+			}
+			gasStations.add(new GasStation(Integer.toString(i), 4800000f + random.nextFloat() * 200000f,
+					150000f + random.nextFloat() * 300000f, "75001", "t", "a", prices.toArray(new Price[0])));
+		}
+		gasStations.sort((s1, s2) -> compare(s1.getLat(), s2.getLat()));
+		GeographicStationManager underTest = new GeographicStationManager(StationTable.of(gasStations));
+		long staleBeforeEpochDay = DATE.minusDays(7).toEpochDay();
+		PriceRanking priceRanking = (price, updatedEpochDay) -> updatedEpochDay < staleBeforeEpochDay ? price + 1000f
+				: price;
+
+		for (int query = 0; query < 200; ++query) {
+			Position position = new Position(47.9f + random.nextFloat() * 2.2f, 1.4f + random.nextFloat() * 3.2f);
+			int radius = random.nextInt(30);
+			int count = 1 + random.nextInt(5);
+			List<GasStation> withinRadius = underTest.getGasStationsWithinRadius(position, radius);
+			CheapestGasStations cheapest = underTest.getCheapestGasStationsWithinRadius(position, radius, priceRanking,
+					count, GasType.SP95, GasType.E10);
+			assertEquals(withinRadius.size(), cheapest.getGasStationCount());
+			for (GasType gasType : asList(GasType.SP95, GasType.E10)) {
+				// Stable sort of the stations in latitude order.
+				List<String> expected = withinRadius.stream().filter(gs -> gs.getPriceForGasType(gasType).isPresent())
+						.sorted(comparingDouble(gs -> gs.getPriceForGasType(gasType)
+								.map(p -> priceRanking.rank(p.getValue(), p.getUpdated().toEpochDay())).get()))
+						.limit(count).map(GasStation::getId).collect(toList());
+				assertEquals(expected, cheapest.getCheapestGasStations(gasType).stream().map(GasStation::getId)
+						.collect(toList()));
+			}
+			assertEquals(asList(), cheapest.getCheapestGasStations(GasType.GPL));
+		}
+	}
+
 	@Test
 	void shouldCopeIfNoGasStationsAreRegistered() {
+		GeographicStationManager underTest = new GeographicStationManager(StationTable.of(emptyList()));
 		assertEquals(asList(), underTest.getGasStationsWithinRadius(new Position(43.5f, 1.7f), 10));
+		CheapestGasStations cheapest = underTest.getCheapestGasStationsWithinRadius(new Position(43.5f, 1.7f), 10,
+				(price, updatedEpochDay) -> price, 1, GasType.SP95);
+		assertEquals(0, cheapest.getGasStationCount());
+		assertEquals(asList(), cheapest.getCheapestGasStations(GasType.SP95));
+	}
+
+	private static int[] scanStationsWithinRadius(StationTable stationTable, float lat, float lon, int radius) {
+		float latDiff = CoordinateHelper.computeLatDiff(radius);
+		float lonDiff = CoordinateHelper.computeLonDiff(radius, lat);
+		return IntStream.range(0, stationTable.size()).filter(s -> stationTable.getLat(s) > lat - latDiff
+				&& stationTable.getLat(s) <= lat + latDiff && stationTable.getLon(s) > lon - lonDiff
+				&& stationTable.getLon(s) <= lon + lonDiff && CoordinateHelper.computeSquaredDistance(stationTable.getLat(s),
+						stationTable.getLon(s), lat, lon) <= radius * radius)
+				.toArray();
 	}
 
 }
@@ -17,6 +17,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -26,12 +27,18 @@ import com.amazon.ask.model.interfaces.geolocation.Coordinate;
 import com.amazon.ask.model.interfaces.geolocation.GeolocationState;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
 
 import io.github.pyvesb.alexaecopompe.address.Address;
+import io.github.pyvesb.alexaecopompe.http.CircuitBreaker;
+import io.github.pyvesb.alexaecopompe.http.CircuitBreaker.State;
+import io.github.pyvesb.alexaecopompe.http.HttpClient;
+import io.github.pyvesb.alexaecopompe.utils.Deadline;
 
 class PositionProviderTest {
 
 	private static final String API_PATH = "/path/to/api";
+	private static final String API_URL = "http://localhost:8089" + API_PATH + "?param=%s";
 	private static final Address ADDRESS = new Address("1 rue Cler", "Paris", "75001");
 
 	private final WireMockServer wireMockServer = new WireMockServer(options().port(8089));
@@ -42,7 +49,7 @@ class PositionProviderTest {
 	void setUp() {
 		wireMockServer.start();
 		WireMock.configureFor("localhost", wireMockServer.port());
-		underTest = new PositionProvider("http://localhost:8089" + API_PATH + "?param=%s", "user", 500, "/0/lat", "/0/lon");
+		underTest = new PositionProvider(API_URL, "user", 500, "/0/lat", "/0/lon");
 	}
 
 	@AfterEach
@@ -96,6 +103,204 @@ class PositionProviderTest {
 		assertEquals(Optional.of(new Position(48.8674634f, 2.32942811682519f)), position);
 	}
 
+	@Test
+	void shouldLocatePostCodeOfflineInsteadOfUsingSimplifiedAddress() {
+		wireMockServer.stubFor(get(urlEqualTo(API_PATH + "?param=rue+Cler+Paris+75001"))
+				.withHeader("Accept", equalTo("application/json"))
+				.willReturn(aResponse()
+						.withBody("[]")
+						.withStatus(HTTP_OK)));
+		PostCodeLocator postCodeLocator = postCode -> "75001".equals(postCode)
+				? Optional.of(new Position(48.86f, 2.34f))
+				: Optional.empty();
+		underTest = new PositionProvider(new HttpClient(500), API_URL, "user", 500, "/0/lat", "/0/lon",
+				postCodeLocator, -1L);
+
+		Optional<Position> position = underTest.getByAddress(ADDRESS);
+
+		assertEquals(Optional.of(new Position(48.86f, 2.34f)), position);
+		verify(exactly(1), getRequestedFor(anyUrl()));
+	}
+
+	@Test
+	void shouldReturnPreciseHedgedPositionIfItArrivesWithinTimeout() {
+		stubDelayedPosition("rue+Cler+Paris+75001", 48.8674f, 200);
+		stubDelayedPosition("75001", 48.86f, 0);
+		underTest = new PositionProvider(new HttpClient(500), API_URL, "user", 500, "/0/lat", "/0/lon",
+				postCode -> Optional.empty(), 50L);
+
+		Optional<Position> position = underTest.getByAddress(ADDRESS);
+
+		assertEquals(Optional.of(new Position(48.8674f, 2.35f)), position);
+		verify(exactly(2), getRequestedFor(anyUrl()));
+		assertEquals(1, underTest.getPreciseWinCount());
+		assertEquals(0, underTest.getCoarseWinCount());
+	}
+
+	@Test
+	void shouldNotSendSimplifiedAddressIfPreciseHedgedPositionArrivesBeforeHedgeDelay() throws Exception {
+		stubDelayedPosition("rue+Cler+Paris+75001", 48.8674f, 0);
+		underTest = new PositionProvider(new HttpClient(500), API_URL, "user", 500, "/0/lat", "/0/lon",
+				postCode -> Optional.empty(), 300L);
+
+		Optional<Position> position = underTest.getByAddress(ADDRESS);
+		Thread.sleep(400L);
+
+		assertEquals(Optional.of(new Position(48.8674f, 2.35f)), position);
+		verify(exactly(1), getRequestedFor(anyUrl()));
+	}
+
+	@Test
+	void shouldReturnCoarseHedgedPositionIfPreciseOneIsTooSlow() {
+		stubDelayedPosition("rue+Cler+Paris+75001", 48.8674f, 3000);
+		stubDelayedPosition("75001", 48.86f, 0);
+		underTest = new PositionProvider(new HttpClient(1000), API_URL, "user", 1000, "/0/lat", "/0/lon",
+				postCode -> Optional.empty(), 0L);
+
+		long startMillis = System.currentTimeMillis();
+		Optional<Position> position = underTest.getByAddress(ADDRESS);
+
+		assertEquals(Optional.of(new Position(48.86f, 2.35f)), position);
+		assertTrue(System.currentTimeMillis() - startMillis < 3000L);
+		assertEquals(0, underTest.getPreciseWinCount());
+		assertEquals(1, underTest.getCoarseWinCount());
+	}
+
+	@Test
+	void shouldUseOfflinePostCodeAsCoarseHedgedPosition() {
+		stubDelayedPosition("rue+Cler+Paris+75001", 48.8674f, 1000);
+		underTest = new PositionProvider(new HttpClient(300), API_URL, "user", 300, "/0/lat", "/0/lon",
+				postCode -> Optional.of(new Position(48.86f, 2.34f)), 0L);
+
+		Optional<Position> position = underTest.getByAddress(ADDRESS);
+
+		assertEquals(Optional.of(new Position(48.86f, 2.34f)), position);
+		verify(exactly(1), getRequestedFor(anyUrl()));
+		assertEquals(1, underTest.getCoarseWinCount());
+	}
+
+	@Test
+	void shouldFallBackToOfflinePostCodeOnceDeadlineExpires() throws Exception {
+		stubDelayedPosition("rue+Cler+Paris+75001", 48.8674f, 3000);
+		underTest = new PositionProvider(new HttpClient(5000), API_URL, "user", 5000, "/0/lat", "/0/lon",
+				postCode -> Optional.of(new Position(48.86f, 2.34f)), -1L);
+
+		long startMillis = System.currentTimeMillis();
+		Optional<Position> position = underTest.getByAddressAsync(ADDRESS, Deadline.after(300L)).get(5,
+				TimeUnit.SECONDS);
+
+		assertEquals(Optional.of(new Position(48.86f, 2.34f)), position);
+		assertTrue(System.currentTimeMillis() - startMillis < 3000L);
+	}
+
+	@Test
+	void shouldNotSendSimplifiedAddressOnceDeadlineExpires() throws Exception {
+		stubDelayedPosition("rue+Cler+Paris+75001", 48.8674f, 3000);
+		stubDelayedPosition("75001", 48.86f, 0);
+		underTest = new PositionProvider(new HttpClient(5000), API_URL, "user", 5000, "/0/lat", "/0/lon",
+				postCode -> Optional.empty(), -1L);
+
+		Optional<Position> position = underTest.getByAddressAsync(ADDRESS, Deadline.after(300L)).get(5,
+				TimeUnit.SECONDS);
+
+		assertEquals(Optional.empty(), position);
+		verify(exactly(1), getRequestedFor(anyUrl()));
+	}
+
+	@Test
+	void shouldReturnCoarseHedgedPositionOnceDeadlineExpires() throws Exception {
+		stubDelayedPosition("rue+Cler+Paris+75001", 48.8674f, 3000);
+		stubDelayedPosition("75001", 48.86f, 0);
+		underTest = new PositionProvider(new HttpClient(5000), API_URL, "user", 5000, "/0/lat", "/0/lon",
+				postCode -> Optional.empty(), 0L);
+
+		long startMillis = System.currentTimeMillis();
+		Optional<Position> position = underTest.getByAddressAsync(ADDRESS, Deadline.after(1500L)).get(5,
+				TimeUnit.SECONDS);
+
+		assertEquals(Optional.of(new Position(48.86f, 2.35f)), position);
+		assertTrue(System.currentTimeMillis() - startMillis < 3000L);
+	}
+
+	@Test
+	void shouldFallBackToOfflinePostCodeWithoutRemoteLookupWhilstCircuitOpen() {
+		wireMockServer.stubFor(get(urlMatching(API_PATH + "\\?param=.*$"))
+				.willReturn(aResponse()
+						.withFault(Fault.EMPTY_RESPONSE)));
+		CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 2, 0.5, 1000L, 60000L);
+		underTest = new PositionProvider(new HttpClient(500), API_URL, "user", 500, "/0/lat", "/0/lon",
+				postCode -> Optional.of(new Position(48.86f, 2.34f)), -1L, circuitBreaker);
+
+		underTest.getByAddress(ADDRESS);
+		underTest.getByAddress(ADDRESS);
+		// The JDK may transparently retry requests with empty responses, only count the ones sent from now on.
+		int sentRequests = wireMockServer.getAllServeEvents().size();
+		Optional<Position> position = underTest.getByAddress(ADDRESS);
+
+		assertEquals(Optional.of(new Position(48.86f, 2.34f)), position);
+		assertEquals(sentRequests, wireMockServer.getAllServeEvents().size());
+		assertEquals(State.OPEN, circuitBreaker.getState());
+		assertEquals(1, circuitBreaker.getTransitionCount(State.OPEN));
+		assertEquals(1, circuitBreaker.getRejectedCount());
+	}
+
+	@Test
+	void shouldOpenCircuitOnSlowLookupsAndCloseItOnceProbeSucceeds() throws Exception {
+		stubDelayedPosition("rue+Cler+Paris+75001", 48.8674f, 300);
+		stubDelayedPosition("rue+Amelie+Paris+75007", 48.8598f, 300);
+		stubDelayedPosition("rue+Bosquet+Paris+75007", 48.8566f, 0);
+		CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 2, 0.5, 200L, 500L);
+		underTest = new PositionProvider(new HttpClient(1000), API_URL, "user", 1000, "/0/lat", "/0/lon",
+				postCode -> Optional.empty(), -1L, circuitBreaker);
+		Address bosquet = new Address("3 rue Bosquet", "Paris", "75007");
+
+		// Positions are found, but too slowly: the circuit opens and the next lookups are not even sent.
+		underTest.getByAddress(ADDRESS);
+		underTest.getByAddress(new Address("2 rue Amelie", "Paris", "75007"));
+		assertEquals(Optional.empty(), underTest.getByAddress(bosquet));
+		verify(exactly(2), getRequestedFor(anyUrl()));
+		assertEquals(State.OPEN, circuitBreaker.getState());
+
+		Thread.sleep(500L);
+		Optional<Position> position = underTest.getByAddress(bosquet);
+
+		assertEquals(Optional.of(new Position(48.8566f, 2.35f)), position);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		assertEquals(1, circuitBreaker.getTransitionCount(State.HALF_OPEN));
+	}
+
+	@Test
+	void shouldNotOpenCircuitOnLookupsCutShortByDeadline() {
+		wireMockServer.stubFor(get(urlMatching(API_PATH + "\\?param=.*$"))
+				.willReturn(aResponse()
+						.withFixedDelay(500)
+						.withStatus(HTTP_OK)));
+		CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 1, 0.5, 1000L, 60000L);
+		underTest = new PositionProvider(new HttpClient(1000), API_URL, "user", 1000, "/0/lat", "/0/lon",
+				postCode -> Optional.empty(), -1L, circuitBreaker);
+
+		Optional<Position> position = underTest.getByAddressAsync(ADDRESS, Deadline.after(100L)).join();
+
+		assertEquals(Optional.empty(), position);
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		assertEquals(0d, circuitBreaker.getFailureRate());
+	}
+
+	@Test
+	void shouldCountHedgedLookupsWithoutAnyPosition() {
+		wireMockServer.stubFor(get(urlMatching(API_PATH + "\\?param=.*$"))
+				.willReturn(aResponse()
+						.withBody("[]")
+						.withStatus(HTTP_OK)));
+		underTest = new PositionProvider(new HttpClient(500), API_URL, "user", 500, "/0/lat", "/0/lon",
+				postCode -> Optional.empty(), 0L);
+
+		Optional<Position> position = underTest.getByAddress(ADDRESS);
+
+		assertEquals(Optional.empty(), position);
+		assertEquals(1, underTest.getNoWinCount());
+	}
+
 	@Test
 	void shouldReturnEmptyResultIfResponseMissingLatitudeOrLongitude() {
 		wireMockServer.stubFor(get(urlMatching(API_PATH + "\\?param=.*$"))
@@ -213,4 +418,13 @@ class PositionProviderTest {
 		assertTrue(position.isPresent());
 	}
 
+	private void stubDelayedPosition(String param, float latitude, int delayMillis) {
+		wireMockServer.stubFor(get(urlEqualTo(API_PATH + "?param=" + param))
+				.withHeader("Accept", equalTo("application/json"))
+				.willReturn(aResponse()
+						.withBody("[{\"lat\": \"" + latitude + "\", \"lon\": \"2.35\"}]")
+						.withFixedDelay(delayMillis)
+						.withStatus(HTTP_OK)));
+	}
+
 }
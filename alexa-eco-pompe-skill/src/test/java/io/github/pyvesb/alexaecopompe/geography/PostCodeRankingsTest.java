@@ -0,0 +1,143 @@
+package io.github.pyvesb.alexaecopompe.geography;
+
+import static java.lang.Float.compare;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.Price;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
+
+class PostCodeRankingsTest {
+
+	private static final LocalDate DATE = LocalDate.of(2018, 4, 4);
+	private static final String[] POST_CODES = { "73000", "73100", "73200", "75001", "75002", "75014", "97400" };
+
+	@Test
+	void shouldRankGasStationsOfPostCodesAndDepartments() {
+		GasStation gs1 = new GasStation("1", 4500000f, 200000f, "73100", "t", "a1", new Price(GasType.SP95, DATE, 1.2f));
+		GasStation gs2 = new GasStation("2", 4510000f, 200000f, "73000", "t", "a2", new Price(GasType.SP95, DATE, 1.1f),
+				new Price(GasType.E10, DATE, 1.0f));
+		GasStation gs3 = new GasStation("3", 4520000f, 200000f, "73100", "t", "a3", new Price(GasType.SP95, DATE, 1.2f));
+		GasStation gs4 = new GasStation("4", 4530000f, 200000f, "73200", "t", "a4");
+		PostCodeRankings underTest = new PostCodeRankings(StationTable.of(asList(gs1, gs2, gs3, gs4)), (p, d) -> p);
+
+		CheapestGasStations town = underTest.getCheapestGasStationsForPostCodes(new String[] { "73100", "73000" }, 3,
+				GasType.SP95, GasType.E10);
+		assertEquals(3, town.getGasStationCount());
+		assertEquals(asList(gs2, gs1, gs3), town.getCheapestGasStations(GasType.SP95));
+		assertEquals(asList(gs2), town.getCheapestGasStations(GasType.E10));
+		assertEquals(asList(), town.getCheapestGasStations(GasType.GPL));
+
+		CheapestGasStations department = underTest.getCheapestGasStationsForDepartment("73", 1, GasType.SP95);
+		assertEquals(4, department.getGasStationCount());
+		assertEquals(asList(gs2), department.getCheapestGasStations(GasType.SP95));
+
+		CheapestGasStations unknown = underTest.getCheapestGasStationsForPostCodes(new String[] { "58400" }, 1,
+				GasType.SP95);
+		assertEquals(0, unknown.getGasStationCount());
+		assertEquals(asList(), unknown.getCheapestGasStations(GasType.SP95));
+	}
+
+	@Test
+	void shouldNotRankUnknownGasType() {
+		GasStation gs = new GasStation("1", 4500000f, 200000f, "73100", "t", "a1", new Price(GasType.SP95, DATE, 1.2f));
+		PostCodeRankings underTest = new PostCodeRankings(StationTable.of(asList(gs)), (p, d) -> p);
+
+		CheapestGasStations department = underTest.getCheapestGasStationsForDepartment("73", 1, GasType.SP95,
+				GasType.UNKNOWN);
+		CheapestGasStations town = underTest.getCheapestGasStationsForPostCodes(new String[] { "73100" }, 5,
+				GasType.UNKNOWN);
+
+		assertEquals(asList(gs), department.getCheapestGasStations(GasType.SP95));
+		assertEquals(asList(), department.getCheapestGasStations(GasType.UNKNOWN));
+		assertEquals(1, town.getGasStationCount());
+		assertEquals(asList(), town.getCheapestGasStations(GasType.UNKNOWN));
+	}
+
+	@Test
+	void shouldRankGasStationsLikeSortingThemAll() {
+		Random random = new Random(42);
+		List<GasStation> gasStations = new ArrayList<>();
+		for (int i = 0; i < 2000; ++i) {
+			List<Price> prices = new ArrayList<>();
+			for (GasType gasType : asList(GasType.SP95, GasType.E10)) {
+				if (random.nextInt(3) > 0) {
+					// Few distinct values and dates, so that ties are frequent.
+					float value = (1200 + random.nextInt(20)) / 1000f;
+					prices.add(new Price(gasType, DATE.minusDays(random.nextInt(10)), value));
+				}
+			}
+			String postCode = POST_CODES[random.nextInt(POST_CODES.length)];
+			gasStations.add(new GasStation(Integer.toString(i), 4800000f + random.nextFloat() * 200000f,
+					150000f + random.nextFloat() * 300000f, postCode, "t", "a", prices.toArray(new Price[0])));
+		}
+		gasStations.sort((s1, s2) -> compare(s1.getLat(), s2.getLat()));
+		StationTable stationTable = StationTable.of(gasStations);
+		long staleBeforeEpochDay = DATE.minusDays(7).toEpochDay();
+		PriceRanking priceRanking = (price, updatedEpochDay) -> updatedEpochDay < staleBeforeEpochDay ? price + 1000f
+				: price;
+		PostCodeRankings underTest = new PostCodeRankings(stationTable, priceRanking);
+
+		for (int query = 0; query < 200; ++query) {
+			List<String> shuffled = new ArrayList<>(asList(POST_CODES));
+			Collections.shuffle(shuffled, random);
+			String[] postCodes = shuffled.subList(0, 1 + random.nextInt(3)).toArray(new String[0]);
+			// Identifiers other than two characters long are not materialised.
+			String departmentId = postCodes[0].substring(0, 1 + random.nextInt(3));
+			int count = 1 + random.nextInt(5);
+			CheapestGasStations town = underTest.getCheapestGasStationsForPostCodes(postCodes, count, GasType.SP95,
+					GasType.E10);
+			CheapestGasStations department = underTest.getCheapestGasStationsForDepartment(departmentId, count,
+					GasType.SP95, GasType.E10);
+			List<GasStation> inTown = new ArrayList<>();
+			for (String postCode : postCodes) {
+				inTown.addAll(gasStationsWithPrefix(stationTable, postCode));
+			}
+			List<GasStation> inDepartment = gasStationsWithPrefix(stationTable, departmentId);
+			assertEquals(inTown.size(), town.getGasStationCount());
+			assertEquals(inDepartment.size(), department.getGasStationCount());
+			for (GasType gasType : asList(GasType.SP95, GasType.E10)) {
+				assertEquals(sortAndLimit(inTown, gasType, priceRanking, count), ids(town, gasType));
+				assertEquals(sortAndLimit(inDepartment, gasType, priceRanking, count), ids(department, gasType));
+			}
+		}
+	}
+
+	private static List<GasStation> gasStationsWithPrefix(StationTable stationTable, String postCodePrefix) {
+		List<GasStation> gasStations = new ArrayList<>();
+		int end = stationTable.getPostCodeRangeEnd(postCodePrefix);
+		for (int position = stationTable.getPostCodeRangeStart(postCodePrefix); position < end; ++position) {
+			gasStations.add(stationTable.getGasStation(stationTable.getStationOrderedByPostCode(position)));
+		}
+		return gasStations;
+	}
+
+	private static List<String> sortAndLimit(List<GasStation> gasStations, GasType gasType, PriceRanking priceRanking,
+			int count) {
+		// Stable sort of the stations in the order they were listed.
+		return gasStations.stream().filter(gs -> gs.getPriceForGasType(gasType).isPresent())
+				.sorted((gs1, gs2) -> compare(rank(gs1, gasType, priceRanking), rank(gs2, gasType, priceRanking)))
+				.limit(count).map(GasStation::getId).collect(toList());
+	}
+
+	private static float rank(GasStation gs, GasType gasType, PriceRanking priceRanking) {
+		return priceRanking.rank(gs.getPriceValue(gasType), gs.getUpdatedEpochDay(gasType));
+	}
+
+	private static List<String> ids(CheapestGasStations cheapest, GasType gasType) {
+		return cheapest.getCheapestGasStations(gasType).stream().map(GasStation::getId).collect(toList());
+	}
+
+}
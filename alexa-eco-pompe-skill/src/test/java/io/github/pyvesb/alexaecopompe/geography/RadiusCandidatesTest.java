@@ -0,0 +1,75 @@
+package io.github.pyvesb.alexaecopompe.geography;
+
+import static java.lang.Float.compare;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.Price;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
+
+class RadiusCandidatesTest {
+
+	private static final LocalDate DATE = LocalDate.of(2018, 4, 4);
+
+	@Test
+	void shouldQuantisePositionsToHundredthsOfDegrees() {
+		Position quantised = RadiusCandidates.quantise(new Position(43.5567f, 4.0749f));
+
+		assertEquals(43.56f, quantised.getLat());
+		assertEquals(4.07f, quantised.getLon());
+	}
+
+	@Test
+	void shouldReturnSameGasStationsAsScanningAllStationsForPositionsQuantisedToTheCentre() {
+		Random random = new Random(42);
+		List<GasStation> gasStations = new ArrayList<>();
+		for (int i = 0; i < 4000; ++i) {
+			List<Price> prices = new ArrayList<>();
+			for (GasType gasType : asList(GasType.SP95, GasType.E10)) {
+				if (random.nextInt(4) > 0) {
+					float value = (1200 + random.nextInt(20)) / 1000f;
+					prices.add(new Price(gasType, DATE.minusDays(random.nextInt(10)), value));
+				}
+			}
+			// Dense area around Paris and sparse area around Clermont-Ferrand.
+			float lat = i % 4 == 0 ? 4500000f + random.nextFloat() * 200000f : 4880000f + random.nextFloat() * 30000f;
+			float lon = i % 4 == 0 ? 200000f + random.nextFloat() * 200000f : 230000f + random.nextFloat() * 40000f;
+			gasStations.add(new GasStation(Integer.toString(i), lat, lon, "75001", "t", "a",
+					prices.toArray(new Price[0])));
+		}
+		gasStations.sort((s1, s2) -> compare(s1.getLat(), s2.getLat()));
+		GeographicStationManager manager = new GeographicStationManager(StationTable.of(gasStations));
+		PriceRanking priceRanking = (price, updatedEpochDay) -> price;
+
+		for (int query = 0; query < 300; ++query) {
+			Position position = query % 2 == 0
+					? new Position(48.78f + random.nextFloat() * 0.34f, 2.28f + random.nextFloat() * 0.44f)
+					: new Position(45f + random.nextFloat() * 2f, 2f + random.nextFloat() * 2f);
+			int radius = random.nextInt(51);
+			int count = 1 + random.nextInt(5);
+			RadiusCandidates underTest = manager.getRadiusCandidates(RadiusCandidates.quantise(position), radius,
+					priceRanking, GasType.SP95, GasType.E10);
+			CheapestGasStations expected = manager.getCheapestGasStationsWithinRadius(position, radius, priceRanking,
+					count, GasType.SP95, GasType.E10);
+			// The first query is run against the grid, the following ones against the collected candidates.
+			for (int use = 0; use < 3; ++use) {
+				CheapestGasStations actual = underTest.getCheapestGasStationsWithinRadius(position, count);
+				assertEquals(expected.getGasStationCount(), actual.getGasStationCount());
+				for (GasType gasType : asList(GasType.SP95, GasType.E10)) {
+					assertEquals(expected.getCheapestGasStations(gasType), actual.getCheapestGasStations(gasType));
+				}
+			}
+		}
+	}
+
+}
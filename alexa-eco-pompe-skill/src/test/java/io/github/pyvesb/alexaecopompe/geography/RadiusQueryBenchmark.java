@@ -0,0 +1,223 @@
+package io.github.pyvesb.alexaecopompe.geography;
+
+import static java.lang.Float.compare;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.Price;
+import io.github.pyvesb.alexaecopompe.domain.StationTable;
+import io.github.pyvesb.alexaecopompe.utils.GasStationPriceSorter;
+
+/**
+ * Compares radius queries using the grid index against the previous implementation, which performed two binary searches
+ * over stations sorted by latitude and by longitude before intersecting both ranges. The synthetic dataset has the size
+ * of the real feed (around 11000 stations) with a quarter of them concentrated around Paris; queries are run both in
+ * central Paris and in a sparse rural area. Cheapest station queries ranking stations on the fly are also compared
+ * against materialising the stations within the radius and sorting them for SP95 and then for E10, as the handler used
+ * to, and against queries served from radius candidates, both when the candidates are cached and when they have to be
+ * built first, as on a cache miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RadiusQueryBenchmark {
+
+	private static final float PARIS_LAT = 48.8566f;
+	private static final float PARIS_LON = 2.3522f;
+	private static final float RURAL_LAT = 46.1f;
+	private static final float RURAL_LON = 2.1f;
+
+	@Param({ "5", "20", "50" })
+	private int radius;
+
+	@Param({ "urban", "rural" })
+	private String area;
+
+	private GeographicStationManager grid;
+	private DualBinarySearch dualBinarySearch;
+	private GasStationPriceSorter gasStationPriceSorter;
+	private Position position;
+	private RadiusCandidates candidates;
+
+	@Setup
+	public void setUp() {
+		StationTable stationTable = StationTable.of(generateStations(11000, new Random(42)));
+		grid = new GeographicStationManager(stationTable);
+		dualBinarySearch = new DualBinarySearch(stationTable);
+		gasStationPriceSorter = new GasStationPriceSorter(7L);
+		position = "urban".equals(area) ? new Position(PARIS_LAT, PARIS_LON) : new Position(RURAL_LAT, RURAL_LON);
+		candidates = grid.getRadiusCandidates(RadiusCandidates.quantise(position), radius,
+				gasStationPriceSorter.getPriceRanking(), GasType.SP95, GasType.E10);
+		// Candidates are only collected and ranked once queried twice.
+		candidates.getCheapestGasStationsWithinRadius(position, 1);
+		candidates.getCheapestGasStationsWithinRadius(position, 1);
+	}
+
+	@Benchmark
+	public int[] grid() {
+		return grid.getStationsWithinRadius(position.getLat(), position.getLon(), radius);
+	}
+
+	@Benchmark
+	public int[] dualBinarySearch() {
+		return dualBinarySearch.getStationsWithinRadius(position.getLat(), position.getLon(), radius);
+	}
+
+	@Benchmark
+	public CheapestGasStations cheapestRankedOnTheFly() {
+		return grid.getCheapestGasStationsWithinRadius(position, radius, gasStationPriceSorter.getPriceRanking(), 1,
+				GasType.SP95, GasType.E10);
+	}
+
+	@Benchmark
+	public CheapestGasStations cheapestFromCachedCandidates() {
+		return candidates.getCheapestGasStationsWithinRadius(position, 1);
+	}
+
+	@Benchmark
+	public CheapestGasStations cheapestFromNewCandidates() {
+		return grid.getRadiusCandidates(RadiusCandidates.quantise(position), radius,
+				gasStationPriceSorter.getPriceRanking(), GasType.SP95, GasType.E10)
+				.getCheapestGasStationsWithinRadius(position, 1);
+	}
+
+	@Benchmark
+	public List<GasStation> cheapestSorted() {
+		List<GasStation> gasStations = grid.getGasStationsWithinRadius(position, radius);
+		if (gasStations.isEmpty()) {
+			return gasStations;
+		}
+		gasStationPriceSorter.sortGasStationsByIncreasingPricesForGasType(gasStations, GasType.SP95);
+		GasStation cheapestSp95 = gasStations.get(0);
+		gasStationPriceSorter.sortGasStationsByIncreasingPricesForGasType(gasStations, GasType.E10);
+		return Arrays.asList(cheapestSp95, gasStations.get(0));
+	}
+
+	static List<GasStation> generateStations(int count, Random random) {
+		List<GasStation> gasStations = new ArrayList<>(count);
+		LocalDate date = LocalDate.of(2018, 4, 4);
+		for (int i = 0; i < count; ++i) {
+			float lat;
+			float lon;
+			if (i % 4 == 0) {
+				lat = PARIS_LAT + (float) random.nextGaussian() * 0.25f;
+				lon = PARIS_LON + (float) random.nextGaussian() * 0.35f;
+			} else {
+				// Bounding box of metropolitan France.
+				lat = 42.3f + random.nextFloat() * 8.8f;
+				lon = -4.8f + random.nextFloat() * 13f;
+			}
+			Price sp95 = new Price(GasType.SP95, date.minusDays(random.nextInt(10)), 1.4f + random.nextInt(300) / 1000f);
+			Price e10 = new Price(GasType.E10, date.minusDays(random.nextInt(10)), 1.35f + random.nextInt(300) / 1000f);
+			gasStations.add(new GasStation(Integer.toString(i), lat * 100000f, lon * 100000f, "75001", "Paris",
+					"Rue " + i, sp95, e10));
+		}
+		gasStations.sort((s1, s2) -> compare(s1.getLat(), s2.getLat()));
+		return gasStations;
+	}
+
+	/**
+	 * Previous implementation of GeographicStationManager, kept as a baseline.
+	 */
+	private static final class DualBinarySearch {
+
+		private final StationTable stationTable;
+		private final int[] stationsByLon;
+
+		DualBinarySearch(StationTable stationTable) {
+			this.stationTable = stationTable;
+			long[] packed = new long[stationTable.size()];
+			for (int station = 0; station < packed.length; ++station) {
+				int bits = Float.floatToIntBits(stationTable.getLon(station));
+				packed[station] = (long) (bits ^ (bits >> 31 & Integer.MAX_VALUE)) << 32 | station;
+			}
+			Arrays.sort(packed);
+			stationsByLon = new int[packed.length];
+			for (int i = 0; i < packed.length; ++i) {
+				stationsByLon[i] = (int) packed[i];
+			}
+		}
+
+		int[] getStationsWithinRadius(float lat, float lon, int radius) {
+			float latDiff = CoordinateHelper.computeLatDiff(radius);
+			int latLowerIndex = getSmallestIndexOverBound(lat - latDiff, stationTable::getLat, -1);
+			int latUpperIndex = getSmallestIndexOverBound(lat + latDiff, stationTable::getLat, latLowerIndex);
+			float lonDiff = CoordinateHelper.computeLonDiff(radius, lat);
+			IndexToFloatFunction lonGetter = i -> stationTable.getLon(stationsByLon[i]);
+			int lonLowerIndex = getSmallestIndexOverBound(lon - lonDiff, lonGetter, -1);
+			int lonUpperIndex = getSmallestIndexOverBound(lon + lonDiff, lonGetter, lonLowerIndex);
+			int[] commonStations;
+			int size = 0;
+			if (latUpperIndex - latLowerIndex <= lonUpperIndex - lonLowerIndex) {
+				commonStations = new int[latUpperIndex - latLowerIndex];
+				for (int station = latLowerIndex; station < latUpperIndex; ++station) {
+					float stationLon = stationTable.getLon(station);
+					if (stationLon > lon - lonDiff && stationLon <= lon + lonDiff) {
+						commonStations[size++] = station;
+					}
+				}
+			} else {
+				commonStations = new int[lonUpperIndex - lonLowerIndex];
+				for (int i = lonLowerIndex; i < lonUpperIndex; ++i) {
+					int station = stationsByLon[i];
+					if (station >= latLowerIndex && station < latUpperIndex) {
+						commonStations[size++] = station;
+					}
+				}
+				Arrays.sort(commonStations, 0, size);
+			}
+			int squaredRadius = radius * radius;
+			int inRadius = 0;
+			for (int i = 0; i < size; ++i) {
+				int station = commonStations[i];
+				if (CoordinateHelper.computeSquaredDistance(stationTable.getLat(station), stationTable.getLon(station),
+						lat, lon) <= squaredRadius) {
+					commonStations[inRadius++] = station;
+				}
+			}
+			return Arrays.copyOf(commonStations, inRadius);
+		}
+
+		private int getSmallestIndexOverBound(float bound, IndexToFloatFunction coordinateGetter, int startIndex) {
+			int endIndex = stationTable.size();
+			while (endIndex - startIndex > 1) {
+				int middleIndex = (startIndex + endIndex) / 2;
+				if (coordinateGetter.applyAsFloat(middleIndex) > bound) {
+					endIndex = middleIndex;
+				} else {
+					startIndex = middleIndex;
+				}
+			}
+			return endIndex;
+		}
+	}
+
+	@FunctionalInterface
+	private interface IndexToFloatFunction {
+
+		float applyAsFloat(int index);
+	}
+
+}
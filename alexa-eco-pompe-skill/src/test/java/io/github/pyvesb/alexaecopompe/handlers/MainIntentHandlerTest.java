@@ -7,6 +7,9 @@ import static io.github.pyvesb.alexaecopompe.domain.GasType.GAZOLE;
 import static io.github.pyvesb.alexaecopompe.domain.GasType.SP95;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -14,6 +17,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static utils.InputBuilder.API_ACCESS_TOKEN;
@@ -34,7 +39,11 @@ import static utils.TestFactoryHelper.buildDynamicDisplayName;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.OffsetDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -61,13 +70,14 @@ import io.github.pyvesb.alexaecopompe.address.AddressInaccessibleException;
 import io.github.pyvesb.alexaecopompe.address.AddressNotSpecifiedException;
 import io.github.pyvesb.alexaecopompe.address.DeviceAddressProvider;
 import io.github.pyvesb.alexaecopompe.data.DataProvider;
-import io.github.pyvesb.alexaecopompe.data.NameProvider;
 import io.github.pyvesb.alexaecopompe.domain.GasStation;
 import io.github.pyvesb.alexaecopompe.domain.GasType;
 import io.github.pyvesb.alexaecopompe.domain.Price;
+import io.github.pyvesb.alexaecopompe.geography.CheapestGasStations;
 import io.github.pyvesb.alexaecopompe.geography.Position;
 import io.github.pyvesb.alexaecopompe.geography.PositionProvider;
 import io.github.pyvesb.alexaecopompe.utils.GasStationPriceSorter;
+import io.github.pyvesb.alexaecopompe.utils.PriceRanking;
 import utils.MissingResponse;
 
 @ExtendWith(MockitoExtension.class)
@@ -76,12 +86,11 @@ class MainIntentHandlerTest {
 	private static final LocalDate DATE = LocalDate.of(2018, Month.APRIL, 4);
 	private static final LocalDate TODAY = LocalDate.now();
 	private static final LocalDate YESTERDAY = LocalDate.now().minusDays(1);
+	private static final PriceRanking PRICE_RANKING = (price, updatedEpochDay) -> price;
 
 	@Mock
 	private DataProvider dataProvider;
 	@Mock
-	private NameProvider nameProvider;
-	@Mock
 	private PositionProvider positionProvider;
 	@Mock
 	private DeviceAddressProvider deviceAddressProvider;
@@ -92,8 +101,10 @@ class MainIntentHandlerTest {
 
 	@BeforeEach
 	void setUp() {
-		underTest = new MainIntentHandler(dataProvider, nameProvider, positionProvider, deviceAddressProvider,
-				gasStationPriceSorter);
+		underTest = new MainIntentHandler(dataProvider, positionProvider, deviceAddressProvider, gasStationPriceSorter,
+				1000L);
+		lenient().when(dataProvider.refreshIfStaleAsync()).thenReturn(completedFuture(null));
+		lenient().when(dataProvider.awaitData(any())).thenReturn(true);
 	}
 
 	@Test
@@ -104,10 +115,12 @@ class MainIntentHandlerTest {
 	@Test
 	@Tags({ @Tag("happy"), @Tag("department") })
 	void shouldReturnPriceOfCheapestGasStationForRequestedDepartmentAndGasType() {
-		GasStation gs1 = new GasStation("1", 43.5f, 4.0f, "73000", "Chambéry", "rue Favre", new Price(GAZOLE, DATE, 1.10f));
-		GasStation gs2 = new GasStation("2", 43.6f, 4.0f, "73000", "Chambéry", "rue Juiverie", new Price(SP95, DATE, 1.15f));
-		when(dataProvider.getGasStationsForDepartment(any())).thenReturn(asList(gs1, gs2));
-		when(nameProvider.getById(any())).thenReturn(Optional.of("Pyves Gas"));
+		GasStation gs1 = new GasStation("1", 43.5f, 4.0f, "73000", "Chambéry", "Rue Favre", new Price(GAZOLE, DATE, 1.10f))
+				.withName("Pyves Gas");
+		GasStation gs2 = new GasStation("2", 43.6f, 4.0f, "73000", "Chambéry", "Rue Juiverie", new Price(SP95, DATE, 1.15f));
+		when(gasStationPriceSorter.getPriceRanking()).thenReturn(PRICE_RANKING);
+		when(dataProvider.getCheapestGasStationsForDepartment(any(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(2, singletonMap(GAZOLE, asList(gs1))));
 
 		Response resp = underTest.handle(buildDepartmentInput(GAZOLE, "Savoie", "73")).orElseThrow(MissingResponse::new);
 
@@ -115,21 +128,21 @@ class MainIntentHandlerTest {
 		assertCard("Pyves Gas\nRue Favre, Chambéry\nGazole : 1€10", resp);
 		assertSpeech("Pyves Gas vend du gazole pour 1€10. Cette pompe est située Rue Favre à Chambéry, et a actualisé ses "
 				+ "tarifs le 2018-04-04.", resp);
-		verify(dataProvider).getGasStationsForDepartment("73");
-		verify(gasStationPriceSorter).sortGasStationsByIncreasingPricesForGasType(asList(gs1, gs2), GAZOLE);
-		verify(nameProvider).getById("1");
+		verify(dataProvider).getCheapestGasStationsForDepartment("73", PRICE_RANKING, 1, GAZOLE);
 	}
 
 	@Test
 	@Tags({ @Tag("happy"), @Tag("radius") })
 	void shouldReturnPriceOfCheapestGasStationForRequestedRadiusAndGasType() throws Exception {
 		Address address = new Address("54Bis rue Cler", "Paris", "75002");
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenReturn(address);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
 		Position position = new Position(43.6f, 4.08f);
-		when(positionProvider.getByAddress(any())).thenReturn(Optional.of(position));
-		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "rue Cler", new Price(SP95, TODAY, 1.10f));
-		when(dataProvider.getGasStationsWithinRadius(any(), anyInt())).thenReturn(asList(gs));
-		when(nameProvider.getById(any())).thenReturn(Optional.of("Pyves Gas"));
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.of(position)));
+		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "Rue Cler", new Price(SP95, TODAY, 1.10f))
+				.withName("Pyves Gas");
+		when(gasStationPriceSorter.getPriceRanking()).thenReturn(PRICE_RANKING);
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, singletonMap(SP95, asList(gs))));
 
 		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
 
@@ -137,19 +150,19 @@ class MainIntentHandlerTest {
 		assertCard("Pyves Gas\nRue Cler, Paris\nSans Plomb 95 : 1€10", resp);
 		assertSpeech("Pyves Gas vend du sans plomb 95 pour 1€10. Cette pompe est située Rue Cler à Paris, et a actualisé "
 				+ "ses tarifs aujourd'hui.", resp);
-		verify(deviceAddressProvider).fetchAddress(API_ENDPOINT, DEVICE_ID, API_ACCESS_TOKEN);
-		verify(positionProvider).getByAddress(address);
-		verify(dataProvider).getGasStationsWithinRadius(position, 10);
-		verify(gasStationPriceSorter).sortGasStationsByIncreasingPricesForGasType(asList(gs), SP95);
-		verify(nameProvider).getById("1");
+		verify(deviceAddressProvider).fetchAddressAsync(eq(API_ENDPOINT), eq(DEVICE_ID), eq(API_ACCESS_TOKEN), any());
+		verify(positionProvider).getByAddressAsync(eq(address), any());
+		verify(dataProvider).getCheapestGasStationsWithinRadius(position, 10, PRICE_RANKING, 1, SP95, E10);
 	}
 
 	@Test
 	@Tags({ @Tag("happy"), @Tag("radius"), @Tag("geolocation") })
 	void shouldReturnPriceOfCheapestGasStationForRequestedRadiusAndGasTypeUsingGeolocation() {
-		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "rue Cler", new Price(SP95, TODAY, 1.10f));
-		when(dataProvider.getGasStationsWithinRadius(any(), anyInt())).thenReturn(asList(gs));
-		when(nameProvider.getById(any())).thenReturn(Optional.of("Pyves Gas"));
+		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "Rue Cler", new Price(SP95, TODAY, 1.10f))
+				.withName("Pyves Gas");
+		when(gasStationPriceSorter.getPriceRanking()).thenReturn(PRICE_RANKING);
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, singletonMap(SP95, asList(gs))));
 		Coordinate coordinate = Coordinate.builder().withLatitudeInDegrees(43.6).withLongitudeInDegrees(4.08)
 				.withAccuracyInMeters(999d).build();
 		GeolocationState geolocation = GeolocationState.builder().withCoordinate(coordinate)
@@ -164,21 +177,21 @@ class MainIntentHandlerTest {
 		assertCard("Pyves Gas\nRue Cler, Paris\nSans Plomb 95 : 1€10", resp);
 		assertSpeech("Pyves Gas vend du sans plomb 95 pour 1€10. Cette pompe est située Rue Cler à Paris, et a actualisé "
 				+ "ses tarifs aujourd'hui.", resp);
-		verify(dataProvider).getGasStationsWithinRadius(position, 10);
-		verify(gasStationPriceSorter).sortGasStationsByIncreasingPricesForGasType(asList(gs), SP95);
-		verify(nameProvider).getById("1");
+		verify(dataProvider).getCheapestGasStationsWithinRadius(position, 10, PRICE_RANKING, 1, SP95, E10);
 	}
 
 	@Test
 	@Tags({ @Tag("happy"), @Tag("nearby") })
 	void shouldReturnPriceOfCheapestGasStationNearbyForRequestedGasType() throws Exception {
 		Address address = new Address("54 rue Cler", null, "75002");
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenReturn(address);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
 		Position position = new Position(43.6f, 4.08f);
-		when(positionProvider.getByAddress(any())).thenReturn(Optional.of(position));
-		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "rue Cler", new Price(SP95, TODAY, 1.10f));
-		when(dataProvider.getGasStationsWithinRadius(any(), anyInt())).thenReturn(asList(gs));
-		when(nameProvider.getById(any())).thenReturn(Optional.of("Pyves Gas"));
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.of(position)));
+		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "Rue Cler", new Price(SP95, TODAY, 1.10f))
+				.withName("Pyves Gas");
+		when(gasStationPriceSorter.getPriceRanking()).thenReturn(PRICE_RANKING);
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, singletonMap(SP95, asList(gs))));
 
 		Response resp = underTest.handle(buildNearbyInput(SP95)).orElseThrow(MissingResponse::new);
 
@@ -186,19 +199,19 @@ class MainIntentHandlerTest {
 		assertCard("Pyves Gas\nRue Cler, Paris\nSans Plomb 95 : 1€10", resp);
 		assertSpeech("Pyves Gas vend du sans plomb 95 pour 1€10. Cette pompe est située Rue Cler à Paris, et a actualisé "
 				+ "ses tarifs aujourd'hui.", resp);
-		verify(deviceAddressProvider).fetchAddress(API_ENDPOINT, DEVICE_ID, API_ACCESS_TOKEN);
-		verify(positionProvider).getByAddress(address);
-		verify(dataProvider).getGasStationsWithinRadius(position, 5);
-		verify(gasStationPriceSorter).sortGasStationsByIncreasingPricesForGasType(asList(gs), SP95);
-		verify(nameProvider).getById("1");
+		verify(deviceAddressProvider).fetchAddressAsync(eq(API_ENDPOINT), eq(DEVICE_ID), eq(API_ACCESS_TOKEN), any());
+		verify(positionProvider).getByAddressAsync(eq(address), any());
+		verify(dataProvider).getCheapestGasStationsWithinRadius(position, 5, PRICE_RANKING, 1, SP95, E10);
 	}
 
 	@Test
 	@Tags({ @Tag("happy"), @Tag("town") })
 	void shouldReturnPriceOfCheapestGasStationForRequestedTownAndGasType() {
-		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "rue Cler", new Price(SP95, TODAY, 1.10f));
-		when(dataProvider.getGasStationsForPostCodes(any())).thenReturn(asList(gs));
-		when(nameProvider.getById(any())).thenReturn(Optional.of("Pyves Gas"));
+		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "Rue Cler", new Price(SP95, TODAY, 1.10f))
+				.withName("Pyves Gas");
+		when(gasStationPriceSorter.getPriceRanking()).thenReturn(PRICE_RANKING);
+		when(dataProvider.getCheapestGasStationsForPostCodes(any(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, singletonMap(SP95, asList(gs))));
 
 		Response resp = underTest.handle(buildTownInput(SP95, "Paris", "c05,75001,75002")).orElseThrow(MissingResponse::new);
 
@@ -206,17 +219,17 @@ class MainIntentHandlerTest {
 		assertCard("Pyves Gas\nRue Cler, Paris\nSans Plomb 95 : 1€10", resp);
 		assertSpeech("Pyves Gas vend du sans plomb 95 pour 1€10. Cette pompe est située Rue Cler à Paris, et a actualisé "
 				+ "ses tarifs aujourd'hui.", resp);
-		verify(dataProvider).getGasStationsForPostCodes("75001", "75002");
-		verify(gasStationPriceSorter).sortGasStationsByIncreasingPricesForGasType(asList(gs), SP95);
-		verify(nameProvider).getById("1");
+		verify(dataProvider).getCheapestGasStationsForPostCodes(new String[] { "75001", "75002" }, PRICE_RANKING, 1,
+				SP95, E10);
 	}
 
 	@Test
 	@Tags({ @Tag("happy"), @Tag("town") })
 	void shouldReturnPriceOfCheapestGasStationForRequestedTownAndGasTypeIfGasStationNameIsMissing() {
-		GasStation gs = new GasStation("1", 43.5f, 4.0f, "75002", "Paris", "rue Cler", new Price(SP95, YESTERDAY, 1.10f));
-		when(dataProvider.getGasStationsForPostCodes(any())).thenReturn(asList(gs));
-		when(nameProvider.getById(any())).thenReturn(Optional.empty());
+		GasStation gs = new GasStation("1", 43.5f, 4.0f, "75002", "Paris", "Rue Cler", new Price(SP95, YESTERDAY, 1.10f));
+		when(gasStationPriceSorter.getPriceRanking()).thenReturn(PRICE_RANKING);
+		when(dataProvider.getCheapestGasStationsForPostCodes(any(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, singletonMap(SP95, asList(gs))));
 
 		Response resp = underTest.handle(buildTownInput(SP95, "Paris", "c05,75001,75002")).orElseThrow(MissingResponse::new);
 
@@ -224,17 +237,21 @@ class MainIntentHandlerTest {
 		assertCard("Pompe à essence\nRue Cler, Paris\nSans Plomb 95 : 1€10", resp);
 		assertSpeech("Une pompe vend du sans plomb 95 pour 1€10. Elle est située Rue Cler à Paris, et a actualisé ses "
 				+ "tarifs hier.", resp);
-		verify(dataProvider).getGasStationsForPostCodes("75001", "75002");
-		verify(gasStationPriceSorter).sortGasStationsByIncreasingPricesForGasType(asList(gs), SP95);
-		verify(nameProvider).getById("1");
+		verify(dataProvider).getCheapestGasStationsForPostCodes(new String[] { "75001", "75002" }, PRICE_RANKING, 1,
+				SP95, E10);
 	}
 
 	@Test
 	@Tags({ @Tag("happy"), @Tag("town") })
 	void shouldSuggestE10AsAnAlternativeIfNoGasStationsSellAnySP95() {
-		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "rue Cler", new Price(E10, DATE, 1.10f));
-		when(dataProvider.getGasStationsForPostCodes(any())).thenReturn(asList(gs));
-		when(nameProvider.getById(any())).thenReturn(Optional.of("Pyves Gas"));
+		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "Rue Cler", new Price(E10, DATE, 1.10f))
+				.withName("Pyves Gas");
+		Map<GasType, List<GasStation>> cheapestByGasType = new EnumMap<>(GasType.class);
+		cheapestByGasType.put(SP95, emptyList());
+		cheapestByGasType.put(E10, asList(gs));
+		when(gasStationPriceSorter.getPriceRanking()).thenReturn(PRICE_RANKING);
+		when(dataProvider.getCheapestGasStationsForPostCodes(any(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, cheapestByGasType));
 
 		Response resp = underTest.handle(buildTownInput(SP95, "Paris", "c05,75001,75002")).orElseThrow(MissingResponse::new);
 
@@ -242,18 +259,39 @@ class MainIntentHandlerTest {
 		assertCard("Pyves Gas\nRue Cler, Paris\nE10 : 1€10", resp);
 		assertSpeech("Je n'ai pas trouvé de pompe vendant du sans plomb 95. Cependant, Pyves Gas vend de l'E10 pour 1€10. "
 				+ "Cette pompe est située Rue Cler à Paris, et a actualisé ses tarifs le 2018-04-04.", resp);
-		verify(dataProvider).getGasStationsForPostCodes("75001", "75002");
-		verify(gasStationPriceSorter).sortGasStationsByIncreasingPricesForGasType(asList(gs), SP95);
-		verify(gasStationPriceSorter).sortGasStationsByIncreasingPricesForGasType(asList(gs), E10);
-		verify(nameProvider).getById("1");
+		verify(dataProvider).getCheapestGasStationsForPostCodes(new String[] { "75001", "75002" }, PRICE_RANKING, 1,
+				SP95, E10);
+	}
+
+	@Test
+	@Tags({ @Tag("happy"), @Tag("radius") })
+	void shouldSuggestE10AsAnAlternativeIfNoGasStationsSellAnySP95InRequestedRadius() throws Exception {
+		Address address = new Address("54Bis rue Cler", "Paris", "75002");
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
+		Position position = new Position(43.6f, 4.08f);
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.of(position)));
+		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75002", "Paris", "Rue Cler", new Price(E10, DATE, 1.10f))
+				.withName("Pyves Gas");
+		Map<GasType, List<GasStation>> cheapestByGasType = new EnumMap<>(GasType.class);
+		cheapestByGasType.put(SP95, emptyList());
+		cheapestByGasType.put(E10, asList(gs));
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, cheapestByGasType));
+
+		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
+
+		assertTrue(resp.getShouldEndSession());
+		assertCard("Pyves Gas\nRue Cler, Paris\nE10 : 1€10", resp);
+		assertSpeech("Je n'ai pas trouvé de pompe vendant du sans plomb 95. Cependant, Pyves Gas vend de l'E10 pour 1€10. "
+				+ "Cette pompe est située Rue Cler à Paris, et a actualisé ses tarifs le 2018-04-04.", resp);
 	}
 
 	@ParameterizedTest
 	@EnumSource(GasType.class)
 	@Tags({ @Tag("not-found"), @Tag("town") })
 	void shouldReturnNoGasStationFoundForTypeIfNoGasStationsSellTheRequestedGasTypeInRequestedTown(GasType gasType) {
-		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75001", "paris", "Place Vendôme");
-		when(dataProvider.getGasStationsForPostCodes(any())).thenReturn(asList(gs));
+		when(dataProvider.getCheapestGasStationsForPostCodes(any(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, emptyMap()));
 
 		Response resp = underTest.handle(buildTownInput(gasType, "Paris", "c05,75001")).orElseThrow(MissingResponse::new);
 
@@ -269,11 +307,11 @@ class MainIntentHandlerTest {
 	void shouldReturnNoGasStationFoundForTypeIfNoGasStationsSellTheRequestedGasTypeInRequestedRadius(GasType gasType)
 			throws Exception {
 		Address address = new Address("54Bis rue Cler", "Paris", "75002");
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenReturn(address);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
 		Position position = new Position(43.6f, 4.08f);
-		when(positionProvider.getByAddress(any())).thenReturn(Optional.of(position));
-		GasStation gs = new GasStation("1", 43.561f, 4.076f, "75001", "paris", "Place Vendôme");
-		when(dataProvider.getGasStationsWithinRadius(any(), anyInt())).thenReturn(asList(gs));
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.of(position)));
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, emptyMap()));
 
 		Response resp = underTest.handle(buildRadiusInput(gasType, "10")).orElseThrow(MissingResponse::new);
 
@@ -286,7 +324,8 @@ class MainIntentHandlerTest {
 	@Test
 	@Tags({ @Tag("not-found"), @Tag("town") })
 	void shouldReturnNoGasStationFoundIfNoGasStationsInRequestedTown() {
-		when(dataProvider.getGasStationsForPostCodes(any())).thenReturn(emptyList());
+		when(dataProvider.getCheapestGasStationsForPostCodes(any(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(0, emptyMap()));
 
 		Response resp = underTest.handle(buildTownInput(GAZOLE, "Paris", "c05,75003")).orElseThrow(MissingResponse::new);
 
@@ -299,10 +338,11 @@ class MainIntentHandlerTest {
 	@Tags({ @Tag("not-found"), @Tag("radius") })
 	void shouldReturnNoGasStationFoundIfNoGasStationsInRequestedRadius() throws Exception {
 		Address address = new Address("54Bis rue Cler", "Paris", "75002");
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenReturn(address);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
 		Position position = new Position(43.6f, 4.08f);
-		when(positionProvider.getByAddress(any())).thenReturn(Optional.of(position));
-		when(dataProvider.getGasStationsWithinRadius(any(), anyInt())).thenReturn(emptyList());
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.of(position)));
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(0, emptyMap()));
 
 		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
 
@@ -316,10 +356,11 @@ class MainIntentHandlerTest {
 	@Tags({ @Tag("not-found"), @Tag("radius") })
 	void shouldReturnNoGasStationFoundIfNoGasStationsInRequestedMaximumRadius() throws Exception {
 		Address address = new Address("54Bis rue Cler", "Paris", "75002");
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenReturn(address);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
 		Position position = new Position(43.6f, 4.08f);
-		when(positionProvider.getByAddress(any())).thenReturn(Optional.of(position));
-		when(dataProvider.getGasStationsWithinRadius(any(), anyInt())).thenReturn(emptyList());
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.of(position)));
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(0, emptyMap()));
 
 		Response resp = underTest.handle(buildRadiusInput(SP95, "50")).orElseThrow(MissingResponse::new);
 
@@ -329,6 +370,76 @@ class MainIntentHandlerTest {
 				+ "de département.", resp);
 	}
 
+	@Test
+	@Tags({ @Tag("nearest"), @Tag("radius") })
+	void shouldReturnNearestGasStationSellingGasTypeIfNoneInRequestedRadius() throws Exception {
+		Address address = new Address("54Bis rue Cler", "Paris", "75002");
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
+		Position position = new Position(43.6f, 4.08f);
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.of(position)));
+		GasStation gs2 = new GasStation("2", 4390000f, 408000f, "75002", "Paris", "Rue Cler", new Price(GAZOLE, DATE, 1.10f))
+				.withName("Pyves Gas");
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, singletonMap(GAZOLE, emptyList())));
+		when(dataProvider.getNearestGasStations(any(), any(), anyInt())).thenReturn(asList(gs2));
+
+		Response resp = underTest.handle(buildRadiusInput(GAZOLE, "10")).orElseThrow(MissingResponse::new);
+
+		assertTrue(resp.getShouldEndSession());
+		assertCard("Pyves Gas\nRue Cler, Paris\nGazole : 1€10", resp);
+		assertSpeech("Je n'ai pas trouvé de pompe vendant du gazole à moins de 10 kilomètres. Cependant, Pyves Gas vend "
+				+ "du gazole pour 1€10 à 33 kilomètres. Cette pompe est située Rue Cler à Paris, et a actualisé ses "
+				+ "tarifs le 2018-04-04.", resp);
+		verify(dataProvider).getNearestGasStations(position, GAZOLE, 1);
+	}
+
+	@Test
+	@Tags({ @Tag("nearest"), @Tag("radius") })
+	void shouldNotReturnNearestGasStationFurtherThanMaximumRadius() throws Exception {
+		Address address = new Address("54Bis rue Cler", "Paris", "75002");
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
+		Position position = new Position(43.6f, 4.08f);
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.of(position)));
+		GasStation gs2 = new GasStation("2", 4500000f, 408000f, "69001", "Lyon", "Rue Juiverie", new Price(GAZOLE, DATE, 1.10f))
+				.withName("Pyves Gas");
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, singletonMap(GAZOLE, emptyList())));
+		when(dataProvider.getNearestGasStations(any(), any(), anyInt())).thenReturn(asList(gs2));
+
+		Response resp = underTest.handle(buildRadiusInput(GAZOLE, "10")).orElseThrow(MissingResponse::new);
+
+		assertTrue(resp.getShouldEndSession());
+		assertNull(resp.getCard());
+		assertSpeech("Je n'ai pas trouvé de pompe vendant du gazole à moins de 10 kilomètres. Essayez un autre carburant "
+				+ "ou une distance plus grande.", resp);
+	}
+
+	@Test
+	@Tags({ @Tag("nearest"), @Tag("radius") })
+	void shouldReturnNearestE10GasStationIfNoSP95GasStationNearby() throws Exception {
+		Address address = new Address("54Bis rue Cler", "Paris", "75002");
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
+		Position position = new Position(43.6f, 4.08f);
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.of(position)));
+		GasStation gs2 = new GasStation("2", 4390000f, 408000f, "75002", "Paris", "Rue Cler", new Price(E10, DATE, 1.10f))
+				.withName("Pyves Gas");
+		Map<GasType, List<GasStation>> cheapest = new EnumMap<>(GasType.class);
+		cheapest.put(SP95, emptyList());
+		cheapest.put(E10, emptyList());
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, cheapest));
+		when(dataProvider.getNearestGasStations(position, SP95, 1)).thenReturn(emptyList());
+		when(dataProvider.getNearestGasStations(position, E10, 1)).thenReturn(asList(gs2));
+
+		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
+
+		assertTrue(resp.getShouldEndSession());
+		assertCard("Pyves Gas\nRue Cler, Paris\nE10 : 1€10", resp);
+		assertSpeech("Je n'ai pas trouvé de pompe vendant du sans plomb 95 à moins de 10 kilomètres. Cependant, Pyves Gas "
+				+ "vend de l'E10 pour 1€10 à 33 kilomètres. Cette pompe est située Rue Cler à Paris, et a actualisé ses "
+				+ "tarifs le 2018-04-04.", resp);
+	}
+
 	@TestFactory
 	@Tags({ @Tag("unsupported-gas"), @Tag("town"), @Tag("radius") })
 	Stream<DynamicTest> shouldReturnUnsupportedGasTypeIfGasTypeCouldNotBeMatched() {
@@ -361,7 +472,8 @@ class MainIntentHandlerTest {
 	@Test
 	@Tags({ @Tag("address-inaccessible"), @Tag("radius") })
 	void shouldReturnErrorIfAddressInaccessibleExceptionIsThrown() throws Exception {
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenThrow(AddressInaccessibleException.class);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any()))
+				.thenReturn(failedFuture(new AddressInaccessibleException("Unexpected response code 500")));
 
 		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
 
@@ -374,7 +486,8 @@ class MainIntentHandlerTest {
 	@Test
 	@Tags({ @Tag("address-not-specified"), @Tag("radius") })
 	void shouldReturnErrorIfAddressNotSpecifiedExceptionIsThrown() throws Exception {
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenThrow(AddressNotSpecifiedException.class);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any()))
+				.thenReturn(failedFuture(new AddressNotSpecifiedException()));
 		
 		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
 		
@@ -387,7 +500,8 @@ class MainIntentHandlerTest {
 	@Test
 	@Tags({ @Tag("address-forbidden"), @Tag("radius") })
 	void shouldRequestAddressPermissionsIfAddressForbiddenExceptionIsThrown() throws Exception {
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenThrow(AddressForbiddenException.class);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any()))
+				.thenReturn(failedFuture(new AddressForbiddenException()));
 
 		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
 
@@ -400,11 +514,12 @@ class MainIntentHandlerTest {
 	@Test
 	@Tags({ @Tag("address-forbidden"), @Tag("radius"), @Tag("geolocation") })
 	void shouldRequestAddressPermissionsIfGeolocationUnavailableAndAddressForbiddenExceptionIsThrown() throws Exception {
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenThrow(AddressForbiddenException.class);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any()))
+				.thenReturn(failedFuture(new AddressForbiddenException()));
 
 		Response resp = underTest.handle(buildRadiusGeoInput(SP95, "10", null, GRANTED)).orElseThrow(MissingResponse::new);
 
-		verify(deviceAddressProvider).fetchAddress(API_ENDPOINT, DEVICE_ID, API_ACCESS_TOKEN);
+		verify(deviceAddressProvider).fetchAddressAsync(eq(API_ENDPOINT), eq(DEVICE_ID), eq(API_ACCESS_TOKEN), any());
 		assertTrue(resp.getShouldEndSession());
 		assertCardWithPermissions("read::alexa:device:all:address", resp);
 		assertSpeech("Votre appareil n'a pas transmis de coordonnées GPS. Le service de localisation est-il activé ? Je "
@@ -427,19 +542,19 @@ class MainIntentHandlerTest {
 	@Tags({ @Tag("no-coordinate"), @Tag("radius"), @Tag("geolocation") })
 	void shouldFetchAddressIfDeviceGeolocationCompatibleButCoordinateUnavailable() throws Exception {
 		Address address = new Address("54Bis rue Cler", "Paris", "75002");
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenReturn(address);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
 		GeolocationState geolocation = GeolocationState.builder().build();
 
 		underTest.handle(buildRadiusGeoInput(SP95, "10", geolocation, GRANTED)).orElseThrow(MissingResponse::new);
 
-		verify(deviceAddressProvider).fetchAddress(API_ENDPOINT, DEVICE_ID, API_ACCESS_TOKEN);
+		verify(deviceAddressProvider).fetchAddressAsync(eq(API_ENDPOINT), eq(DEVICE_ID), eq(API_ACCESS_TOKEN), any());
 	}
 
 	@Test
 	@Tags({ @Tag("coordinate-imprecise"), @Tag("radius"), @Tag("geolocation") })
 	void shouldFetchAddressIfDeviceGeolocationCompatibleButCoordinateImprecise() throws Exception {
 		Address address = new Address("54Bis rue Cler", "Paris", "75002");
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenReturn(address);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
 		Coordinate coordinate = Coordinate.builder().withLatitudeInDegrees(43.6).withLongitudeInDegrees(4.08)
 				.withAccuracyInMeters(1001d).build();
 		GeolocationState geolocation = GeolocationState.builder().withCoordinate(coordinate)
@@ -447,14 +562,14 @@ class MainIntentHandlerTest {
 
 		underTest.handle(buildRadiusGeoInput(SP95, "10", geolocation, GRANTED)).orElseThrow(MissingResponse::new);
 
-		verify(deviceAddressProvider).fetchAddress(API_ENDPOINT, DEVICE_ID, API_ACCESS_TOKEN);
+		verify(deviceAddressProvider).fetchAddressAsync(eq(API_ENDPOINT), eq(DEVICE_ID), eq(API_ACCESS_TOKEN), any());
 	}
 
 	@Test
 	@Tags({ @Tag("coordinate-outdated"), @Tag("radius"), @Tag("geolocation") })
 	void shouldFetchAddressIfDeviceGeolocationCompatibleButCoordinateOutdated() throws Exception {
 		Address address = new Address("54Bis rue Cler", "Paris", "75002");
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenReturn(address);
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
 		Coordinate coordinate = Coordinate.builder().withLatitudeInDegrees(43.6).withLongitudeInDegrees(4.08)
 				.withAccuracyInMeters(10d).build();
 		GeolocationState geolocation = GeolocationState.builder().withCoordinate(coordinate)
@@ -462,7 +577,7 @@ class MainIntentHandlerTest {
 
 		underTest.handle(buildRadiusGeoInput(SP95, "10", geolocation, GRANTED)).orElseThrow(MissingResponse::new);
 
-		verify(deviceAddressProvider).fetchAddress(API_ENDPOINT, DEVICE_ID, API_ACCESS_TOKEN);
+		verify(deviceAddressProvider).fetchAddressAsync(eq(API_ENDPOINT), eq(DEVICE_ID), eq(API_ACCESS_TOKEN), any());
 	}
 
 	@Test
@@ -488,8 +603,8 @@ class MainIntentHandlerTest {
 	@Tags({ @Tag("unknown-position"), @Tag("radius") })
 	void shouldReturnUnknownPositionIfThePositionCouldNotBeDetermined() throws Exception {
 		Address address = new Address("54 rue Cler", "Paris", "75002");
-		when(deviceAddressProvider.fetchAddress(any(), any(), any())).thenReturn(address);
-		when(positionProvider.getByAddress(any())).thenReturn(Optional.empty());
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(completedFuture(Optional.empty()));
 
 		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
 
@@ -499,4 +614,75 @@ class MainIntentHandlerTest {
 				+ "votre Amazon Echo. Réessayez plus tard, ou bien précisez un nom de ville ou de département.", resp);
 	}
 
+	@Test
+	@Tags({ @Tag("unknown-position"), @Tag("radius") })
+	void shouldReturnUnknownPositionIfThePositionIsNotLocatedBeforeDeadline() throws Exception {
+		Address address = new Address("54 rue Cler", "Paris", "75002");
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(new CompletableFuture<>());
+
+		long startMillis = System.currentTimeMillis();
+		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
+
+		assertTrue(System.currentTimeMillis() - startMillis < 5000L);
+		assertSpeech("Je n'ai pas réussi à déterminer votre position géographique avec l'adresse renseignée dans "
+				+ "votre Amazon Echo. Réessayez plus tard, ou bien précisez un nom de ville ou de département.", resp);
+		// The data refresh was started whilst the device was being located.
+		verify(dataProvider).refreshIfStaleAsync();
+	}
+
+	@Test
+	@Tags({ @Tag("degraded-position"), @Tag("radius") })
+	void shouldFallBackToPostCodePositionIfThePositionIsNotLocatedBeforeDeadline() throws Exception {
+		Address address = new Address("54 rue Cler", "Paris", "75002");
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
+		when(positionProvider.getByAddressAsync(any(), any())).thenReturn(new CompletableFuture<>());
+		Position postCodePosition = new Position(48.86f, 2.34f);
+		when(dataProvider.getPostCodePosition("75002")).thenReturn(Optional.of(postCodePosition));
+		GasStation gs = new GasStation("1", 48.861f, 2.341f, "75002", "Paris", "Rue Cler", new Price(SP95, TODAY, 1.10f))
+				.withName("Pyves Gas");
+		when(gasStationPriceSorter.getPriceRanking()).thenReturn(PRICE_RANKING);
+		when(dataProvider.getCheapestGasStationsWithinRadius(any(), anyInt(), any(), anyInt(), any()))
+				.thenReturn(new CheapestGasStations(1, singletonMap(SP95, asList(gs))));
+
+		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
+
+		assertTrue(resp.getShouldEndSession());
+		assertCard("Pyves Gas\nRue Cler, Paris\nSans Plomb 95 : 1€10", resp);
+		verify(dataProvider).getCheapestGasStationsWithinRadius(postCodePosition, 10, PRICE_RANKING, 1, SP95, E10);
+	}
+
+	@Test
+	@Tags({ @Tag("unavailable-data"), @Tag("town") })
+	void shouldReturnUnavailableDataIfNoDataIsRetrievedBeforeDeadlineForTown() {
+		when(dataProvider.awaitData(any())).thenReturn(false);
+
+		Response resp = underTest.handle(buildTownInput(SP95, "Paris", "c05,75001,75002")).orElseThrow(MissingResponse::new);
+
+		assertTrue(resp.getShouldEndSession());
+		assertSpeech("Je n'ai pas pu récupérer les prix des carburants. Réessayez plus tard.", resp);
+		verify(dataProvider).refreshIfStaleAsync();
+	}
+
+	@Test
+	@Tags({ @Tag("unavailable-data"), @Tag("radius") })
+	void shouldReturnUnavailableDataIfNoDataIsRetrievedBeforeDeadline() throws Exception {
+		Address address = new Address("54 rue Cler", "Paris", "75002");
+		when(deviceAddressProvider.fetchAddressAsync(any(), any(), any(), any())).thenReturn(completedFuture(address));
+		when(positionProvider.getByAddressAsync(any(), any()))
+				.thenReturn(completedFuture(Optional.of(new Position(2f, 3f))));
+		when(dataProvider.awaitData(any())).thenReturn(false);
+
+		Response resp = underTest.handle(buildRadiusInput(SP95, "10")).orElseThrow(MissingResponse::new);
+
+		assertTrue(resp.getShouldEndSession());
+		assertSpeech("Je n'ai pas pu récupérer les prix des carburants. Réessayez plus tard.", resp);
+	}
+
+	private static <T> CompletableFuture<T> failedFuture(Throwable failure) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(failure);
+		return future;
+	}
+
 }
@@ -0,0 +1,129 @@
+package io.github.pyvesb.alexaecopompe.http;
+
+import static io.github.pyvesb.alexaecopompe.http.CircuitBreaker.State.CLOSED;
+import static io.github.pyvesb.alexaecopompe.http.CircuitBreaker.State.HALF_OPEN;
+import static io.github.pyvesb.alexaecopompe.http.CircuitBreaker.State.OPEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CircuitBreakerTest {
+
+	private static final long INITIAL_TIME = 1523318400000L;
+
+	@Mock
+	private Clock clock;
+
+	private CircuitBreaker underTest;
+
+	@BeforeEach
+	void setUp() {
+		lenient().when(clock.millis()).thenReturn(INITIAL_TIME);
+		underTest = new CircuitBreaker("test", 4, 3, 0.5, 100L, 1000L, clock);
+	}
+
+	@Test
+	void shouldStayClosedUntilMinimumNumberOfCallsRecorded() {
+		recordCalls(true, 2);
+
+		assertEquals(CLOSED, underTest.getState());
+		assertEquals(1d, underTest.getFailureRate());
+		assertTrue(underTest.tryAcquirePermission());
+	}
+
+	@Test
+	void shouldOpenAndRejectCallsOnceFailureRateReached() {
+		recordCalls(false, 1);
+		recordCalls(true, 2);
+
+		assertEquals(OPEN, underTest.getState());
+		assertFalse(underTest.tryAcquirePermission());
+		assertFalse(underTest.tryAcquirePermission());
+		assertEquals(2, underTest.getRejectedCount());
+		assertEquals(1, underTest.getTransitionCount(OPEN));
+	}
+
+	@Test
+	void shouldCountSlowCallsAsBadOnes() {
+		underTest.record(false, 99L);
+		underTest.record(false, 100L);
+		underTest.record(false, 500L);
+
+		assertEquals(OPEN, underTest.getState());
+	}
+
+	@Test
+	void shouldOnlyConsiderMostRecentCalls() {
+		recordCalls(true, 1);
+		recordCalls(false, 4);
+		recordCalls(true, 1);
+
+		assertEquals(CLOSED, underTest.getState());
+		assertEquals(0.25d, underTest.getFailureRate());
+	}
+
+	@Test
+	void shouldLetSingleProbeThroughAndCloseIfItSucceeds() {
+		recordCalls(true, 3);
+		when(clock.millis()).thenReturn(INITIAL_TIME + 999L);
+		assertFalse(underTest.tryAcquirePermission());
+
+		when(clock.millis()).thenReturn(INITIAL_TIME + 1000L);
+		assertTrue(underTest.tryAcquirePermission());
+		assertEquals(HALF_OPEN, underTest.getState());
+		assertFalse(underTest.tryAcquirePermission());
+
+		underTest.record(false, 10L);
+		assertEquals(CLOSED, underTest.getState());
+		assertEquals(0d, underTest.getFailureRate());
+		assertTrue(underTest.tryAcquirePermission());
+		assertEquals(1, underTest.getTransitionCount(HALF_OPEN));
+		assertEquals(1, underTest.getTransitionCount(CLOSED));
+	}
+
+	@Test
+	void shouldOpenAgainIfProbeFails() {
+		recordCalls(true, 3);
+		when(clock.millis()).thenReturn(INITIAL_TIME + 1000L);
+		assertTrue(underTest.tryAcquirePermission());
+
+		underTest.record(true, 10L);
+
+		assertEquals(OPEN, underTest.getState());
+		assertFalse(underTest.tryAcquirePermission());
+		when(clock.millis()).thenReturn(INITIAL_TIME + 2000L);
+		assertTrue(underTest.tryAcquirePermission());
+		assertEquals(2, underTest.getTransitionCount(OPEN));
+	}
+
+	@Test
+	void shouldLetAnotherProbeThroughIfProbeReleased() {
+		recordCalls(true, 3);
+		when(clock.millis()).thenReturn(INITIAL_TIME + 1000L);
+		assertTrue(underTest.tryAcquirePermission());
+
+		underTest.release();
+
+		assertEquals(HALF_OPEN, underTest.getState());
+		assertTrue(underTest.tryAcquirePermission());
+		assertFalse(underTest.tryAcquirePermission());
+	}
+
+	private void recordCalls(boolean failed, int count) {
+		for (int i = 0; i < count; ++i) {
+			underTest.record(failed, 10L);
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package io.github.pyvesb.alexaecopompe.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static java.net.HttpURLConnection.HTTP_OK;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.tomakehurst.wiremock.WireMockServer;
+
+/**
+ * Compares the outbound I/O of address-based radius requests sent through the shared HttpClient against the previous
+ * implementation, which opened a new URLConnection per call and blocked on each of them in turn. A request fetches the
+ * device address and then geocodes the full address, one in ten of which are unknown to the geocoding service. The
+ * previous implementation only then geocoded the simplified address, whereas the futures returned by the client allow
+ * sending both lookups together. Endpoints are served by a local WireMock stand-in with log-normal random delays, and
+ * a single thread sends requests, like a Lambda container. Look at the p0.99 percentiles of the sample times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpClientBenchmark {
+
+	private static final ObjectReader READER = new ObjectMapper().reader();
+	private static final String ADDRESS_URL = "http://localhost:8089/v1/devices/%d/settings/address";
+	private static final String FULL_POSITION_URL = "http://localhost:8089/search?q=full-%d";
+	private static final String SIMPLIFIED_POSITION_URL = "http://localhost:8089/search?q=simplified-%d";
+
+	private final WireMockServer wireMockServer = new WireMockServer(options().port(8089));
+	private final Map<String, String> headers = new HashMap<>();
+	private HttpClient httpClient;
+
+	@Setup
+	public void setUp() {
+		wireMockServer.start();
+		wireMockServer.stubFor(get(urlMatching("/v1/devices/.*"))
+				.willReturn(aResponse()
+						.withStatus(HTTP_OK)
+						.withBody("{\"addressLine1\": \"410 Terry Ave North\", \"city\": \"Seattle\"}")
+						.withLogNormalRandomDelay(5, 0.5)));
+		wireMockServer.stubFor(get(urlMatching("/search.*"))
+				.willReturn(aResponse()
+						.withStatus(HTTP_OK)
+						.withBody("[{\"lat\": \"48.8674634\", \"lon\": \"2.32942811682519\"}]")
+						.withLogNormalRandomDelay(5, 0.5)));
+		wireMockServer.stubFor(get(urlMatching("/search\\?q=full-[0-9]*0"))
+				.willReturn(aResponse()
+						.withStatus(HTTP_OK)
+						.withBody("[]")
+						.withLogNormalRandomDelay(5, 0.5)));
+		headers.put("Accept", "application/json");
+		httpClient = new HttpClient(2000);
+	}
+
+	@TearDown
+	public void tearDown() {
+		wireMockServer.stop();
+	}
+
+	@Benchmark
+	public JsonNode sharedClient() throws IOException {
+		int device = ThreadLocalRandom.current().nextInt(1000);
+		parse(httpClient.get(String.format(ADDRESS_URL, device), headers).join());
+		CompletableFuture<HttpResponse> full = httpClient.get(String.format(FULL_POSITION_URL, device), headers);
+		CompletableFuture<HttpResponse> simplified = httpClient.get(String.format(SIMPLIFIED_POSITION_URL, device),
+				headers);
+		JsonNode position = parse(full.join());
+		return position.size() > 0 ? position : parse(simplified.join());
+	}
+
+	@Benchmark
+	public JsonNode connectionPerCall() throws IOException {
+		int device = ThreadLocalRandom.current().nextInt(1000);
+		fetch(String.format(ADDRESS_URL, device));
+		JsonNode position = fetch(String.format(FULL_POSITION_URL, device));
+		return position.size() > 0 ? position : fetch(String.format(SIMPLIFIED_POSITION_URL, device));
+	}
+
+	private static JsonNode parse(HttpResponse response) throws IOException {
+		return READER.readTree(new ByteArrayInputStream(response.getBody()));
+	}
+
+	private JsonNode fetch(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		headers.forEach(connection::setRequestProperty);
+		connection.setConnectTimeout(2000);
+		connection.setReadTimeout(2000);
+		connection.getResponseCode();
+		try (InputStream inputStream = connection.getInputStream()) {
+			return READER.readTree(inputStream);
+		}
+	}
+
+}
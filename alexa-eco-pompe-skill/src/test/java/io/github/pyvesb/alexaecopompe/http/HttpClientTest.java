@@ -0,0 +1,254 @@
+package io.github.pyvesb.alexaecopompe.http;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static java.net.HttpURLConnection.HTTP_INTERNAL_ERROR;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformer;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+
+import io.github.pyvesb.alexaecopompe.utils.Deadline;
+
+class HttpClientTest {
+
+	private static final String URL = "http://localhost:8089/path";
+
+	private final InFlightCounter inFlightCounter = new InFlightCounter(2);
+	private final WireMockServer wireMockServer = new WireMockServer(options().port(8089).extensions(inFlightCounter));
+
+	private HttpClient underTest;
+
+	@BeforeEach
+	void setUp() {
+		wireMockServer.start();
+		WireMock.configureFor("localhost", wireMockServer.port());
+		underTest = new HttpClient(1000, 2000, 2000, 2);
+	}
+
+	@AfterEach
+	void tearDown() {
+		wireMockServer.stop();
+	}
+
+	@Test
+	void shouldReturnStatusCodeAndBodyWithRequestHeaders() throws Exception {
+		wireMockServer.stubFor(get(urlEqualTo("/path"))
+				.withHeader("Accept", equalTo("application/json"))
+				.willReturn(aResponse()
+						.withBody("[]")
+						.withStatus(HTTP_OK)));
+
+		HttpResponse response = underTest.get(URL, singletonMap("Accept", "application/json")).get();
+
+		assertEquals(HTTP_OK, response.getStatusCode());
+		assertArrayEquals("[]".getBytes(UTF_8), response.getBody());
+	}
+
+	@Test
+	void shouldReturnBodyOfErrorResponses() throws Exception {
+		wireMockServer.stubFor(get(urlEqualTo("/path"))
+				.willReturn(aResponse()
+						.withBody("error")
+						.withStatus(HTTP_INTERNAL_ERROR)));
+
+		HttpResponse response = underTest.get(URL, emptyMap()).get();
+
+		assertEquals(HTTP_INTERNAL_ERROR, response.getStatusCode());
+		assertArrayEquals("error".getBytes(UTF_8), response.getBody());
+	}
+
+	@Test
+	void shouldFailWithIOExceptionIfResponseEmpty() {
+		wireMockServer.stubFor(get(urlEqualTo("/path"))
+				.willReturn(aResponse()
+						.withFault(Fault.EMPTY_RESPONSE)));
+
+		ExecutionException exception = assertThrowsExecutionException(underTest.get(URL, emptyMap()));
+
+		assertTrue(exception.getCause() instanceof IOException);
+	}
+
+	@Test
+	void shouldFailWithTimeoutExceptionIfTotalTimeoutElapses() {
+		underTest = new HttpClient(500, 1000, 200, 2);
+		wireMockServer.stubFor(get(urlEqualTo("/path"))
+				.willReturn(aResponse()
+						.withFixedDelay(800)
+						.withStatus(HTTP_OK)));
+
+		long startMillis = System.currentTimeMillis();
+		ExecutionException exception = assertThrowsExecutionException(underTest.get(URL, emptyMap()));
+
+		assertTrue(exception.getCause() instanceof TimeoutException);
+		assertFalse(exception.getCause() instanceof DeadlineExceededException);
+		assertTrue(System.currentTimeMillis() - startMillis < 800L);
+	}
+
+	@Test
+	void shouldFailWithDeadlineExceededExceptionIfDeadlineExpiresBeforeTotalTimeout() {
+		wireMockServer.stubFor(get(urlEqualTo("/path"))
+				.willReturn(aResponse()
+						.withFixedDelay(1500)
+						.withStatus(HTTP_OK)));
+
+		long startMillis = System.currentTimeMillis();
+		ExecutionException exception = assertThrowsExecutionException(
+				underTest.get(URL, emptyMap(), Deadline.after(200L)));
+
+		assertTrue(exception.getCause() instanceof DeadlineExceededException);
+		assertTrue(System.currentTimeMillis() - startMillis < 1500L);
+	}
+
+	@Test
+	void shouldReleasePermitOfTimedOutRequest() throws Exception {
+		underTest = new HttpClient(1000, 20000, 300, 1);
+		wireMockServer.stubFor(get(urlEqualTo("/slow"))
+				.willReturn(aResponse()
+						.withFixedDelay(10000)
+						.withStatus(HTTP_OK)));
+		wireMockServer.stubFor(get(urlEqualTo("/path"))
+				.willReturn(aResponse()
+						.withStatus(HTTP_OK)));
+
+		ExecutionException exception = assertThrowsExecutionException(
+				underTest.get("http://localhost:8089/slow", emptyMap()));
+
+		assertTrue(exception.getCause() instanceof TimeoutException);
+		// The only permit is held until the slow response is read unless its connection was disconnected.
+		assertEquals(HTTP_OK, underTest.get(URL, emptyMap()).get().getStatusCode());
+	}
+
+	@Test
+	void shouldNotSendRequestIfDeadlineExpired() {
+		ExecutionException exception = assertThrowsExecutionException(
+				underTest.get(URL, emptyMap(), Deadline.after(0L)));
+
+		assertTrue(exception.getCause() instanceof DeadlineExceededException);
+		verify(0, getRequestedFor(urlEqualTo("/path")));
+	}
+
+	@Test
+	void shouldLimitRequestsInFlightPerHost() throws Exception {
+		underTest = new HttpClient(1000, 20000, 20000, 2);
+		wireMockServer.stubFor(get(urlEqualTo("/path"))
+				.willReturn(aResponse()
+						.withTransformers(inFlightCounter.getName())
+						.withStatus(HTTP_OK)));
+
+		List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+		for (int i = 0; i < 3; ++i) {
+			responses.add(underTest.get(URL, emptyMap()));
+		}
+
+		for (CompletableFuture<HttpResponse> response : responses) {
+			assertEquals(HTTP_OK, response.get().getStatusCode());
+		}
+		// The third request is only sent once one of the first two has been answered.
+		assertEquals(2, inFlightCounter.maxInFlight.get());
+	}
+
+	@Test
+	void shouldNotCountTimeWaitingForPermitInElapsedTime() throws Exception {
+		underTest = new HttpClient(1000, 20000, 20000, 1);
+		wireMockServer.stubFor(get(urlEqualTo("/path"))
+				.willReturn(aResponse()
+						.withFixedDelay(500)
+						.withStatus(HTTP_OK)));
+
+		CompletableFuture<HttpResponse> first = underTest.get(URL, emptyMap());
+		HttpResponse second = underTest.get(URL, emptyMap()).get();
+
+		assertTrue(first.isDone());
+		// The second request waited for the first one to complete before being sent.
+		assertTrue(second.getElapsedMillis() >= 500L);
+		assertTrue(second.getElapsedMillis() < 1000L);
+	}
+
+	private static ExecutionException assertThrowsExecutionException(CompletableFuture<HttpResponse> response) {
+		try {
+			response.get();
+		} catch (ExecutionException e) {
+			return e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		throw new AssertionError("Expected the response to fail");
+	}
+
+	/**
+	 * Counts the requests the server is handling at once. Requests are held until the expected number of them are in
+	 * flight, and then for a little longer so that any request sent in excess is counted as well. A request is no
+	 * longer counted before its response is sent, hence before the client can send another one.
+	 */
+	private static final class InFlightCounter extends ResponseDefinitionTransformer {
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+		private final CountDownLatch expectedInFlight;
+
+		InFlightCounter(int expectedInFlight) {
+			this.expectedInFlight = new CountDownLatch(expectedInFlight);
+		}
+
+		@Override
+		public ResponseDefinition transform(Request request, ResponseDefinition responseDefinition, FileSource files,
+				Parameters parameters) {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			expectedInFlight.countDown();
+			try {
+				expectedInFlight.await(5, TimeUnit.SECONDS);
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				inFlight.decrementAndGet();
+			}
+			return responseDefinition;
+		}
+
+		@Override
+		public String getName() {
+			return "in-flight-counter";
+		}
+
+		@Override
+		public boolean applyGlobally() {
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+package io.github.pyvesb.alexaecopompe.speech;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares formatting a price with EuroFormatter against the DecimalFormat previously held by MainIntentHandler. Run
+ * with -prof gc to also compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EuroFormatterBenchmark {
+
+	private float price = 1.589f;
+	private DecimalFormat euroFormat;
+
+	@Setup
+	public void setUp() {
+		DecimalFormatSymbols euroSymbol = new DecimalFormatSymbols();
+		euroSymbol.setDecimalSeparator('€');
+		euroFormat = new DecimalFormat("0.00#", euroSymbol);
+	}
+
+	@Benchmark
+	public String euroFormatter() {
+		return EuroFormatter.format(price);
+	}
+
+	@Benchmark
+	public String decimalFormat() {
+		return euroFormat.format(price);
+	}
+
+}
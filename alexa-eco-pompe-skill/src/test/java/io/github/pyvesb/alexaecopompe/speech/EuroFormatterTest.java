@@ -0,0 +1,60 @@
+package io.github.pyvesb.alexaecopompe.speech;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class EuroFormatterTest {
+
+	private static final DecimalFormat EURO_FORMAT = new DecimalFormat("0.00#", euroSymbol());
+
+	@Test
+	void shouldFormatPricesWithEuroSignAsDecimalSeparator() {
+		assertEquals("1€10", EuroFormatter.format(1.1f));
+		assertEquals("1€589", EuroFormatter.format(1.589f));
+		assertEquals("0€00", EuroFormatter.format(0f));
+		assertEquals("12€05", EuroFormatter.format(12.05f));
+	}
+
+	@Test
+	void shouldAppendMillieuros() {
+		StringBuilder out = new StringBuilder("prix : ");
+
+		EuroFormatter.appendMillieuros(1409L, out);
+
+		assertEquals("prix : 1€409", out.toString());
+	}
+
+	@Test
+	void shouldFormatAllPricesOfTheDataLikeDecimalFormat() {
+		// Prices are stored in thousandths of euros, this covers every price below 20 euros.
+		for (int millieuros = 0; millieuros < 20000; ++millieuros) {
+			float euros = millieuros / 1000f;
+			assertEquals(EURO_FORMAT.format(euros), EuroFormatter.format(euros));
+		}
+	}
+
+	@Test
+	void shouldRoundPricesLikeDecimalFormat() {
+		Random random = new Random(42);
+		for (int i = 0; i < 100000; ++i) {
+			float euros = random.nextFloat() * 10f;
+			assertEquals(EURO_FORMAT.format(euros), EuroFormatter.format(euros));
+		}
+		// Ties are rounded half to even.
+		for (float euros : new float[] { 0.0625f, 0.1875f, 1.0625f, 2.5625f }) {
+			assertEquals(EURO_FORMAT.format(euros), EuroFormatter.format(euros));
+		}
+	}
+
+	private static DecimalFormatSymbols euroSymbol() {
+		DecimalFormatSymbols euroSymbol = new DecimalFormatSymbols();
+		euroSymbol.setDecimalSeparator('€');
+		return euroSymbol;
+	}
+
+}
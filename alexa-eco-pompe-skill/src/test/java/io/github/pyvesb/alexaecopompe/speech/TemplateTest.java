@@ -0,0 +1,64 @@
+package io.github.pyvesb.alexaecopompe.speech;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+class TemplateTest {
+
+	private static final String[] STATION_PLACEHOLDERS = { "$NAME", "$TYPE", "$PRICE", "$SUBJECT", "$ADDRESS", "$TOWN",
+			"$DATE", "$RADIUS", "$DISTANCE" };
+	private static final String[] STATION_VALUES = { "Pyves Gas", "du gazole", "1,41 €", "Cette pompe", "Rue Cler",
+			"Paris", "aujourd'hui", "5", "7" };
+
+	@Test
+	void shouldRenderMessagesLikeReplaceEach() {
+		for (String message : new String[] { Messages.STATION_FOUND, Messages.STATION_FOUND_E10,
+				Messages.NEAREST_STATION_FOUND }) {
+			assertEquals(StringUtils.replaceEach(message, STATION_PLACEHOLDERS, STATION_VALUES),
+					Template.compile(message, STATION_PLACEHOLDERS).render(STATION_VALUES));
+		}
+		String[] radiusPlaceholders = { "$RADIUS", "$TYPE", "$BIGGER_RADIUS" };
+		String[] radiusValues = { "5", "SP95", "10" };
+		assertEquals(StringUtils.replaceEach(Messages.NO_STATION_RADIUS, radiusPlaceholders, radiusValues),
+				Template.compile(Messages.NO_STATION_RADIUS, radiusPlaceholders).render(radiusValues));
+	}
+
+	@Test
+	void shouldRenderRepeatedPlaceholdersAndLiteralsAtBothEnds() {
+		Template underTest = Template.compile("$A$A, $B and $A", "$A", "$B");
+
+		assertEquals("xx, y and x", underTest.render("x", "y"));
+		assertEquals("Pas de pompe", Template.compile("Pas de pompe", "$A").render("x"));
+	}
+
+	@Test
+	void shouldReturnIndependentRenderings() {
+		Template underTest = Template.compile("à $TOWN", "$TOWN");
+
+		String first = underTest.render("Lyon");
+		String second = underTest.render("Paris");
+
+		assertEquals("à Lyon", first);
+		assertEquals("à Paris", second);
+	}
+
+	@Test
+	void shouldAppendRenderingToBuilder() {
+		StringBuilder out = new StringBuilder("Réponse : ");
+
+		Template.compile("$NAME vend $TYPE", "$NAME", "$TYPE").appendTo(out, "Pyves Gas", "du gazole");
+
+		assertEquals("Réponse : Pyves Gas vend du gazole", out.toString());
+	}
+
+	@Test
+	void shouldRejectWrongNumberOfValues() {
+		Template underTest = Template.compile("$NAME vend $TYPE", "$NAME", "$TYPE");
+
+		assertThrows(IllegalArgumentException.class, () -> underTest.render("Pyves Gas"));
+	}
+
+}
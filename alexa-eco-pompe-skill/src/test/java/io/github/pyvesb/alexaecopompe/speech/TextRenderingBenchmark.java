@@ -0,0 +1,70 @@
+package io.github.pyvesb.alexaecopompe.speech;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares rendering the station message with a compiled template against replacing its placeholders with
+ * StringUtils.replaceEach, and replacing the abbreviations of addresses with a compiled TextReplacer against
+ * StringUtils.replaceEach, which rescans the text for each search string. Run with -prof gc to also compare
+ * allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextRenderingBenchmark {
+
+	private static final String[] STATION_PLACEHOLDERS = { "$NAME", "$TYPE", "$PRICE", "$SUBJECT", "$ADDRESS", "$TOWN",
+			"$DATE" };
+	private static final String[] STATION_VALUES = { "Pyves Gas", "du gazole", "1,41 €", "Cette pompe",
+			"Avenue Du Général Leclerc", "Saint-Rémy-De-Provence", "le 2018-05-03" };
+	// Same replacements as Normalisers.
+	private static final String[] ADDRESS_REPLACEES = { "Bld.", "Bld ", "Bd ", "Av.", "Av ", "Ave ", "Rn ", "Rd ",
+			"Za ", "Zac ", ",", "S/ ", "/" };
+	private static final String[] ADDRESS_REPLACEMENTS = { "Boulevard ", "Boulevard ", "Boulevard ", "Avenue ",
+			"Avenue ", "Avenue ", "RN ", "RD ", "Z.A. ", "Z.A.C. ", "", "Sur ", "," };
+	private static final String[] ADDRESSES = { "Av Du General Leclerc", "Le Mas Ouest - Rte De Lyon",
+			"Za Des Bruyeres, Rn 7", "Rue De La Republique", "Bd Gambetta", "Centre Commercial Carrefour" };
+
+	private final Template stationTemplate = Template.compile(Messages.STATION_FOUND, STATION_PLACEHOLDERS);
+	private final TextReplacer addressReplacer = new TextReplacer(ADDRESS_REPLACEES, ADDRESS_REPLACEMENTS);
+
+	@Benchmark
+	public String stationMessageTemplate() {
+		return stationTemplate.render(STATION_VALUES);
+	}
+
+	@Benchmark
+	public String stationMessageReplaceEach() {
+		return StringUtils.replaceEach(Messages.STATION_FOUND, STATION_PLACEHOLDERS, STATION_VALUES);
+	}
+
+	@Benchmark
+	public void addressTextReplacer(Blackhole blackhole) {
+		for (String address : ADDRESSES) {
+			blackhole.consume(addressReplacer.replace(address));
+		}
+	}
+
+	@Benchmark
+	public void addressReplaceEach(Blackhole blackhole) {
+		for (String address : ADDRESSES) {
+			blackhole.consume(StringUtils.replaceEach(address, ADDRESS_REPLACEES, ADDRESS_REPLACEMENTS));
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+package io.github.pyvesb.alexaecopompe.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class BoundedCacheTest {
+
+	private static final long INITIAL_TIME = 1523318400000L;
+
+	@Mock
+	private Clock clock;
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private BoundedCache<String, Integer> underTest;
+
+	@BeforeEach
+	void setUp() {
+		when(clock.millis()).thenReturn(INITIAL_TIME);
+		underTest = new BoundedCache<>(100, 1000L, 10L, clock);
+	}
+
+	@Test
+	void shouldCacheFoundValuesUntilTheirTimeToLiveExpires() {
+		assertEquals(Optional.of(1), underTest.get("a", counting(k -> Optional.of(1))));
+		when(clock.millis()).thenReturn(INITIAL_TIME + 999L);
+		assertEquals(Optional.of(1), underTest.get("a", counting(k -> Optional.of(2))));
+		when(clock.millis()).thenReturn(INITIAL_TIME + 1000L);
+		assertEquals(Optional.of(3), underTest.get("a", counting(k -> Optional.of(3))));
+
+		assertEquals(2, loads.get());
+		assertEquals(1, underTest.getHitCount());
+		assertEquals(2, underTest.getMissCount());
+	}
+
+	@Test
+	void shouldCacheNotFoundValuesUntilTheirShorterTimeToLiveExpires() {
+		assertEquals(Optional.empty(), underTest.get("a", counting(k -> Optional.empty())));
+		when(clock.millis()).thenReturn(INITIAL_TIME + 9L);
+		assertEquals(Optional.empty(), underTest.get("a", counting(k -> Optional.of(1))));
+		when(clock.millis()).thenReturn(INITIAL_TIME + 10L);
+		assertEquals(Optional.of(1), underTest.get("a", counting(k -> Optional.of(1))));
+
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void shouldCacheValuesForTheirOwnTimeToLive() {
+		BoundedCache<String, Integer> underTest = new BoundedCache<>(100, v -> v.orElse(0) * 100L, clock);
+		underTest.get("a", counting(k -> Optional.of(1)));
+		underTest.get("b", counting(k -> Optional.of(2)));
+		underTest.get("c", counting(k -> Optional.of(0)));
+		when(clock.millis()).thenReturn(INITIAL_TIME + 100L);
+
+		assertEquals(Optional.of(3), underTest.get("a", counting(k -> Optional.of(3))));
+		assertEquals(Optional.of(2), underTest.get("b", counting(k -> Optional.of(3))));
+		assertEquals(4, loads.get());
+		assertEquals(2, underTest.size());
+	}
+
+	@Test
+	void shouldNotCacheFailedLoads() {
+		assertEquals(Optional.empty(), underTest.get("a", counting(k -> null)));
+		assertThrows(IllegalStateException.class, () -> underTest.get("a", counting(k -> {
+			throw new IllegalStateException();
+		})));
+		assertEquals(Optional.of(1), underTest.get("a", counting(k -> Optional.of(1))));
+
+		assertEquals(3, loads.get());
+		assertEquals(1, underTest.size());
+	}
+
+	@Test
+	void shouldEvictLeastFrequentlyUsedEntriesWhenFull() {
+		for (int key = 0; key < 10; ++key) {
+			for (int access = 0; access < 10; ++access) {
+				underTest.get("hot" + key, k -> Optional.of(0));
+			}
+		}
+		for (int key = 0; key < 1000; ++key) {
+			underTest.get("cold" + key, k -> Optional.of(0));
+		}
+
+		for (int key = 0; key < 10; ++key) {
+			underTest.get("hot" + key, counting(k -> Optional.of(0)));
+		}
+		assertEquals(100, underTest.size());
+		assertEquals(910, underTest.getEvictionCount());
+		// A hot entry is only evicted if all the sampled entries are hot, which is very unlikely.
+		assertTrue(loads.get() <= 1, "Reloaded hot entries: " + loads.get());
+	}
+
+	@Test
+	void shouldReclaimExpiredEntriesWithoutCountingEvictionsWhenFull() {
+		BoundedCache<String, Integer> underTest = new BoundedCache<>(1, 1000L, 10L, clock);
+		underTest.get("a", k -> Optional.empty());
+		when(clock.millis()).thenReturn(INITIAL_TIME + 10L);
+		underTest.get("b", k -> Optional.of(1));
+
+		assertEquals(1, underTest.size());
+		assertEquals(0, underTest.getEvictionCount());
+	}
+
+	@Test
+	void shouldReportHitRate() {
+		assertEquals(0d, underTest.getHitRate());
+
+		underTest.get("a", counting(k -> Optional.of(1)));
+		underTest.get("b", counting(k -> Optional.of(2)));
+		underTest.get("a", counting(k -> Optional.of(3)));
+		underTest.get("a", counting(k -> Optional.of(4)));
+		underTest.get("c", counting(k -> Optional.of(5)));
+
+		assertEquals(3, loads.get());
+		assertEquals(0.4d, underTest.getHitRate());
+	}
+
+	@Test
+	void shouldCoalesceConcurrentLoadsOfTheSameKey() throws Exception {
+		CountDownLatch loaderStarted = new CountDownLatch(1);
+		CountDownLatch loaderReleased = new CountDownLatch(1);
+		CompletableFuture<Optional<Integer>> first = CompletableFuture.supplyAsync(() -> underTest.get("a",
+				counting(k -> {
+					loaderStarted.countDown();
+					await(loaderReleased);
+					return Optional.of(1);
+				})));
+		assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Optional<Integer>> second = CompletableFuture.supplyAsync(() -> underTest.get("a",
+				counting(k -> Optional.of(2))));
+		while (underTest.getCoalescedLoadCount() == 0) {
+			Thread.sleep(1L);
+		}
+		loaderReleased.countDown();
+
+		assertEquals(Optional.of(1), first.get(5, TimeUnit.SECONDS));
+		assertEquals(Optional.of(1), second.get(5, TimeUnit.SECONDS));
+		assertEquals(1, loads.get());
+		assertEquals(2, underTest.getMissCount());
+	}
+
+	@Test
+	void shouldCoalesceAsynchronousLoadsAndNotCacheTheirFailures() throws Exception {
+		CompletableFuture<Optional<Integer>> pending = new CompletableFuture<>();
+		CompletableFuture<Optional<Integer>> first = underTest.getAsync("a", k -> {
+			loads.incrementAndGet();
+			return pending;
+		});
+		CompletableFuture<Optional<Integer>> second = underTest.getAsync("a", k -> CompletableFuture.completedFuture(
+				Optional.of(2)));
+		pending.completeExceptionally(new IllegalStateException());
+
+		assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+		assertEquals(Optional.empty(), second.get(5, TimeUnit.SECONDS));
+		assertEquals(Optional.of(3), underTest.getAsync("a", k -> CompletableFuture.completedFuture(Optional.of(3)))
+				.get(5, TimeUnit.SECONDS));
+		assertEquals(Optional.of(3), underTest.get("a", counting(k -> Optional.of(4))));
+		assertEquals(1, loads.get());
+		assertEquals(1, underTest.getCoalescedLoadCount());
+	}
+
+	private Function<String, Optional<Integer>> counting(Function<String, Optional<Integer>> loader) {
+		return key -> {
+			loads.incrementAndGet();
+			return loader.apply(key);
+		};
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
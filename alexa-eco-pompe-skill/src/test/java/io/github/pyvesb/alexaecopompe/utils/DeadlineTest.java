@@ -0,0 +1,55 @@
+package io.github.pyvesb.alexaecopompe.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+class DeadlineTest {
+
+	@Test
+	void shouldReturnRemainingBudget() {
+		Deadline underTest = Deadline.after(60000L);
+
+		assertFalse(underTest.isExpired());
+		assertTrue(underTest.remainingMillis() > 59000L && underTest.remainingMillis() <= 60000L);
+	}
+
+	@Test
+	void shouldExpireOnceBudgetIsSpent() {
+		Deadline underTest = Deadline.after(0L);
+
+		assertTrue(underTest.isExpired());
+		assertEquals(0L, underTest.remainingMillis());
+	}
+
+	@Test
+	void shouldExpireEarlierWhenMarginIsRemoved() {
+		Deadline underTest = Deadline.after(60000L).minusMillis(60000L);
+
+		assertTrue(underTest.isExpired());
+	}
+
+	@Test
+	void shouldNeverExpireIfUnbounded() {
+		Deadline underTest = Deadline.none().minusMillis(60000L);
+
+		assertFalse(underTest.isExpired());
+		assertEquals(Long.MAX_VALUE, underTest.remainingNanos());
+	}
+
+	@Test
+	void shouldAwaitFutureUntilExpiry() throws Exception {
+		Deadline underTest = Deadline.after(50L);
+
+		assertEquals("done", underTest.await(CompletableFuture.completedFuture("done")));
+		assertThrows(TimeoutException.class, () -> underTest.await(new CompletableFuture<>()));
+		assertTrue(underTest.isExpired());
+	}
+
+}
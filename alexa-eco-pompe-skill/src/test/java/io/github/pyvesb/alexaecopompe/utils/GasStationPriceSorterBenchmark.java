@@ -0,0 +1,121 @@
+package io.github.pyvesb.alexaecopompe.utils;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.pyvesb.alexaecopompe.domain.GasStation;
+import io.github.pyvesb.alexaecopompe.domain.GasType;
+import io.github.pyvesb.alexaecopompe.domain.Price;
+
+/**
+ * Compares sorting gas stations with prices looked up by gas type in the per-fuel table of GasStation against the
+ * previous implementation, which streamed over the list of prices and went through an Optional twice per comparison.
+ * Each invocation sorts a fresh copy of the gas stations in their original order. Run with -prof gc to also compare
+ * allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GasStationPriceSorterBenchmark {
+
+	private static final GasType[] FEED_GAS_TYPES = { GasType.GAZOLE, GasType.SP95, GasType.E85, GasType.GPL,
+			GasType.E10, GasType.SP98 };
+
+	@Param({ "50", "500" })
+	private int count;
+
+	private List<GasStation> gasStations;
+	private GasStationPriceSorter gasStationPriceSorter;
+	private StreamBasedSorter streamBasedSorter;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		LocalDate date = LocalDate.of(2018, 4, 4);
+		gasStations = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			List<Price> prices = new ArrayList<>();
+			for (GasType gasType : FEED_GAS_TYPES) {
+				if (random.nextInt(4) > 0) {
+					float value = 1.2f + random.nextInt(400) / 1000f;
+					prices.add(new Price(gasType, date.minusDays(random.nextInt(10)), value));
+				}
+			}
+			gasStations.add(new GasStation(Integer.toString(i), 4880000f, 235000f, "75001", "Paris", "Rue " + i, prices));
+		}
+		Clock clock = Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+		gasStationPriceSorter = new GasStationPriceSorter(clock, 7L);
+		streamBasedSorter = new StreamBasedSorter(clock, 7L);
+	}
+
+	@Benchmark
+	public List<GasStation> priceTable() {
+		List<GasStation> copy = new ArrayList<>(gasStations);
+		gasStationPriceSorter.sortGasStationsByIncreasingPricesForGasType(copy, GasType.SP95);
+		return copy;
+	}
+
+	@Benchmark
+	public List<GasStation> streamBased() {
+		List<GasStation> copy = new ArrayList<>(gasStations);
+		streamBasedSorter.sortGasStationsByIncreasingPricesForGasType(copy, GasType.SP95);
+		return copy;
+	}
+
+	/**
+	 * Previous implementation of GasStationPriceSorter, kept as a baseline.
+	 */
+	private static final class StreamBasedSorter {
+
+		private final Clock clock;
+		private final long priceStalenessThresholdDays;
+
+		StreamBasedSorter(Clock clock, long priceStalenessThresholdDays) {
+			this.clock = clock;
+			this.priceStalenessThresholdDays = priceStalenessThresholdDays;
+		}
+
+		void sortGasStationsByIncreasingPricesForGasType(List<GasStation> gasStations, GasType gasType) {
+			Collections.sort(gasStations, (gs1, gs2) -> Float.compare(getPriceForGasType(gs1, gasType),
+					getPriceForGasType(gs2, gasType)));
+		}
+
+		private float getPriceForGasType(GasStation gs, GasType gasType) {
+			return getPriceForGasTypeWithStream(gs, gasType)
+					.map(p -> isPriceStale(p) ? p.getValue() + 1000f : p.getValue())
+					.orElse(Float.MAX_VALUE);
+		}
+
+		private static Optional<Price> getPriceForGasTypeWithStream(GasStation gs, GasType gasType) {
+			return gs.getPrices().stream().filter(p -> p.getType() == gasType).findAny();
+		}
+
+		private boolean isPriceStale(Price price) {
+			return LocalDate.now(clock).minus(priceStalenessThresholdDays, ChronoUnit.DAYS).isAfter(price.getUpdated());
+		}
+	}
+
+}
@@ -5,6 +5,10 @@ import static io.github.pyvesb.alexaecopompe.domain.GasType.SP95;
 import static io.github.pyvesb.alexaecopompe.domain.GasType.SP98;
 import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.time.Clock;
 import java.time.Instant;
@@ -64,4 +68,29 @@ class GasStationPriceSorterTest {
 		assertEquals(asList(gs3, gs2, gs1), gasStations);
 	}
 
+	@Test
+	void shouldRankPricesOfTheSameAgeAsTheStalenessThresholdAsUpToDate() {
+		PriceRanking priceRanking = underTest.getPriceRanking();
+
+		assertEquals(1.10f, priceRanking.rank(1.10f, RECENT_DATE.toEpochDay()));
+		assertEquals(1.10f, priceRanking.rank(1.10f, RECENT_DATE.minusDays(7).toEpochDay()));
+		assertEquals(1001.10f, priceRanking.rank(1.10f, RECENT_DATE.minusDays(8).toEpochDay()));
+	}
+
+	@Test
+	void shouldReturnSamePriceRankingUntilTheDayChanges() {
+		Clock clock = mock(Clock.class);
+		when(clock.getZone()).thenReturn(ZoneId.of("UTC"));
+		when(clock.instant()).thenReturn(Instant.ofEpochMilli(1523318400000L));
+		GasStationPriceSorter sorter = new GasStationPriceSorter(clock, 7L);
+
+		PriceRanking priceRanking = sorter.getPriceRanking();
+		assertSame(priceRanking, sorter.getPriceRanking());
+
+		when(clock.instant()).thenReturn(Instant.ofEpochMilli(1523318400000L + 86400000L));
+		PriceRanking nextDayPriceRanking = sorter.getPriceRanking();
+		assertNotSame(priceRanking, nextDayPriceRanking);
+		assertEquals(1001.10f, nextDayPriceRanking.rank(1.10f, RECENT_DATE.minusDays(7).toEpochDay()));
+	}
+
 }